@@ -0,0 +1,171 @@
+package bguspl.set;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * A log handler that writes to a file on a background thread.
+ * Publishing a record only puts it in a bounded queue, so the threads that log never format a record or wait for the
+ * disk: the writer thread takes the records in batches, formats them and writes each batch with a single flush.
+ * When the queue is full, a record is dropped according to the overflow policy (see Config::logOverflowPolicy), and
+ * the number of dropped records is written to the log when the handler is closed.
+ */
+public class AsyncFileHandler extends Handler {
+
+    /**
+     * Which record to drop when a record is published while the queue is full.
+     */
+    public enum OverflowPolicy { DROP_OLDEST, DROP_NEWEST }
+
+    private static final int BATCH = 256; // the maximal number of records written with one flush
+    private static final LogRecord CLOSE = new LogRecord(Level.OFF, ""); // tells the writer to stop
+
+    private final ArrayBlockingQueue<LogRecord> queue;
+    private final Writer writer;
+    private final Thread writerThread;
+    private volatile OverflowPolicy policy = OverflowPolicy.DROP_NEWEST;
+
+    private final AtomicLong published = new AtomicLong(); // the records that were put in the queue
+    private final AtomicLong handled = new AtomicLong(); // the records that were written or dropped from the queue
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * @param file     - the log file (created or truncated).
+     * @param capacity - the maximal number of records waiting to be written.
+     * @throws IOException - if the file cannot be opened.
+     */
+    public AsyncFileHandler(File file, int capacity) throws IOException {
+        setFormatter(new LogFormatter(LogFormatter.DEFAULT_FORMAT));
+        queue = new ArrayBlockingQueue<>(capacity);
+        writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), 1 << 16);
+        writerThread = new Thread(this::writeAll, "log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * @param policy - which record to drop when the queue is full.
+     */
+    public void setOverflowPolicy(OverflowPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * @return - the number of records that were dropped because the queue was full.
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Queues the record for writing. Never blocks.
+     */
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) return;
+        published.incrementAndGet(); // counted first, so flush never sees it handled before it was published
+        while (!queue.offer(record)) {
+            if (policy == OverflowPolicy.DROP_NEWEST) {
+                dropped.incrementAndGet();
+                handled.incrementAndGet();
+                return;
+            }
+            if (queue.poll() != null) { // otherwise the writer took it meanwhile, so there is room now
+                dropped.incrementAndGet();
+                handled.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Waits until the records published before the call are written (e.g. before the application exits).
+     */
+    @Override
+    public void flush() {
+        long target = published.get();
+        try {
+            synchronized (this) {
+                while (handled.get() < target && writerThread.isAlive())
+                    wait(100);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes the records that are still queued and closes the file.
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            queue.put(CLOSE); // the writer stops after the records ahead of it
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (dropped.get() > 0)
+                writer.write("[log] " + dropped.get() + " records were dropped because the log queue was full"
+                        + System.lineSeparator());
+            writer.close();
+        } catch (IOException e) {
+            reportError(null, e, ErrorManager.CLOSE_FAILURE);
+        }
+    }
+
+    /**
+     * The loop of the writer thread.
+     */
+    private void writeAll() {
+        List<LogRecord> batch = new ArrayList<>(BATCH);
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                continue; // only close stops the writer
+            }
+            queue.drainTo(batch, BATCH - 1);
+            boolean stop = false;
+            int count = 0;
+            for (LogRecord record : batch) {
+                if (record == CLOSE) {
+                    stop = true;
+                    break;
+                }
+                write(record);
+                count++;
+            }
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                reportError(null, e, ErrorManager.FLUSH_FAILURE);
+            }
+            batch.clear();
+            handled.addAndGet(count);
+            synchronized (this) {
+                notifyAll(); // wakes flush
+            }
+            if (stop) return;
+        }
+    }
+
+    private void write(LogRecord record) {
+        try {
+            writer.write(getFormatter().format(record));
+        } catch (Exception e) {
+            reportError(null, e, ErrorManager.WRITE_FAILURE);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package bguspl.set;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * The images of the cards, scaled to the size of a cell.
+ * The images are decoded by background threads, so nothing waits for the whole deck: the cards that are placed on the
+ * table are decoded first (see prioritize), and a card that is not ready yet is drawn as an empty card until it is.
+ * Once all the images are decoded they are saved to a cache file (see Config::imageCacheFile), which later runs map
+ * into memory and copy from instead of decoding the images again.
+ */
+public class CardImages {
+
+    private static final int MAGIC = 0x53455449; // "SETI"
+    private static final int VERSION = 2;
+    // magic, version, count, width, height, feature size, feature count and the hash of the image resources
+    private static final int HEADER_INTS = 8;
+
+    private static final int PENDING = 0, LOADING = 1, LOADED = 2;
+
+    private final Logger logger;
+    private final Config config;
+    private final IntConsumer onLoaded;
+    private final int width;
+    private final int height;
+    private final int count; // the cards of the deck, then the empty card
+    private final int resourcesHash; // of the images' resources, so a cache of other images is not used (see header)
+
+    private final AtomicReferenceArray<BufferedImage> images;
+    private final AtomicIntegerArray states;
+    private final ConcurrentLinkedQueue<Integer> urgent = new ConcurrentLinkedQueue<>(); // cards to load first
+    private final AtomicInteger next = new AtomicInteger(); // the next card to load in order
+    private final AtomicInteger loaded = new AtomicInteger();
+    private final IntBuffer cache; // the mapped cache file, or null if the images need decoding
+
+    /**
+     * Loads the empty card. The other cards are loaded after start is called.
+     *
+     * @param onLoaded - called with the card (on a loading thread) when its image is ready.
+     */
+    public CardImages(Logger logger, Config config, IntConsumer onLoaded) {
+        this.logger = logger;
+        this.config = config;
+        this.onLoaded = onLoaded;
+        width = config.cellWidth;
+        height = config.cellHeight;
+        count = config.deckSize + 1;
+        images = new AtomicReferenceArray<>(count);
+        states = new AtomicIntegerArray(count);
+        resourcesHash = resourcesHash();
+        cache = mapCache();
+
+        int empty = count - 1;
+        states.set(empty, LOADING);
+        images.set(empty, load(empty));
+        states.set(empty, LOADED);
+        loaded.incrementAndGet();
+    }
+
+    /**
+     * Starts the threads that load the images of the cards.
+     */
+    public void start() {
+        int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), count - 1));
+        for (int i = 0; i < threads; i++) {
+            Thread thread = new Thread(this::loadAll, "card-images-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * @param card - the card.
+     * @return - the image of the card, or null if it is not ready yet.
+     */
+    public Image get(int card) {
+        return images.get(card);
+    }
+
+    /**
+     * @return - the image of an empty cell.
+     */
+    public Image empty() {
+        return images.get(count - 1);
+    }
+
+    /**
+     * Loads the image of a card before the cards that were not prioritized (e.g. when it is placed on the table).
+     *
+     * @param card - the card.
+     */
+    public void prioritize(int card) {
+        if (states.get(card) == PENDING)
+            urgent.add(card);
+    }
+
+    /**
+     * The loop of a loading thread: takes prioritized cards first, then the rest in order, until every card was taken.
+     */
+    private void loadAll() {
+        while (true) {
+            Integer card = urgent.poll();
+            if (card == null) {
+                card = next.getAndIncrement();
+                if (card >= count) return;
+            }
+            if (!states.compareAndSet(card, PENDING, LOADING)) continue; // another thread took it already
+            images.set(card, load(card));
+            states.set(card, LOADED);
+            onLoaded.accept(card);
+            if (loaded.incrementAndGet() == count && cache == null)
+                saveCache();
+        }
+    }
+
+    /**
+     * @return - the image of the card (or an empty image if it could not be read), scaled to the size of a cell.
+     */
+    private BufferedImage load(int card) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        if (cache != null) {
+            int[] pixels = new int[width * height];
+            IntBuffer buffer = cache.duplicate();
+            buffer.position(HEADER_INTS + card * pixels.length);
+            buffer.get(pixels);
+            image.getRaster().setDataElements(0, 0, width, height, pixels);
+            return image;
+        }
+
+        String filename = filename(card);
+        try {
+            URL resource = getClass().getClassLoader().getResource(filename);
+            if (resource == null) throw new FileNotFoundException(filename);
+            BufferedImage decoded = ImageIO.read(resource);
+            Graphics2D g = image.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(decoded, 0, 0, width, height, null);
+            g.dispose();
+        } catch (IOException e) {
+            logger.severe("warning: cannot read the image of card " + card + ": " + e);
+        }
+        return image;
+    }
+
+    private String filename(int card) {
+        return card == count - 1 ? "cards/empty_card.png"
+                : "cards/" + UserInterfaceSwing.intInBaseToPaddedString(card, config.featureCount, config.featureSize) + ".png";
+    }
+
+    /**
+     * @return - a hash of the names and locations of the images' resources (e.g. another jar gives another hash).
+     */
+    private int resourcesHash() {
+        CRC32 crc = new CRC32();
+        ClassLoader loader = getClass().getClassLoader();
+        for (int card = 0; card < count; card++) {
+            String filename = filename(card);
+            crc.update((filename + "=" + loader.getResource(filename) + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * @return - the header of the cache file of the images of this configuration.
+     */
+    private int[] header() {
+        return new int[]{MAGIC, VERSION, count, width, height, config.featureSize, config.featureCount, resourcesHash};
+    }
+
+    /**
+     * @return - the images in the cache file, or null if there is no cache file or it does not match the configuration.
+     */
+    private IntBuffer mapCache() {
+        if (config.imageCacheFile.isEmpty() || !Files.isRegularFile(Paths.get(config.imageCacheFile))) return null;
+        long size = (HEADER_INTS + (long) count * width * height) * Integer.BYTES;
+        try (FileChannel channel = FileChannel.open(Paths.get(config.imageCacheFile), StandardOpenOption.READ)) {
+            if (channel.size() != size) return null;
+            IntBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size).asIntBuffer();
+            int[] header = header();
+            for (int i = 0; i < HEADER_INTS; i++)
+                if (buffer.get(i) != header[i]) return null;
+            return buffer; // the mapping stays valid after the channel is closed
+        } catch (IOException | RuntimeException e) {
+            logger.severe("warning: cannot read the image cache " + config.imageCacheFile + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Saves all the images to the cache file (written aside and then moved, so a reader never sees it partly written).
+     */
+    private void saveCache() {
+        if (config.imageCacheFile.isEmpty()) return;
+        Path file = Paths.get(config.imageCacheFile);
+        try {
+            Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), "set-card-images", ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_INTS * Integer.BYTES);
+                header.asIntBuffer().put(header());
+                write(channel, header);
+                ByteBuffer pixels = ByteBuffer.allocate(width * height * Integer.BYTES);
+                for (int card = 0; card < count; card++) {
+                    pixels.clear();
+                    pixels.asIntBuffer().put((int[]) images.get(card).getRaster().getDataElements(0, 0, width, height, null));
+                    write(channel, pixels);
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.log(Level.INFO, "saved the card images to " + file);
+        } catch (IOException | RuntimeException e) {
+            logger.severe("warning: cannot save the image cache " + file + ": " + e);
+        }
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+}
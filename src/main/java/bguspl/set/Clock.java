@@ -0,0 +1,69 @@
+package bguspl.set;
+
+/**
+ * The source of time for the game. All timeouts, freezes and delays of the game entities are measured and awaited
+ * through this interface, so that the game can run either in real time or in simulated (virtual) time.
+ */
+public interface Clock {
+
+    /**
+     * Returns the current time of this clock.
+     *
+     * @return - the current time in milliseconds.
+     */
+    long currentTimeMillis();
+
+    /**
+     * Causes the current thread to sleep for the specified number of milliseconds of this clock.
+     *
+     * @param millis - the length of time to sleep in milliseconds (nothing happens if millis <= 0).
+     * @throws InterruptedException - if the current thread was interrupted while sleeping.
+     */
+    void sleep(long millis) throws InterruptedException;
+
+    /**
+     * Causes the current thread to wait on the monitor until it is signaled or the timeout elapses.
+     * The current thread must own the monitor (i.e. call this method from within a synchronized block).
+     * As with Object::wait, the caller should re-check its condition after this method returns.
+     *
+     * @param monitor - the object to wait on.
+     * @param millis  - the maximum time to wait in milliseconds (0 means wait until signaled).
+     * @throws InterruptedException - if the current thread was interrupted while waiting.
+     */
+    void await(Object monitor, long millis) throws InterruptedException;
+
+    /**
+     * Wakes up a single thread that is waiting on the monitor (the equivalent of Object::notify).
+     * The current thread must own the monitor.
+     *
+     * @param monitor - the object threads are waiting on.
+     */
+    void signal(Object monitor);
+
+    /**
+     * Wakes up all threads that are waiting on the monitor (the equivalent of Object::notifyAll).
+     * The current thread must own the monitor.
+     *
+     * @param monitor - the object threads are waiting on.
+     */
+    void signalAll(Object monitor);
+
+    /**
+     * The orders of the game's threads (see register). Threads of the same kind are ordered by the player's id.
+     */
+    int COMPUTER_ORDER = 0, DEALER_ORDER = 1 << 24, PLAYER_ORDER = 2 << 24, TIMER_ORDER = 3 << 24;
+
+    /**
+     * Registers the current thread as a game thread. A clock may only advance its time when all registered threads
+     * are waiting through it.
+     *
+     * @param order - the place of the thread among the threads that are due at the same time (lowest first), so a
+     *              clock that wakes them one at a time wakes them the same way on every run.
+     */
+    void register(int order);
+
+    /**
+     * Unregisters the current thread (e.g. right before the thread terminates).
+     */
+    void unregister();
+}
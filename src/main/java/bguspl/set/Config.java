@@ -7,6 +7,7 @@ import java.nio.file.InvalidPathException;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Properties;
+import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -15,6 +16,11 @@ import java.util.logging.Logger;
  */
 public class Config {
 
+    /**
+     * Which log record to drop when records are logged faster than they are written: drop-oldest or drop-newest
+     */
+    public final String logOverflowPolicy;
+
     /**
      * Random spin cycles for Config::randomSpin (for debugging / testing)
      */
@@ -86,6 +92,52 @@ public class Config {
      */
     public final long endGamePauseMillies;
 
+    /**
+     * The number of games to play after the first one in the same window (0 for a single game)
+     */
+    public final int rematches;
+
+    /**
+     * True iff the game should run in simulated time (see VirtualClock) instead of real time
+     */
+    public final boolean virtualTime;
+
+    /**
+     * The minimum and maximum number of milliseconds a computer player takes to react (i.e. waits before each key press)
+     */
+    public final long computerDelayMillis;
+    public final long computerMaxDelayMillis;
+
+    /**
+     * How the computer players choose their key presses: random, solver or noisy (see BotStrategy)
+     */
+    public final String computerStrategy;
+
+    /**
+     * How the dealer waits for claimed sets: blocking, timed-park, yield-park or busy-spin (see WaitStrategy)
+     */
+    public final String dealerWaitStrategy;
+
+    /**
+     * True iff players should check their sets before claiming them, so that the dealer only checks plausible sets
+     */
+    public final boolean preValidateClaims;
+
+    /**
+     * Which key press to drop when a player presses keys faster than they are handled: drop-oldest or drop-newest
+     */
+    public final String keyOverflowPolicy;
+
+    /**
+     * The probability that a noisy computer player presses a key of a real set (between 0 and 1)
+     */
+    public final double computerSkill;
+
+    /**
+     * The seed of the game's random number generators (identical seeds yield identical deals)
+     */
+    public final long randomSeed;
+
     /**
      * The names of the players to display on the screen
      * Note: if there are more players than names, the remaining players will be called "Player 3", "Player 4", etc.
@@ -132,6 +184,60 @@ public class Config {
      */
     public final int fontSize;
 
+    /**
+     * The maximal number of times per second the table is repainted (updates in between are applied together)
+     */
+    public final int maxFrameRate;
+
+    /**
+     * The file of the decoded card images, read on later runs instead of decoding the images again (empty for none)
+     */
+    public final String imageCacheFile;
+
+    /**
+     * The number of events the subscribers of the event bus (e.g. the window and the log) may fall behind the game before
+     * they are redrawn (and miss the events in between)
+     */
+    public final int eventBusCapacity;
+
+    /**
+     * The directory of the journal of the games (see Journal), or empty for no journal
+     */
+    public final String journalDirectory;
+
+    /**
+     * The size of a segment file of the journal, in megabytes
+     */
+    public final int journalSegmentMegabytes;
+
+    /**
+     * The file a game is paused to when the window is closed and resumed from on the next start (see Snapshot), or
+     * empty to end the game when the window is closed
+     */
+    public final String snapshotFile;
+
+    /**
+     * The directory of the leaderboard the results of the games are recorded in (see Leaderboard), or empty for none
+     */
+    public final String leaderboardDirectory;
+
+    /**
+     * True iff the games are analyzed as they are played: claim times, penalty ratios, sets per minute and the
+     * difficulty of the boards (see GameAnalytics)
+     */
+    public final boolean analytics;
+
+    /**
+     * The port of the HTTP endpoint that serves the metrics of the games in the Prometheus text format on the
+     * loopback address (see GameMetrics), or 0 for none
+     */
+    public final int metricsPort;
+
+    /**
+     * True iff the metrics of the games are registered as a JMX MBean (see GameMetrics)
+     */
+    public final boolean metricsJmx;
+
     /**
      * The scancodes of the keyboard input data for each player
      * Notes:
@@ -155,7 +261,7 @@ public class Config {
      * @param filename - the name of the configuration file.
      * @return - a properties object with the configuration file contents.
      */
-    private static Properties loadProperties(String filename, Logger logger) {
+    static Properties loadProperties(String filename, Logger logger) {
 
         Properties properties = new Properties();
 
@@ -186,6 +292,17 @@ public class Config {
         Level logLevel = Level.parse(properties.getProperty("LogLevel", "ALL"));
         String logFormat = properties.getProperty("LogFormat", "[%1$tT.%1$tL] [%2$-7s] %3$s%n");
         Main.setLoggerLevelAndFormat(logger, logLevel, logFormat);
+        String logOverflow = properties.getProperty("LogOverflowPolicy", "drop-newest").trim().toLowerCase();
+        if (!logOverflow.equals("drop-oldest") && !logOverflow.equals("drop-newest")) {
+            logger.severe("warning: unknown log overflow policy " + logOverflow + ". Using drop-newest.");
+            logOverflow = "drop-newest";
+        }
+        logOverflowPolicy = logOverflow;
+        Handler[] handlers = logger.getHandlers();
+        if (handlers != null) for (Handler handler : handlers)
+            if (handler instanceof AsyncFileHandler)
+                ((AsyncFileHandler) handler).setOverflowPolicy(
+                        AsyncFileHandler.OverflowPolicy.valueOf(logOverflow.toUpperCase().replace('-', '_')));
 
         // for debugging
         randomSpinMin = Long.parseLong(properties.getProperty("RandomSpinMin", "0"));
@@ -210,6 +327,44 @@ public class Config {
         penaltyFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PenaltyFreezeSeconds", "3")) * 1000.0);
         tableDelayMillis = (long) (Double.parseDouble(properties.getProperty("TableDelaySeconds", "0.1")) * 1000.0);
         endGamePauseMillies = (long) (Double.parseDouble(properties.getProperty("EndGamePauseSeconds", "5")) * 1000.0);
+        rematches = Integer.parseInt(properties.getProperty("Rematches", "0"));
+        virtualTime = Boolean.parseBoolean(properties.getProperty("VirtualTime", "False"));
+        long computerDelay = (long) (Double.parseDouble(properties.getProperty("ComputerDelaySeconds", "0")) * 1000.0);
+        if (virtualTime && computerDelay <= 0) {
+            // the simulated time cannot advance while a computer player presses keys without pause
+            logger.severe("warning: virtual time requires a positive computer delay. Using 1 millisecond.");
+            computerDelay = 1;
+        }
+        computerDelayMillis = computerDelay;
+        long computerMaxDelay = (long) (Double.parseDouble(properties.getProperty("ComputerMaxDelaySeconds", "0")) * 1000.0);
+        computerMaxDelayMillis = Math.max(computerDelay, computerMaxDelay);
+        String strategy = properties.getProperty("ComputerStrategy", "random").trim().toLowerCase();
+        if (!strategy.equals("random") && !strategy.equals("solver") && !strategy.equals("noisy")) {
+            logger.severe("warning: unknown computer strategy " + strategy + ". Using random.");
+            strategy = "random";
+        }
+        computerStrategy = strategy;
+        String wait = properties.getProperty("DealerWaitStrategy", "blocking").trim().toLowerCase();
+        if (!Arrays.asList("blocking", "timed-park", "yield-park", "busy-spin").contains(wait)) {
+            logger.severe("warning: unknown dealer wait strategy " + wait + ". Using blocking.");
+            wait = "blocking";
+        } else if (virtualTime && !wait.equals("blocking")) {
+            // the simulated time cannot advance while the dealer keeps running
+            logger.severe("warning: virtual time requires the blocking dealer wait strategy. Using blocking.");
+            wait = "blocking";
+        }
+        dealerWaitStrategy = wait;
+        preValidateClaims = Boolean.parseBoolean(properties.getProperty("PreValidateClaims", "False"));
+        String overflow = properties.getProperty("KeyOverflowPolicy", "drop-newest").trim().toLowerCase();
+        if (!overflow.equals("drop-oldest") && !overflow.equals("drop-newest")) {
+            logger.severe("warning: unknown key overflow policy " + overflow + ". Using drop-newest.");
+            overflow = "drop-newest";
+        }
+        keyOverflowPolicy = overflow;
+        computerSkill = Math.min(1, Math.max(0, Double.parseDouble(properties.getProperty("ComputerSkill", "0.8"))));
+        String seed = properties.getProperty("RandomSeed", "").trim();
+        randomSeed = seed.isEmpty() ? System.nanoTime() : Long.parseLong(seed);
+        logger.info("using random seed " + randomSeed);
 
         // ui settings
         String[] names = properties.getProperty("PlayerNames", "Player 1, Player 2").split(",");
@@ -224,6 +379,20 @@ public class Config {
         playerCellWidth = Integer.parseInt(properties.getProperty("PlayerCellWidth", "300"));
         playerCellHeight = Integer.parseInt(properties.getProperty("PlayerCellHeight", "40"));
         fontSize = Integer.parseInt(properties.getProperty("FontSize", "40"));
+        maxFrameRate = Math.max(1, Integer.parseInt(properties.getProperty("MaxFrameRate", "60")));
+        String imageCache = properties.getProperty("ImageCacheFile", "").trim();
+        if (imageCache.isEmpty())
+            imageCache = Paths.get(System.getProperty("java.io.tmpdir"), "set-card-images.cache").toString();
+        imageCacheFile = imageCache.equalsIgnoreCase("none") ? "" : imageCache;
+        eventBusCapacity = Math.max(2, Integer.parseInt(properties.getProperty("EventBusCapacity", "16384")));
+        journalDirectory = properties.getProperty("JournalDirectory", "").trim();
+        journalSegmentMegabytes = Math.max(1, Math.min(1024,
+                Integer.parseInt(properties.getProperty("JournalSegmentMegabytes", "16"))));
+        snapshotFile = properties.getProperty("SnapshotFile", "").trim();
+        leaderboardDirectory = properties.getProperty("LeaderboardDirectory", "").trim();
+        analytics = Boolean.parseBoolean(properties.getProperty("Analytics", "False"));
+        metricsPort = Math.max(0, Integer.parseInt(properties.getProperty("MetricsPort", "0")));
+        metricsJmx = Boolean.parseBoolean(properties.getProperty("MetricsJmx", "False"));
 
         // keyboard input data
         playerKeys = new int[players][rows * columns];
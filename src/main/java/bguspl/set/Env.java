@@ -1,5 +1,6 @@
 package bguspl.set;
 
+import java.util.concurrent.Executor;
 import java.util.logging.Logger;
 
 public class Env {
@@ -8,11 +9,60 @@ public class Env {
     public final Config config;
     public final UserInterface ui;
     public final Util util;
+    public final Clock clock;
+
+    /**
+     * Runs the game's threads (players and computer players). Tasks may block for the whole game.
+     */
+    public final Executor executor;
+
+    /**
+     * Fires the game's timeouts (freezes, countdown updates and round deadlines), measured by the game's clock.
+     */
+    public final TimerWheel timers;
+
+    /**
+     * Records what happens in the game (Journal.DISABLED if there is no journal).
+     */
+    public final Journal journal;
+
+    /**
+     * Counts what happens in the game for monitoring (may be shared by the games of a process, see GameMetrics).
+     */
+    public final GameMetrics metrics;
 
     public Env(Logger logger, Config config, UserInterface ui, Util util) {
+        this(logger, config, ui, util, config.virtualTime ? new VirtualClock() : new SystemClock());
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util, Clock clock) {
+        this(logger, config, ui, util, clock, task -> new Thread(task).start());
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util, Clock clock, Executor executor) {
+        this(logger, config, ui, util, clock, executor, new TimerWheel(logger, clock));
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util, Clock clock, Executor executor,
+               TimerWheel timers) {
+        this(logger, config, ui, util, clock, executor, timers, Journal.DISABLED);
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util, Clock clock, Executor executor,
+               TimerWheel timers, Journal journal) {
+        this(logger, config, ui, util, clock, executor, timers, journal, new GameMetrics());
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util, Clock clock, Executor executor,
+               TimerWheel timers, Journal journal, GameMetrics metrics) {
         this.logger = logger;
         this.config = config;
         this.ui = ui;
         this.util = util;
+        this.clock = clock;
+        this.executor = executor;
+        this.timers = timers;
+        this.journal = journal;
+        this.metrics = metrics;
     }
 }
@@ -0,0 +1,366 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Publishes the game's events (see GameEvent) to any number of subscribers, each running on an executor of its own.
+ * The bus is the game's UserInterface: every call publishes an event and returns without waiting for any subscriber.
+ * An event is written once to a ring shared by all the subscribers, and each subscriber reads the ring at its own pace,
+ * so publishing costs the same however many subscribers there are, and a slow subscriber delays neither the game nor
+ * the other subscribers. A subscriber that falls a whole ring behind cannot get the events that were overwritten (they
+ * are counted, see Subscription::skipped), so it is redrawn instead: it gets a RESET event and then the latest event of
+ * everything on the board (see Board), as of a point of the bus from which it goes on with the events in the ring.
+ * The ring should still be large enough for the slowest subscriber that must see every event (e.g. the log).
+ * The bus also spins for debugging (see Util::spin) after publishing the updates the UserInterfaceDecorator spins on,
+ * so the spin delays the game's threads as it did before the bus, and not the log's thread.
+ */
+public class EventBus implements UserInterface, AutoCloseable {
+
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000; // how long close waits for the subscribers to catch up
+
+    private final Logger logger;
+    private final Util util;
+    private final Clock clock;
+    private final AtomicReferenceArray<GameEvent> ring;
+    private final int mask;
+    private final AtomicLong next = new AtomicLong(); // the sequence of the next event
+    private final Board board = new Board(); // what the events published so far show (guarded by itself)
+    private volatile Subscription[] subscriptions = new Subscription[0];
+    private volatile boolean closed;
+
+    /**
+     * @param util     - spins after publishing (see Util::spin).
+     * @param clock    - the clock that stamps the events.
+     * @param capacity - the number of events a subscriber may fall behind before it is redrawn (rounded up to a power
+     *                 of 2).
+     */
+    public EventBus(Logger logger, Util util, Clock clock, int capacity) {
+        this.logger = logger;
+        this.util = util;
+        this.clock = clock;
+        int length = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        ring = new AtomicReferenceArray<>(length);
+        mask = length - 1;
+    }
+
+    /**
+     * The latest event of everything the published events show: the card of each slot, each token, the countdown or the
+     * elapsed time, the freeze and the score of each player, and the winners. A RESET event clears it.
+     * Redrawing a subscriber from it (see events) shows the same as delivering it all the events up to then.
+     */
+    static class Board {
+
+        private final Map<Integer, GameEvent> cards = new TreeMap<>();
+        private final TreeMap<Long, GameEvent> tokens = new TreeMap<>(); // by slot, then player (see token)
+        private final Map<Integer, GameEvent> freezes = new TreeMap<>();
+        private final Map<Integer, GameEvent> scores = new TreeMap<>();
+        private GameEvent timer; // COUNTDOWN, COUNTDOWN_DEADLINE or ELAPSED
+        private GameEvent winners;
+        private GameEvent dispose;
+
+        private static long token(int player, int slot) {
+            return (long) slot << Integer.SIZE | player & 0xffffffffL;
+        }
+
+        /**
+         * Shows an event on the board.
+         */
+        void apply(GameEvent event) {
+            switch (event.type) {
+                case PLACE_CARD: cards.put(event.slot, event); break;
+                case REMOVE_CARD: cards.remove(event.slot); break;
+                case PLACE_TOKEN: tokens.put(token(event.player, event.slot), event); break;
+                case REMOVE_ALL_TOKENS: tokens.clear(); break;
+                case REMOVE_TOKENS: tokens.subMap(token(0, event.slot), token(0, event.slot + 1)).clear(); break;
+                case REMOVE_TOKEN: tokens.remove(token(event.player, event.slot)); break;
+                case COUNTDOWN: case COUNTDOWN_DEADLINE: case ELAPSED: timer = event; break;
+                case FREEZE: freezes.put(event.player, event); break;
+                case SCORE: scores.put(event.player, event); break;
+                case WINNERS: winners = event; break;
+                case RESET:
+                    cards.clear();
+                    tokens.clear();
+                    freezes.clear();
+                    scores.clear();
+                    timer = winners = null;
+                    break;
+                case DISPOSE: dispose = event; break;
+            }
+        }
+
+        /**
+         * @return - the events that redraw the board on a user interface: a RESET, then the cards before their tokens.
+         */
+        List<GameEvent> events() {
+            List<GameEvent> events = new ArrayList<>();
+            events.add(GameEvent.reset());
+            events.addAll(cards.values());
+            events.addAll(tokens.values());
+            if (timer != null) events.add(timer);
+            events.addAll(freezes.values());
+            events.addAll(scores.values());
+            if (winners != null) events.add(winners);
+            if (dispose != null) events.add(dispose);
+            return events;
+        }
+    }
+
+    /**
+     * A subscriber and its position on the bus.
+     */
+    public class Subscription {
+
+        private final String name;
+        private final Consumer<GameEvent> subscriber;
+        private final ExecutorService executor;
+        private volatile Thread thread; // the thread reading the events (set when it starts)
+        private volatile boolean waiting; // true while the subscriber waits for an event (or is about to)
+        private volatile long position; // the sequence of the next event to deliver
+        private volatile long skipped;
+        private volatile boolean cancelled;
+
+        private Subscription(String name, Consumer<GameEvent> subscriber, long position) {
+            this.name = name;
+            this.subscriber = subscriber;
+            this.position = position;
+            executor = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "events-" + name);
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.execute(this::deliverAll);
+        }
+
+        /**
+         * @return - the number of events the subscriber did not get because it fell a whole ring behind (and was
+         * redrawn instead).
+         */
+        public long skipped() {
+            return skipped;
+        }
+
+        /**
+         * @return - the number of published events the subscriber did not get to yet.
+         */
+        public long backlog() {
+            return Math.max(0, next.get() - position);
+        }
+
+        /**
+         * Stops delivering events to the subscriber.
+         */
+        public void cancel() {
+            cancelled = true;
+            unsubscribe(this);
+            LockSupport.unpark(thread);
+            executor.shutdown();
+        }
+
+        /**
+         * The loop of the subscriber's thread.
+         */
+        private void deliverAll() {
+            thread = Thread.currentThread();
+            long p = position;
+            while (!cancelled) {
+                GameEvent event = ring.get((int) p & mask);
+                if (event == null || event.sequence < p) { // not published yet
+                    waiting = true; // announce the wait before looking again, so the publisher cannot miss it
+                    event = ring.get((int) p & mask);
+                    if ((event == null || event.sequence < p) && !cancelled)
+                        LockSupport.park(this);
+                    waiting = false;
+                    continue;
+                }
+                if (event.sequence > p) { // overwritten: redraw the board, and go on from there
+                    List<GameEvent> redraw;
+                    long from;
+                    synchronized (board) {
+                        redraw = board.events();
+                        from = next.get();
+                    }
+                    logger.severe("warning: subscriber " + name + " fell " + (from - p) + " events behind, redrawing it");
+                    skipped += from - p;
+                    for (GameEvent e : redraw)
+                        deliver(e);
+                    position = p = from;
+                    continue;
+                }
+                deliver(event);
+                position = ++p;
+            }
+        }
+
+        private void deliver(GameEvent event) {
+            try {
+                subscriber.accept(event);
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "subscriber " + name + " failed on event " + event, e);
+            }
+        }
+    }
+
+    /**
+     * Delivers the events published from now on to a subscriber, on a thread of its own.
+     *
+     * @param name       - the name of the subscriber (e.g. for the name of its thread).
+     * @param subscriber - called with each event, in the order they were published.
+     * @return - the subscription.
+     */
+    public synchronized Subscription subscribe(String name, Consumer<GameEvent> subscriber) {
+        Subscription subscription = new Subscription(name, subscriber, next.get());
+        Subscription[] current = subscriptions;
+        Subscription[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = subscription;
+        subscriptions = updated;
+        return subscription;
+    }
+
+    /**
+     * Shows the events published from now on on a user interface.
+     */
+    public Subscription subscribe(String name, UserInterface ui) {
+        return subscribe(name, event -> event.applyTo(ui));
+    }
+
+    private synchronized void unsubscribe(Subscription subscription) {
+        subscriptions = Arrays.stream(subscriptions).filter(s -> s != subscription).toArray(Subscription[]::new);
+    }
+
+    /**
+     * Publishes an event to all the subscribers. Never waits for a subscriber (only, briefly, for a subscriber being
+     * redrawn or another publisher, see Board).
+     *
+     * @param event - the event.
+     */
+    public void publish(GameEvent event) {
+        if (closed) return;
+        long sequence;
+        synchronized (board) { // the board shows exactly the events before next
+            sequence = next.getAndIncrement();
+            board.apply(event);
+        }
+        event.sequence = sequence;
+        event.time = clock.currentTimeMillis();
+        GameEvent previous;
+        do { // publishes the event and its fields, unless later events lapped it meanwhile (then it is skipped)
+            previous = ring.get((int) sequence & mask);
+            if (previous != null && previous.sequence > sequence) return;
+        } while (!ring.compareAndSet((int) sequence & mask, previous, event));
+        for (Subscription subscription : subscriptions) {
+            if (subscription.waiting) {
+                subscription.waiting = false;
+                LockSupport.unpark(subscription.thread);
+            }
+        }
+    }
+
+    /**
+     * Stops publishing events, waits (for a while) until the subscribers have handled the events that were published,
+     * and stops the subscribers.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        long end = System.currentTimeMillis() + CLOSE_TIMEOUT_MILLIS, last = next.get();
+        for (Subscription subscription : subscriptions) {
+            while (subscription.position < last && System.currentTimeMillis() < end)
+                LockSupport.parkNanos(1000000);
+            if (subscription.position < last)
+                logger.severe("warning: subscriber " + subscription.name + " did not handle " + (last - subscription.position) + " events");
+            subscription.cancel();
+        }
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        publish(GameEvent.placeCard(card, slot));
+        util.spin();
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        publish(GameEvent.removeCard(slot));
+        util.spin();
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        publish(GameEvent.placeToken(player, slot));
+        util.spin();
+    }
+
+    @Override
+    public void removeTokens() {
+        publish(GameEvent.removeTokens());
+        util.spin();
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        publish(GameEvent.removeTokens(slot));
+        util.spin();
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        publish(GameEvent.removeToken(player, slot));
+        util.spin();
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        publish(GameEvent.countdown(millies, warn));
+    }
+
+    @Override
+    public void setCountdownDeadline(long deadline, Clock clock) {
+        publish(GameEvent.countdownDeadline(deadline, clock));
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        publish(GameEvent.elapsed(millies));
+        util.spin();
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        publish(GameEvent.freeze(player, millies));
+        util.spin();
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        publish(GameEvent.score(player, score));
+        util.spin();
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        publish(GameEvent.winners(players));
+    }
+
+    @Override
+    public void reset() {
+        publish(GameEvent.reset());
+    }
+
+    @Override
+    public void dispose() {
+        publish(GameEvent.dispose());
+    }
+}
@@ -0,0 +1,379 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Analyzes the record stream of a journal as it is appended (see Journal::tap) or read back (see main).
+ * Per player: the time from a set appearing on the table (its last card dealt) until the player claimed it, the share
+ * of claims that were penalized and the sets per minute. Per board (the cards on the table between deals): the number
+ * of sets on it and the time until the first set on it was claimed, or whether none was.
+ * The statistics of each game are kept until the next game starts (see last), and added to the statistics of all the
+ * games (see total), which may be shared by the analytics of many games. Memory is bounded: the distributions are
+ * histograms and the state of a game is its table.
+ */
+public class GameAnalytics implements Consumer<Journal.Record> {
+
+    /**
+     * Boards with this many sets or more are counted together.
+     */
+    public static final int MAX_SETS = 16;
+
+    /**
+     * The statistics of a game, or of many games. The times are in milliseconds of the games' clocks.
+     */
+    public static class Stats {
+
+        private int games;
+        private long millis; // the length of the games
+        private long rounds;
+        private long timeouts; // the rounds that ended because the countdown ran out
+        private long[] claims = new long[0];
+        private long[] sets = new long[0];
+        private long[] penalties = new long[0];
+        private long[] playMillis = new long[0]; // the length of the games each player played
+        private Histogram[] claimTimes = new Histogram[0];
+        private final long[] boards = new long[MAX_SETS + 1];
+        private final long[] unclaimed = new long[MAX_SETS + 1];
+        private final Histogram[] firstClaims = new Histogram[MAX_SETS + 1];
+
+        public Stats() {
+            for (int i = 0; i <= MAX_SETS; i++)
+                firstClaims[i] = new Histogram();
+        }
+
+        public synchronized int games() {
+            return games;
+        }
+
+        public synchronized double minutes() {
+            return millis / 60000.0;
+        }
+
+        public synchronized long rounds() {
+            return rounds;
+        }
+
+        public synchronized long timeouts() {
+            return timeouts;
+        }
+
+        /**
+         * @return - the number of players (the most in any of the games).
+         */
+        public synchronized int players() {
+            return claims.length;
+        }
+
+        public synchronized long claims(int player) {
+            return claims[player];
+        }
+
+        /**
+         * @return - the number of legal sets the player claimed.
+         */
+        public synchronized long sets(int player) {
+            return sets[player];
+        }
+
+        public synchronized long penalties(int player) {
+            return penalties[player];
+        }
+
+        /**
+         * @return - the share of the player's claims that were penalized (0 if none).
+         */
+        public synchronized double penaltyRatio(int player) {
+            return claims[player] == 0 ? 0 : (double) penalties[player] / claims[player];
+        }
+
+        public synchronized double setsPerMinute(int player) {
+            return playMillis[player] == 0 ? 0 : sets[player] * 60000.0 / playMillis[player];
+        }
+
+        /**
+         * @return - the times from a set appearing on the table until the player claimed it (the live histogram).
+         */
+        public synchronized Histogram claimTimes(int player) {
+            return claimTimes[player];
+        }
+
+        /**
+         * @param sets - the number of sets on the board (MAX_SETS for MAX_SETS or more).
+         * @return - the number of boards with that many sets.
+         */
+        public synchronized long boards(int sets) {
+            return boards[Math.min(sets, MAX_SETS)];
+        }
+
+        /**
+         * @param sets - the number of sets on the board (MAX_SETS for MAX_SETS or more).
+         * @return - the number of boards with that many sets that were replaced with no set claimed.
+         */
+        public synchronized long unclaimed(int sets) {
+            return unclaimed[Math.min(sets, MAX_SETS)];
+        }
+
+        /**
+         * @param sets - the number of sets on the board (MAX_SETS for MAX_SETS or more).
+         * @return - the times from the boards with that many sets being dealt until the first claim of a legal set
+         * (the live histogram).
+         */
+        public Histogram firstClaims(int sets) {
+            return firstClaims[Math.min(sets, MAX_SETS)];
+        }
+
+        /**
+         * Adds the statistics of other games to these.
+         *
+         * @param other - the statistics of the other games (not changing while they are added).
+         */
+        public synchronized void add(Stats other) {
+            games += other.games;
+            millis += other.millis;
+            rounds += other.rounds;
+            timeouts += other.timeouts;
+            ensurePlayers(other.claims.length);
+            for (int i = 0; i < other.claims.length; i++) {
+                claims[i] += other.claims[i];
+                sets[i] += other.sets[i];
+                penalties[i] += other.penalties[i];
+                playMillis[i] += other.playMillis[i];
+                claimTimes[i].add(other.claimTimes[i]);
+            }
+            for (int i = 0; i <= MAX_SETS; i++) {
+                boards[i] += other.boards[i];
+                unclaimed[i] += other.unclaimed[i];
+                firstClaims[i].add(other.firstClaims[i]);
+            }
+        }
+
+        private void ensurePlayers(int players) {
+            if (claims.length >= players) return;
+            int from = claims.length;
+            claims = Arrays.copyOf(claims, players);
+            sets = Arrays.copyOf(sets, players);
+            penalties = Arrays.copyOf(penalties, players);
+            playMillis = Arrays.copyOf(playMillis, players);
+            claimTimes = Arrays.copyOf(claimTimes, players);
+            for (int i = from; i < players; i++)
+                claimTimes[i] = new Histogram();
+        }
+
+        @Override
+        public synchronized String toString() {
+            StringBuilder sb = new StringBuilder(String.format("%d games, %.1f minutes, %d rounds (%d timed out)%n",
+                    games, minutes(), rounds, timeouts));
+            for (int i = 0; i < claims.length; i++)
+                sb.append(String.format("player %d: %d claims, %d sets, penalty ratio %.3f, %.2f sets/minute, " +
+                                "set to claim %s%n", i + 1, claims[i], sets[i], penaltyRatio(i), setsPerMinute(i),
+                        claimTimes[i].toString(1, "ms")));
+            for (int i = 0; i <= MAX_SETS; i++)
+                if (boards[i] > 0)
+                    sb.append(String.format("boards of %d%s sets: %d, %d unclaimed, to first claim %s%n", i,
+                            i == MAX_SETS ? "+" : "", boards[i], unclaimed[i], firstClaims[i].toString(1, "ms")));
+            return sb.toString();
+        }
+    }
+
+    private final Util util;
+    private final Stats total;
+    private Stats game; // null between games
+    private Stats last; // of the last game that ended
+
+    private long start; // the time the game started
+    private final Map<Integer, Long> dealt = new HashMap<>(); // the time each card on the table was dealt
+    private long[] claimed = new long[0]; // the time of each player's latest claim
+    private int tableSize;
+    private long changed = -1; // the time the board last changed, or -1 if it did not change since it was counted
+    private boolean dealing; // true iff the last change of the board was a deal (not a removal)
+    private long boardTime = -1; // the time the board was dealt, or -1 if it is not counted (yet)
+    private int boardSets; // the number of sets on the board
+    private boolean boardClaimed; // true once a legal set on the board was claimed
+
+    /**
+     * @param util - counts the sets on the table.
+     */
+    public GameAnalytics(Util util) {
+        this(util, new Stats());
+    }
+
+    /**
+     * @param util  - counts the sets on the table.
+     * @param total - the statistics the statistics of each game are added to when it ends (may be shared).
+     */
+    public GameAnalytics(Util util, Stats total) {
+        this.util = util;
+        this.total = total;
+    }
+
+    /**
+     * @return - the statistics of the last game that ended, or null if none did.
+     */
+    public synchronized Stats last() {
+        return last;
+    }
+
+    /**
+     * @return - the statistics of all the games that ended.
+     */
+    public Stats total() {
+        return total;
+    }
+
+    /**
+     * Analyzes the next record of the stream. Records are expected in the order of their sequence.
+     *
+     * @param record - the record.
+     */
+    @Override
+    public synchronized void accept(Journal.Record record) {
+        if (record.type == Journal.Type.GAME_START) {
+            start(record.time, record.value(2), record.value(3) * record.value(4));
+            return;
+        }
+        if (game == null) return; // the stream started in the middle of a game
+        switch (record.type) {
+            case DEAL:
+                change(record.time);
+                dealt.put(record.value(1), record.time);
+                dealing = true;
+                if (dealt.size() == tableSize) settle();
+                return;
+            case REMOVE_CARD:
+                change(record.time);
+                dealt.remove(record.value(1));
+                dealing = false;
+                return;
+            default: // the players act between the removals and the deals, so only a deal may complete the board
+                if (changed >= 0 && dealing) settle();
+        }
+        switch (record.type) {
+            case CLAIM:
+                synchronized (game) {
+                    game.claims[record.value(0)]++;
+                }
+                claimed[record.value(0)] = record.time;
+                break;
+            case VERDICT:
+                verdict(record.value(0), record.value(1) == 1, record.values(2));
+                break;
+            case ROUND_END:
+                synchronized (game) {
+                    game.rounds++;
+                    if (record.value(1) == 1) game.timeouts++;
+                }
+                break;
+            case GAME_END:
+                end(record.time);
+                break;
+            default:
+        }
+    }
+
+    private void start(long time, int players, int tableSize) {
+        game = new Stats();
+        game.games = 1;
+        game.ensurePlayers(players);
+        start = time;
+        this.tableSize = tableSize;
+        dealt.clear();
+        claimed = new long[players];
+        changed = boardTime = -1;
+    }
+
+    /**
+     * The board is about to change: counts it as unclaimed if it was not claimed.
+     */
+    private void change(long time) {
+        if (boardTime >= 0 && !boardClaimed) {
+            synchronized (game) {
+                game.unclaimed[boardSets]++;
+            }
+        }
+        boardTime = -1;
+        changed = time;
+    }
+
+    /**
+     * The board is in place (the table is full, or the deck ran out): counts it.
+     */
+    private void settle() {
+        boardSets = Math.min(MAX_SETS, util.findSets(new ArrayList<>(dealt.keySet()), Integer.MAX_VALUE).size());
+        boardTime = changed;
+        boardClaimed = false;
+        changed = -1;
+        synchronized (game) {
+            game.boards[boardSets]++;
+        }
+    }
+
+    private void verdict(int player, boolean legal, int[] cards) {
+        synchronized (game) {
+            if (!legal) {
+                game.penalties[player]++;
+                return;
+            }
+            game.sets[player]++;
+            long appeared = -1;
+            for (int card : cards) {
+                Long time = dealt.get(card);
+                if (time == null) return; // not on the table: the stream started in the middle of the game
+                appeared = Math.max(appeared, time);
+            }
+            game.claimTimes[player].record(claimed[player] - appeared);
+            if (boardTime >= 0 && !boardClaimed) {
+                game.firstClaims[boardSets].record(claimed[player] - boardTime);
+                boardClaimed = true;
+            }
+        }
+    }
+
+    private void end(long time) {
+        change(time);
+        synchronized (game) {
+            game.millis = time - start;
+            Arrays.fill(game.playMillis, game.millis);
+        }
+        last = game;
+        game = null;
+        total.add(last);
+    }
+
+    /**
+     * Analyzes the games of a journal run and prints the statistics of each game and of all of them.
+     * Usage: GameAnalytics [config file] [journal directory] [run]
+     *
+     * @param args - [config file] [journal directory] [run] (the latest run by default).
+     */
+    public static void main(String[] args) throws IOException {
+        Logger logger = Logger.getLogger("SetAnalyticsLogger");
+        Properties properties = Config.loadProperties(args.length > 0 ? args[0] : "config.properties", logger);
+        Path directory = Paths.get(args.length > 1 ? args[1] : "journal");
+        String run = args.length > 2 ? args[2] : Journal.latestRun(directory);
+        if (run == null) {
+            System.out.println("no journal in " + directory);
+            return;
+        }
+        GameAnalytics analytics = new GameAnalytics(new UtilImpl(new Config(logger, properties)));
+        Stats last = null;
+        for (Journal.Record record : Journal.read(directory, run)) {
+            analytics.accept(record);
+            if (analytics.last() != last) {
+                last = analytics.last();
+                System.out.println("game " + analytics.total().games() + ":");
+                System.out.print(last);
+            }
+        }
+        System.out.println("all games of " + run + ":");
+        System.out.print(analytics.total());
+    }
+}
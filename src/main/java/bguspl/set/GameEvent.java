@@ -0,0 +1,151 @@
+package bguspl.set;
+
+import java.util.Arrays;
+
+/**
+ * Something the game shows to its users, published once to the EventBus and delivered to each of its subscribers.
+ * There is an event type for every method of UserInterface, and applyTo calls that method.
+ * Events are immutable once published.
+ */
+public class GameEvent {
+
+    public enum Type {
+        PLACE_CARD, REMOVE_CARD, PLACE_TOKEN, REMOVE_ALL_TOKENS, REMOVE_TOKENS, REMOVE_TOKEN, COUNTDOWN,
+        COUNTDOWN_DEADLINE, ELAPSED, FREEZE, SCORE, WINNERS, RESET, DISPOSE
+    }
+
+    public final Type type;
+    public final int player; // -1 if none
+    public final int slot; // -1 if none
+    public final int card; // -1 if none
+
+    /**
+     * The milliseconds of COUNTDOWN, COUNTDOWN_DEADLINE (the deadline), ELAPSED and FREEZE, or the score of SCORE.
+     */
+    public final long value;
+    public final boolean warn; // of COUNTDOWN
+    public final Clock clock; // of COUNTDOWN_DEADLINE
+    private final int[] players; // of WINNERS
+
+    long sequence; // the position of the event on the bus (set by the bus before the event is published)
+    long time; // the time of the game's clock when the event was published (set by the bus)
+
+    private GameEvent(Type type, int player, int slot, int card, long value, boolean warn, Clock clock, int[] players) {
+        this.type = type;
+        this.player = player;
+        this.slot = slot;
+        this.card = card;
+        this.value = value;
+        this.warn = warn;
+        this.clock = clock;
+        this.players = players;
+    }
+
+    public static GameEvent placeCard(int card, int slot) {
+        return new GameEvent(Type.PLACE_CARD, -1, slot, card, 0, false, null, null);
+    }
+
+    public static GameEvent removeCard(int slot) {
+        return new GameEvent(Type.REMOVE_CARD, -1, slot, -1, 0, false, null, null);
+    }
+
+    public static GameEvent placeToken(int player, int slot) {
+        return new GameEvent(Type.PLACE_TOKEN, player, slot, -1, 0, false, null, null);
+    }
+
+    public static GameEvent removeTokens() {
+        return new GameEvent(Type.REMOVE_ALL_TOKENS, -1, -1, -1, 0, false, null, null);
+    }
+
+    public static GameEvent removeTokens(int slot) {
+        return new GameEvent(Type.REMOVE_TOKENS, -1, slot, -1, 0, false, null, null);
+    }
+
+    public static GameEvent removeToken(int player, int slot) {
+        return new GameEvent(Type.REMOVE_TOKEN, player, slot, -1, 0, false, null, null);
+    }
+
+    public static GameEvent countdown(long millies, boolean warn) {
+        return new GameEvent(Type.COUNTDOWN, -1, -1, -1, millies, warn, null, null);
+    }
+
+    public static GameEvent countdownDeadline(long deadline, Clock clock) {
+        return new GameEvent(Type.COUNTDOWN_DEADLINE, -1, -1, -1, deadline, false, clock, null);
+    }
+
+    public static GameEvent elapsed(long millies) {
+        return new GameEvent(Type.ELAPSED, -1, -1, -1, millies, false, null, null);
+    }
+
+    public static GameEvent freeze(int player, long millies) {
+        return new GameEvent(Type.FREEZE, player, -1, -1, millies, false, null, null);
+    }
+
+    public static GameEvent score(int player, int score) {
+        return new GameEvent(Type.SCORE, player, -1, -1, score, false, null, null);
+    }
+
+    public static GameEvent winners(int[] players) {
+        return new GameEvent(Type.WINNERS, -1, -1, -1, 0, false, null, players.clone());
+    }
+
+    public static GameEvent reset() {
+        return new GameEvent(Type.RESET, -1, -1, -1, 0, false, null, null);
+    }
+
+    public static GameEvent dispose() {
+        return new GameEvent(Type.DISPOSE, -1, -1, -1, 0, false, null, null);
+    }
+
+    /**
+     * @return - the position of the event on the bus (consecutive from 0).
+     */
+    public long sequence() {
+        return sequence;
+    }
+
+    /**
+     * @return - the time of the game's clock when the event was published.
+     */
+    public long time() {
+        return time;
+    }
+
+    /**
+     * @return - the winners of WINNERS (a copy).
+     */
+    public int[] players() {
+        return players == null ? new int[0] : players.clone();
+    }
+
+    /**
+     * Shows the event on a user interface.
+     *
+     * @param ui - the user interface.
+     */
+    public void applyTo(UserInterface ui) {
+        switch (type) {
+            case PLACE_CARD: ui.placeCard(card, slot); break;
+            case REMOVE_CARD: ui.removeCard(slot); break;
+            case PLACE_TOKEN: ui.placeToken(player, slot); break;
+            case REMOVE_ALL_TOKENS: ui.removeTokens(); break;
+            case REMOVE_TOKENS: ui.removeTokens(slot); break;
+            case REMOVE_TOKEN: ui.removeToken(player, slot); break;
+            case COUNTDOWN: ui.setCountdown(value, warn); break;
+            case COUNTDOWN_DEADLINE: ui.setCountdownDeadline(value, clock); break;
+            case ELAPSED: ui.setElapsed(value); break;
+            case FREEZE: ui.setFreeze(player, value); break;
+            case SCORE: ui.setScore(player, (int) value); break;
+            case WINNERS: ui.announceWinner(players.clone()); break;
+            case RESET: ui.reset(); break;
+            case DISPOSE: ui.dispose(); break;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "#" + sequence + " " + type + (player >= 0 ? " player=" + player : "") + (slot >= 0 ? " slot=" + slot : "")
+                + (card >= 0 ? " card=" + card : "") + (value != 0 ? " value=" + value : "")
+                + (players != null ? " players=" + Arrays.toString(players) : "");
+    }
+}
@@ -0,0 +1,411 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Snapshot;
+import bguspl.set.ex.Table;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Hosts many independent games in a single JVM.
+ * All games share one pool of threads and the immutable data of their configuration (e.g. the card features table).
+ * Each game is controlled through its own handle and reports the CPU time and memory its threads use.
+ * Games that ended can be restarted in place (rematch) or released for reuse by future games of the same configuration.
+ */
+public class GameHost implements AutoCloseable {
+
+    private final Logger logger;
+
+    /**
+     * The threads of all games (dealers, players and computer players). Game threads block for the whole game,
+     * so the pool grows on demand and reuses the threads of games that ended.
+     */
+    private final ExecutorService pool;
+
+    /**
+     * The utilities shared by all games of the same configuration.
+     */
+    private final Map<Config, Util> utils = new IdentityHashMap<>();
+
+    /**
+     * Fires the timeouts of all games that run in real time, so they all share a single timer thread.
+     * Games in virtual time have a clock of their own, hence a timer wheel of their own.
+     */
+    private final TimerWheel timers;
+
+    private final List<Game> games = new ArrayList<>();
+
+    /**
+     * Headless games that ended and were released, ready to be reused by create (per configuration).
+     */
+    private final Map<Config, Deque<Game>> idle = new HashMap<>();
+    private final AtomicInteger nextGameId = new AtomicInteger(1);
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+    /**
+     * The leaderboard the results of the games that end by themselves are recorded in (null for none).
+     */
+    private final Leaderboard leaderboard;
+
+    /**
+     * The metrics of all games (see metrics).
+     */
+    private final GameMetrics metrics = new GameMetrics();
+
+    public GameHost(Logger logger) {
+        this(logger, null);
+    }
+
+    /**
+     * @param logger      - the logger of the games.
+     * @param leaderboard - the leaderboard the results of the games are recorded in as they end, or null for none.
+     */
+    public GameHost(Logger logger, Leaderboard leaderboard) {
+        this.logger = logger;
+        this.leaderboard = leaderboard;
+        timers = new TimerWheel(logger, new SystemClock());
+        AtomicInteger threadId = new AtomicInteger();
+        pool = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "game-host-" + threadId.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (threadBean.isThreadCpuTimeSupported() && !threadBean.isThreadCpuTimeEnabled())
+            threadBean.setThreadCpuTimeEnabled(true);
+    }
+
+    /**
+     * A handle of a single hosted game.
+     */
+    public class Game {
+
+        public final int id;
+        public final Env env;
+        public final Table table;
+        public final Dealer dealer;
+        public final Player[] players;
+
+        private final boolean headless;
+        private volatile CountDownLatch ended = new CountDownLatch(1);
+        private volatile boolean started;
+
+        /**
+         * The number of the game's tasks that did not finish yet, and whether the dealer's task finished. The game ends
+         * once all of its tasks finished, so their resources are accounted for by then.
+         */
+        private final AtomicInteger tasks = new AtomicInteger();
+        private volatile boolean over;
+
+        /**
+         * CPU time and allocated memory of the game's tasks that finished running, and the starting point of the
+         * tasks that are running right now (per thread: {cpu time, allocated bytes}).
+         */
+        private final AtomicLong cpuNanos = new AtomicLong();
+        private final AtomicLong allocatedBytes = new AtomicLong();
+        private final Map<Thread, long[]> running = new ConcurrentHashMap<>();
+
+        private Game(int id, Config config, Function<Player[], UserInterface> uiFactory) {
+            this.id = id;
+            headless = uiFactory == null;
+            players = new Player[config.players];
+            UserInterface ui = uiFactory == null ? new UserInterfaceNoop() : uiFactory.apply(players);
+            if (config.virtualTime) {
+                VirtualClock clock = new VirtualClock();
+                env = new Env(logger, config, ui, util(config), clock, this::execute, new TimerWheel(logger, clock),
+                        Journal.DISABLED, metrics);
+            } else
+                env = new Env(logger, config, ui, util(config), timers.clock(), this::execute, timers,
+                        Journal.DISABLED, metrics);
+            table = new Table(env);
+            dealer = new Dealer(env, table, players);
+            for (int i = 0; i < players.length; i++)
+                players[i] = new Player(env, dealer, table, i, i < config.humanPlayers);
+        }
+
+        /**
+         * Runs a task of this game on the host's pool and accounts for the resources it uses.
+         */
+        private void execute(Runnable task) {
+            tasks.incrementAndGet();
+            pool.execute(() -> {
+                Thread thread = Thread.currentThread();
+                String name = thread.getName();
+                long[] start = {threadCpuNanos(thread), threadAllocatedBytes(thread)};
+                running.put(thread, start);
+                try {
+                    task.run();
+                } finally {
+                    running.remove(thread);
+                    cpuNanos.addAndGet(threadCpuNanos(thread) - start[0]);
+                    allocatedBytes.addAndGet(threadAllocatedBytes(thread) - start[1]);
+                    thread.setName(name);
+                    if (tasks.decrementAndGet() == 0 && over) end();
+                }
+            });
+        }
+
+        /**
+         * Starts the game (the dealer runs on the host's pool).
+         */
+        public synchronized void start() {
+            if (started) return;
+            started = true;
+            execute(() -> {
+                try {
+                    dealer.run();
+                    if (leaderboard != null && dealer.finished()) record();
+                } finally {
+                    over = true;
+                }
+            });
+        }
+
+        private void record() {
+            int[] scores = new int[players.length], penalties = new int[players.length];
+            for (int i = 0; i < players.length; i++) {
+                scores[i] = players[i].score();
+                penalties[i] = players[i].penalties();
+            }
+            try {
+                leaderboard.record(env.config.playerNames, scores, penalties);
+            } catch (IOException e) {
+                logger.severe("warning: cannot record game " + id + " in the leaderboard: " + e);
+            }
+        }
+
+        /**
+         * Terminates the game and waits for all of its threads to finish.
+         */
+        public void terminate() {
+            dealer.terminate();
+            if (!started) end();
+            try {
+                ended.await();
+            } catch (InterruptedException ignored) {}
+        }
+
+        /**
+         * Starts the game from the state of a paused game, e.g. a game that was paused on another host.
+         *
+         * @param snapshot - the state of the paused game (see pause).
+         * @throws IllegalArgumentException - if the snapshot is of a game of another size (see Dealer::resume).
+         * @throws IllegalStateException - if the game already started.
+         */
+        public synchronized void resume(Snapshot snapshot) {
+            if (started) throw new IllegalStateException("game " + id + " already started");
+            dealer.resume(snapshot);
+            start();
+        }
+
+        /**
+         * Pauses the game and waits for all of its threads to finish, so that it can be resumed later, here or on
+         * another host (see resume).
+         *
+         * @return - the state of the game, or null if the game did not start.
+         */
+        public Snapshot pause() {
+            Snapshot snapshot = dealer.pause();
+            try {
+                if (snapshot != null) ended.await();
+            } catch (InterruptedException ignored) {}
+            return snapshot;
+        }
+
+        /**
+         * Starts a new game with the same players and user interface, reusing all of the game's data structures.
+         *
+         * @throws IllegalStateException - if the game did not end yet.
+         */
+        public void rematch() {
+            synchronized (GameHost.this) {
+                prepare();
+                games.add(this);
+            }
+            start();
+        }
+
+        /**
+         * Returns the game to the host, so its data structures can be reused by a future call to create.
+         * The handle must not be used after it was released.
+         *
+         * @throws IllegalStateException - if the game did not end yet.
+         */
+        public void release() {
+            if (!isDone()) throw new IllegalStateException("game " + id + " is still running");
+            if (!headless) return; // the user interface is not reusable by other games
+            synchronized (GameHost.this) {
+                idle.computeIfAbsent(env.config, config -> new ArrayDeque<>()).push(this);
+            }
+        }
+
+        /**
+         * Resets the game's state for a new game.
+         */
+        private synchronized void prepare() {
+            if (!isDone()) throw new IllegalStateException("game " + id + " is still running");
+            dealer.reset();
+            if (env.clock instanceof VirtualClock) {
+                ((VirtualClock) env.clock).reopen();
+                env.timers.reopen();
+            }
+            cpuNanos.set(0);
+            allocatedBytes.set(0);
+            started = false;
+            over = false;
+            ended = new CountDownLatch(1);
+        }
+
+        /**
+         * Waits for the game to end.
+         *
+         * @throws InterruptedException - if the calling thread was interrupted while waiting.
+         */
+        public void await() throws InterruptedException {
+            ended.await();
+        }
+
+        public boolean isDone() {
+            return ended.getCount() == 0;
+        }
+
+        /**
+         * @return - the CPU time used by the game's threads so far, in nanoseconds (-1 if not supported).
+         */
+        public long cpuNanos() {
+            if (!threadBean.isThreadCpuTimeSupported()) return -1;
+            long total = cpuNanos.get();
+            for (Map.Entry<Thread, long[]> entry : running.entrySet())
+                total += Math.max(0, threadCpuNanos(entry.getKey()) - entry.getValue()[0]);
+            return total;
+        }
+
+        /**
+         * @return - the memory allocated by the game's threads so far, in bytes (-1 if not supported).
+         */
+        public long allocatedBytes() {
+            if (!(threadBean instanceof com.sun.management.ThreadMXBean)) return -1;
+            long total = allocatedBytes.get();
+            for (Map.Entry<Thread, long[]> entry : running.entrySet())
+                total += Math.max(0, threadAllocatedBytes(entry.getKey()) - entry.getValue()[1]);
+            return total;
+        }
+
+        private void end() {
+            // the game's own clock and timer wheel have threads of their own, which must not outlive the game (see prepare)
+            if (env.clock instanceof VirtualClock) {
+                env.timers.close();
+                ((VirtualClock) env.clock).close();
+            }
+            synchronized (GameHost.this) {
+                games.remove(this);
+            }
+            ended.countDown();
+        }
+
+        @Override
+        public String toString() {
+            return "game " + id + (isDone() ? " (ended)" : started ? " (running)" : " (created)") +
+                    ": cpu " + cpuNanos() / 1000000 + " ms, allocated " + allocatedBytes() / 1024 + " KB";
+        }
+    }
+
+    /**
+     * Creates a new headless game (computer players only are recommended).
+     * A game of the same configuration that was released is reused if available.
+     *
+     * @param config - the game's configuration (games of the same configuration share its immutable data).
+     * @return - the game's handle.
+     */
+    public Game create(Config config) {
+        return create(config, null);
+    }
+
+    /**
+     * Creates a new game.
+     *
+     * @param config    - the game's configuration (games of the same configuration share its immutable data).
+     * @param uiFactory - creates the user interface of the game given its players (null for no user interface).
+     * @return - the game's handle.
+     */
+    public synchronized Game create(Config config, Function<Player[], UserInterface> uiFactory) {
+        Deque<Game> released = uiFactory == null ? idle.get(config) : null;
+        Game game;
+        if (released != null && !released.isEmpty()) {
+            game = released.pop();
+            game.prepare();
+        } else
+            game = new Game(nextGameId.getAndIncrement(), config, uiFactory);
+        games.add(game);
+        return game;
+    }
+
+    /**
+     * @return - the metrics of all the games of the host (see GameMetrics::serve and GameMetrics::registerMBean).
+     */
+    public GameMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * @return - the games that did not end yet.
+     */
+    public synchronized List<Game> games() {
+        return new ArrayList<>(games);
+    }
+
+    /**
+     * @return - a report of the CPU time and memory used by each game that did not end yet.
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        for (Game game : games())
+            sb.append(game).append(System.lineSeparator());
+        return sb.toString();
+    }
+
+    /**
+     * Terminates all games and stops the host's threads.
+     */
+    @Override
+    public void close() {
+        for (Game game : games())
+            game.terminate();
+        synchronized (this) {
+            idle.clear();
+        }
+        timers.close();
+        pool.shutdownNow();
+    }
+
+    private synchronized Util util(Config config) {
+        return utils.computeIfAbsent(config, UtilImpl::new);
+    }
+
+    private long threadCpuNanos(Thread thread) {
+        return threadBean.isThreadCpuTimeSupported() ? threadBean.getThreadCpuTime(thread.getId()) : 0;
+    }
+
+    private long threadAllocatedBytes(Thread thread) {
+        if (threadBean instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(thread.getId());
+        return 0;
+    }
+}
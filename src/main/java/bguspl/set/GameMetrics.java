@@ -0,0 +1,280 @@
+package bguspl.set;
+
+import com.sun.net.httpserver.HttpServer;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * The metrics of the games of a process (shared by all of them): claims and verdicts, input and verdict latencies, the
+ * dealer's loop, the players' key presses, the table and the user interface.
+ * Recording is lock-free and does not allocate (counters are LongAdders and latencies are Histograms), so the game
+ * threads record as they go. The metrics are read as a JMX MBean (see registerMBean) and in the Prometheus text format
+ * over HTTP on the loopback address (see serve), both of which only read the counters.
+ * Counters only grow; the latencies are summaries (quantiles, sum and count) of everything recorded so far.
+ */
+public class GameMetrics implements DynamicMBean {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    /**
+     * A counter that any number of threads may add to.
+     */
+    public static class Counter {
+
+        private final LongAdder value = new LongAdder();
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void add(long amount) {
+            value.add(amount);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+
+    /**
+     * A counter or a summary as exposed: its family's name and help, its label (empty for none) and the scale its
+     * values are divided by (e.g. nanoseconds to seconds).
+     */
+    private static class Metric {
+
+        final String name;
+        final String label;
+        final String help;
+        final double scale;
+        final Counter counter; // null for a summary
+        final Histogram histogram; // null for a counter
+
+        Metric(String name, String label, String help, double scale, Counter counter, Histogram histogram) {
+            this.name = name;
+            this.label = label;
+            this.help = help;
+            this.scale = scale;
+            this.counter = counter;
+            this.histogram = histogram;
+        }
+    }
+
+    private final List<Metric> metrics = new ArrayList<>();
+
+    public final Counter gamesStarted = counter("set_games_started_total", "", "Games started", 1);
+    public final Counter gamesFinished = counter("set_games_finished_total", "",
+            "Games that ended by themselves (not terminated or paused)", 1);
+    public final Counter rounds = counter("set_rounds_total", "", "Rounds dealt", 1);
+    public final Counter roundTimeouts = counter("set_round_timeouts_total", "", "Rounds that timed out", 1);
+    public final Counter reshuffles = counter("set_reshuffles_total", "",
+            "Rounds that timed out with no set on the table, so the dead board was reshuffled", 1);
+
+    public final Counter claims = counter("set_claims_total", "", "Sets claimed by the players", 1);
+    public final Counter legalVerdicts = counter("set_verdicts_total", "verdict=\"legal\"",
+            "Verdicts on claimed sets by type (rejected: by the player before reaching the dealer)", 1);
+    public final Counter illegalVerdicts = counter("set_verdicts_total", "verdict=\"illegal\"", null, 1);
+    public final Counter rejectedClaims = counter("set_verdicts_total", "verdict=\"rejected\"", null, 1);
+    public final Histogram claimToVerdict = summary("set_claim_to_verdict_seconds",
+            "Time from a claim reaching the dealer to its verdict", 1e9);
+    public final Histogram keyToToken = summary("set_key_to_token_seconds",
+            "Time from a key press to its token on the table", 1e9);
+    public final Histogram keyToVerdict = summary("set_key_to_verdict_seconds",
+            "Time from the key press that completed a set to the verdict on it", 1e9);
+
+    public final Counter dealerLoops = counter("set_dealer_loop_iterations_total", "",
+            "Iterations of the dealer's loop (once per wake up)", 1);
+    public final Counter dealerBusyNanos = counter("set_dealer_busy_seconds_total", "",
+            "Time the dealer spent working (not waiting) in its loop", 1e9);
+
+    public final Counter keyPresses = counter("set_key_presses_total", "result=\"queued\"",
+            "Key presses by result (ignored: frozen or between rounds, cancelled: the same slot pressed twice or "
+                    + "the queue was full)", 1);
+    public final Counter ignoredKeyPresses = counter("set_key_presses_total", "result=\"ignored\"", null, 1);
+    public final Counter cancelledKeyPresses = counter("set_key_presses_total", "result=\"cancelled\"", null, 1);
+    public final Counter droppedKeyPresses = counter("set_key_presses_dropped_total", "",
+            "Key presses dropped because the player's queue was full", 1);
+    public final Histogram keyPressQueueDepth = summary("set_key_press_queue_depth",
+            "Key presses waiting in the player's queue after a press was queued", 1);
+
+    public final Counter cardsDealt = counter("set_cards_dealt_total", "", "Cards placed on the table", 1);
+    public final Counter cardsRemoved = counter("set_cards_removed_total", "", "Cards removed from the table", 1);
+    public final Counter tokensPlaced = counter("set_tokens_placed_total", "", "Tokens placed on the table", 1);
+    public final Counter tokensRemoved = counter("set_tokens_removed_total", "",
+            "Token removals (of a player's token, or of all the tokens on a slot at once)", 1);
+    public final Counter uiUpdates = counter("set_ui_updates_total", "", "Updates shown by the user interface", 1);
+
+    private MBeanInfo info; // built on first use
+    private final Map<String, Supplier<Object>> attributes = new LinkedHashMap<>();
+
+    private Counter counter(String name, String label, String help, double scale) {
+        Counter counter = new Counter();
+        metrics.add(new Metric(name, label, help, scale, counter, null));
+        return counter;
+    }
+
+    private Histogram summary(String name, String help, double scale) {
+        Histogram histogram = new Histogram();
+        metrics.add(new Metric(name, "", help, scale, null, histogram));
+        return histogram;
+    }
+
+    /**
+     * @return - the metrics in the Prometheus text format (version 0.0.4).
+     */
+    public String scrape() {
+        StringBuilder sb = new StringBuilder(4096);
+        String family = null;
+        for (Metric metric : metrics) {
+            if (!metric.name.equals(family)) {
+                family = metric.name;
+                sb.append("# HELP ").append(family).append(' ').append(metric.help).append('\n');
+                sb.append("# TYPE ").append(family).append(metric.counter != null ? " counter\n" : " summary\n");
+            }
+            if (metric.counter != null) {
+                sb.append(family);
+                if (!metric.label.isEmpty()) sb.append('{').append(metric.label).append('}');
+                sb.append(' ').append(value(metric.counter.get(), metric.scale)).append('\n');
+                continue;
+            }
+            for (double quantile : QUANTILES)
+                sb.append(family).append("{quantile=\"").append(quantile).append("\"} ")
+                        .append(value(metric.histogram.percentile(quantile * 100), metric.scale)).append('\n');
+            sb.append(family).append("_sum ").append(value(metric.histogram.sum(), metric.scale)).append('\n');
+            sb.append(family).append("_count ").append(metric.histogram.count()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String value(long value, double scale) {
+        return scale == 1 ? Long.toString(value) : Double.toString(value / scale);
+    }
+
+    /**
+     * Registers the metrics as an MBean of the platform's MBean server, e.g. to watch them in JConsole.
+     *
+     * @param name - the name of the MBean (e.g. of the process or the host).
+     * @return - the MBean's object name (bguspl.set:type=GameMetrics,name=...).
+     * @throws JMException - if the MBean cannot be registered, e.g. the name is taken.
+     */
+    public ObjectName registerMBean(String name) throws JMException {
+        ObjectName objectName = new ObjectName("bguspl.set:type=GameMetrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    /**
+     * Serves the metrics at http://localhost:(port)/metrics in the Prometheus text format, on a thread of its own.
+     *
+     * @param port - the port (0 for any free port, see HttpServer::getAddress).
+     * @return - the server (see HttpServer::stop).
+     * @throws IOException - if the port cannot be bound.
+     */
+    public HttpServer serve(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", exchange -> {
+            byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.setExecutor(Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "metrics-http");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+        return server;
+    }
+
+    /**
+     * The MBean's attributes, one per counter (e.g. set_verdicts_total_legal) and six per summary (the count, mean,
+     * 50th, 90th and 99th percentiles and max, in seconds for latencies).
+     */
+    @Override
+    public synchronized MBeanInfo getMBeanInfo() {
+        if (info == null) {
+            for (Metric metric : metrics) {
+                if (metric.counter != null) {
+                    String name = metric.label.isEmpty() ? metric.name
+                            : metric.name + "_" + metric.label.replaceAll(".*=\"(.*)\"", "$1");
+                    attributes.put(name, metric.scale == 1 ? metric.counter::get
+                            : () -> metric.counter.get() / metric.scale);
+                    continue;
+                }
+                Histogram histogram = metric.histogram;
+                attributes.put(metric.name + "_count", histogram::count);
+                attributes.put(metric.name + "_mean", () -> histogram.mean() / metric.scale);
+                attributes.put(metric.name + "_p50", () -> histogram.percentile(50) / metric.scale);
+                attributes.put(metric.name + "_p90", () -> histogram.percentile(90) / metric.scale);
+                attributes.put(metric.name + "_p99", () -> histogram.percentile(99) / metric.scale);
+                attributes.put(metric.name + "_max", () -> histogram.max() / metric.scale);
+            }
+            List<MBeanAttributeInfo> infos = new ArrayList<>();
+            for (Map.Entry<String, Supplier<Object>> attribute : attributes.entrySet()) {
+                String type = attribute.getValue().get() instanceof Long ? "long" : "double";
+                infos.add(new MBeanAttributeInfo(attribute.getKey(), type, attribute.getKey(), true, false, false));
+            }
+            info = new MBeanInfo(getClass().getName(), "The metrics of the games",
+                    infos.toArray(new MBeanAttributeInfo[0]), null, new MBeanOperationInfo[0], null);
+        }
+        return info;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        getMBeanInfo();
+        Supplier<Object> value = attributes.get(attribute);
+        if (value == null) throw new AttributeNotFoundException(attribute);
+        return value.get();
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] names) {
+        AttributeList list = new AttributeList();
+        for (String name : names) {
+            try {
+                list.add(new Attribute(name, getAttribute(name)));
+            } catch (AttributeNotFoundException ignored) {} // left out, as the JMX contract allows
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("the metrics are read only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList(); // none are writable
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+}
@@ -0,0 +1,143 @@
+package bguspl.set;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of non-negative values (e.g. latencies in nanoseconds).
+ * Values are counted in log-linear buckets: every power of 2 is split into 16 linear buckets, so a percentile is
+ * accurate to about 6%. Recording a value is a few atomic increments and does not allocate, so any number of threads
+ * may record concurrently.
+ */
+public class Histogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS; // linear buckets per power of 2
+
+    private final AtomicLongArray counts = new AtomicLongArray((Long.SIZE - SUB_BITS + 1) * SUB_BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a value (negative values are recorded as 0).
+     *
+     * @param value - the value.
+     */
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts.incrementAndGet(bucket(value));
+        count.increment();
+        sum.add(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Records the values of another histogram (e.g. to sum up the histograms of many games).
+     *
+     * @param other - the other histogram.
+     */
+    public void add(Histogram other) {
+        for (int i = 0; i < counts.length(); i++) {
+            long n = other.counts.get(i);
+            if (n != 0) counts.addAndGet(i, n);
+        }
+        count.add(other.count.sum());
+        sum.add(other.sum.sum());
+        max.accumulateAndGet(other.max.get(), Math::max);
+    }
+
+    /**
+     * @return - the number of recorded values.
+     */
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * @return - the sum of the recorded values.
+     */
+    public long sum() {
+        return sum.sum();
+    }
+
+    /**
+     * @return - the mean of the recorded values (0 if none).
+     */
+    public double mean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * @return - the largest recorded value (0 if none).
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * @param percentile - the percentile (between 0 and 100).
+     * @return - an upper bound of the value at the percentile, accurate to the bucket's width (0 if none).
+     */
+    public long percentile(double percentile) {
+        long n = 0;
+        for (int i = 0; i < counts.length(); i++)
+            n += counts.get(i);
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank)
+                return Math.min(max.get(), lowest(i + 1) - 1);
+        }
+        return 0;
+    }
+
+    /**
+     * Clears all recorded values. Values recorded concurrently may be partly lost.
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++)
+            counts.set(i, 0);
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    /**
+     * @return - a summary of the values, taken as nanoseconds and displayed in milliseconds.
+     */
+    @Override
+    public String toString() {
+        return toString(1e6, "ms");
+    }
+
+    /**
+     * @param scale - the values are divided by the scale for display.
+     * @param unit  - the unit displayed after each value.
+     * @return - a summary of the values.
+     */
+    public String toString(double scale, String unit) {
+        return String.format("n=%d mean=%.3f%s p50=%.3f%s p90=%.3f%s p99=%.3f%s max=%.3f%s", count(), mean() / scale,
+                unit, percentile(50) / scale, unit, percentile(90) / scale, unit, percentile(99) / scale, unit,
+                max() / scale, unit);
+    }
+
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return ((shift + 1) << SUB_BITS) + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    /**
+     * @return - the lowest value counted in the bucket.
+     */
+    private static long lowest(int bucket) {
+        int group = bucket >>> SUB_BITS, sub = bucket & (SUB_BUCKETS - 1);
+        if (group == 0) return sub;
+        if (group > Long.SIZE - SUB_BITS) return Long.MAX_VALUE; // past the last bucket
+        return (long) (SUB_BUCKETS + sub) << (group - 1);
+    }
+}
@@ -5,6 +5,7 @@ import bguspl.set.ex.Player;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.util.Arrays;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -39,12 +40,16 @@ class InputManager extends KeyAdapter {
 
     @Override
     public void keyPressed(KeyEvent e) {
-        // dispatch the key event to the player according to the key map
+        // stamp the key press: the event's time is in wall clock milliseconds, so take the time it waited for the
+        // event thread off the current nano time
+        long pressed = System.nanoTime() - Math.max(0, System.currentTimeMillis() - e.getWhen()) * 1000000;
+        // dispatch the key event to the player according to the key map (never blocks the event thread)
         int keyCode = e.getKeyCode();
-        int player = keyMap[keyCode] - 1;
+        int player = keyCode < keyMap.length ? keyMap[keyCode] - 1 : -1;
         if (player >= 0){
-            logger.severe("key " + keyCode + " was pressed by player " + (player + 1));
-            players[player].keyPressed(keyToSlot[keyCode]);
+            if (logger.isLoggable(Level.FINE))
+                logger.log(Level.FINE, "key {0,number,#} was pressed by player {1,number,#}", new Object[]{keyCode, player + 1});
+            players[player].keyPressed(keyToSlot[keyCode], pressed);
         }
     }
 }
@@ -0,0 +1,540 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only binary journal of what happens in the games (key presses, deals, tokens, claims, verdicts, freezes,
+ * round ends).
+ * The records are written to memory-mapped files ("segments") of a fixed size, so appending a record is a few memory
+ * writes with no system calls: a thread reserves room for its record with an atomic add, so any number of threads may
+ * append at once. When a segment is full the journal rolls to the next one, which is mapped in advance by a
+ * background thread (that also forces the full segment to the disk).
+ * Each record carries a CRC32 checksum and its length is written last, so after a crash the journal is read up to the
+ * last complete record of each segment (see read).
+ * A record: length (int, of what follows the checksum), CRC32 (int), sequence (long), time (long, of the game's clock),
+ * type (byte), count (short) and count values (int).
+ * The records can also be handed to a consumer as they are appended (see tap), e.g. to analyze the games live, with or
+ * without writing them to files. The consumer runs on a thread of its own and reads the records from a ring, as the
+ * subscribers of the EventBus do, so the tap neither serializes the appends nor slows them down.
+ */
+public class Journal implements AutoCloseable {
+
+    /**
+     * The types of records and their values.
+     */
+    public enum Type {
+        GAME_START, // seed (2 values, high first), players, rows, columns
+        DEAL, // slot, card
+        REMOVE_CARD, // slot, card
+        TOKEN, // player (-1 for the tokens of all the players), slot, 1 if placed or 0 if removed
+        CLAIM, // player
+        VERDICT, // player, 1 if legal or 0 if not, then the cards of the player's tokens
+        FREEZE, // player, milliseconds
+        ROUND_END, // rounds so far, 1 if the countdown timed out or 0 otherwise
+        GAME_END, // the winners
+        KEY // player, slot (the key presses that the game took, not the ignored ones)
+    }
+
+    /**
+     * A journal that records nothing.
+     */
+    public static final Journal DISABLED = new Journal();
+
+    private static final int HEADER = 8; // the length and the checksum
+    private static final int FIXED = 19; // sequence, time, type and count
+    private static final int END_OF_SEGMENT = -1; // in place of a length: the rest of the segment is unused
+    private static final String SUFFIX = ".journal";
+    private static final int TAP_CAPACITY = 1 << 16; // the records the tap may fall behind before it skips records
+    private static final long DRAIN_TIMEOUT_MILLIS = 5000; // how long drain waits for the tap to catch up
+
+    private final boolean enabled;
+    private final Logger logger;
+    private final Clock clock;
+    private final Path directory;
+    private final String run; // the name of this run's segments: <run>-<index>.journal
+    private final int segmentBytes;
+    private final AtomicLong sequence = new AtomicLong();
+    private final ExecutorService roller; // maps the next segment and forces the full ones, off the game threads
+    private final ThreadLocal<CRC32> checksums = ThreadLocal.withInitial(CRC32::new);
+    private volatile Segment current;
+    private Future<Segment> spare; // the next segment, mapped in advance (guarded by this)
+    private volatile boolean closed;
+    private volatile Tap tap; // null for none
+
+    private static class Segment {
+        final int index;
+        final Path path;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        final AtomicInteger position = new AtomicInteger(); // the start of the next record (may pass the end)
+
+        Segment(int index, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.index = index;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+
+    private Journal() {
+        enabled = false;
+        logger = null;
+        clock = null;
+        directory = null;
+        run = null;
+        segmentBytes = 0;
+        roller = null;
+    }
+
+    /**
+     * Starts a new run of the journal in the directory.
+     *
+     * @param clock        - stamps the records.
+     * @param directory    - the directory of the segments (created if needed).
+     * @param segmentBytes - the size of a segment.
+     * @throws IOException - if the first segment cannot be created.
+     */
+    public Journal(Logger logger, Clock clock, Path directory, int segmentBytes) throws IOException {
+        enabled = true;
+        this.logger = logger;
+        this.clock = clock;
+        this.directory = directory;
+        this.segmentBytes = Math.max(segmentBytes, 1 << 12);
+        Files.createDirectories(directory);
+        run = "run-" + System.currentTimeMillis();
+        roller = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "journal-roller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        current = map(0);
+        spare = roller.submit(() -> map(1));
+    }
+
+    /**
+     * Starts a journal that writes no files: it only hands the records to its tap (see tap).
+     *
+     * @param clock - stamps the records.
+     */
+    public Journal(Logger logger, Clock clock) {
+        enabled = true;
+        this.logger = logger;
+        this.clock = clock;
+        directory = null;
+        run = null;
+        segmentBytes = 0;
+        roller = null;
+    }
+
+    /**
+     * Hands the records to a consumer on a thread of its own, in the order of their sequence.
+     * Appending a record writes it to a ring and never waits for the consumer; a consumer that falls a whole ring
+     * behind skips the records that were overwritten (they are counted, and logged by drain).
+     */
+    private class Tap {
+
+        private final Consumer<Record> consumer;
+        private final AtomicReferenceArray<Record> ring = new AtomicReferenceArray<>(TAP_CAPACITY);
+        private final Thread thread;
+        private volatile boolean waiting; // true while the consumer waits for a record (or is about to)
+        private volatile long position = -1; // the sequence of the next record to hand over (-1 until started)
+        private volatile long skipped;
+        private volatile boolean cancelled;
+
+        private Tap(Consumer<Record> consumer) {
+            this.consumer = consumer;
+            thread = new Thread(this::deliverAll, "journal-tap");
+            thread.setDaemon(true);
+        }
+
+        private void start(long position) {
+            this.position = position;
+            thread.start();
+        }
+
+        private void publish(Record record) {
+            int index = (int) record.sequence & (TAP_CAPACITY - 1);
+            Record previous;
+            do { // unless later records lapped this one meanwhile (then it is skipped)
+                previous = ring.get(index);
+                if (previous != null && previous.sequence > record.sequence) return;
+            } while (!ring.compareAndSet(index, previous, record));
+            if (waiting) {
+                waiting = false;
+                LockSupport.unpark(thread);
+            }
+        }
+
+        private void cancel() {
+            cancelled = true;
+            LockSupport.unpark(thread);
+        }
+
+        /**
+         * The loop of the tap's thread.
+         */
+        private void deliverAll() {
+            long p = position;
+            while (!cancelled) {
+                Record record = ring.get((int) p & (TAP_CAPACITY - 1));
+                if (record == null || record.sequence < p) { // not appended yet
+                    waiting = true; // announce the wait before looking again, so the appender cannot miss it
+                    record = ring.get((int) p & (TAP_CAPACITY - 1));
+                    if ((record == null || record.sequence < p) && !cancelled)
+                        LockSupport.park(this);
+                    waiting = false;
+                    continue;
+                }
+                if (record.sequence > p) { // overwritten: skip to the oldest record that may still be in the ring
+                    long oldest = Math.max(p + 1, sequence.get() - (TAP_CAPACITY - 1));
+                    skipped += oldest - p;
+                    position = p = oldest;
+                    continue;
+                }
+                try {
+                    consumer.accept(record);
+                } catch (RuntimeException e) {
+                    logger.log(Level.SEVERE, "journal tap failed on record " + record, e);
+                }
+                position = ++p;
+            }
+        }
+    }
+
+    /**
+     * Hands every record appended from now on to the consumer, in the order of the records' sequence, on a thread of
+     * its own (see drain). Replaces the previous consumer, if any. The journal DISABLED has no records.
+     *
+     * @param consumer - the consumer (null for none).
+     */
+    public synchronized void tap(Consumer<Record> consumer) {
+        if (!enabled) return;
+        Tap previous = tap;
+        if (previous != null) previous.cancel();
+        if (consumer == null) {
+            tap = null;
+            return;
+        }
+        Tap next = new Tap(consumer);
+        tap = next;
+        // the appenders read the tap after taking their sequence, so from here on every record reaches the new tap
+        next.start(sequence.get());
+    }
+
+    /**
+     * Waits (for a while) until the tap has handled the records that were appended so far, e.g. to read the analysis
+     * of a game that ended.
+     */
+    public void drain() {
+        Tap current = tap;
+        if (current == null) return;
+        long end = System.currentTimeMillis() + DRAIN_TIMEOUT_MILLIS, last = sequence.get();
+        while (current.position < last && System.currentTimeMillis() < end && !current.cancelled)
+            LockSupport.parkNanos(1000000);
+        if (current.position < last)
+            logger.severe("warning: the journal tap did not handle " + (last - current.position) + " records");
+        if (current.skipped > 0)
+            logger.severe("warning: the journal tap skipped " + current.skipped + " records so far");
+    }
+
+    /**
+     * @return - the name of this run (see read), or null if the journal writes no files.
+     */
+    public String run() {
+        return run;
+    }
+
+    /**
+     * @return - true iff the journal records (false for DISABLED).
+     */
+    public boolean enabled() {
+        return enabled;
+    }
+
+    public void append(Type type) {
+        write(type, 0, 0, 0, 0, null);
+    }
+
+    public void append(Type type, int a) {
+        write(type, 1, a, 0, 0, null);
+    }
+
+    public void append(Type type, int a, int b) {
+        write(type, 2, a, b, 0, null);
+    }
+
+    public void append(Type type, int a, int b, int c) {
+        write(type, 3, a, b, c, null);
+    }
+
+    /**
+     * Appends a record of the values a and b followed by the values in the array.
+     */
+    public void append(Type type, int a, int b, int[] values) {
+        write(type, -1, a, b, 0, values);
+    }
+
+    /**
+     * Appends a record of the values in the array.
+     */
+    public void append(Type type, int[] values) {
+        write(type, -2, 0, 0, 0, values);
+    }
+
+    /**
+     * @param count - the number of the values a, b and c to write, or -1 for a, b and then values, or -2 for values
+     *              only.
+     */
+    private void write(Type type, int count, int a, int b, int c, int[] values) {
+        if (!enabled || closed) return;
+        int fixedCount = count >= 0 ? count : count == -1 ? 2 : 0;
+        int total = fixedCount + (values == null ? 0 : values.length);
+        int size = HEADER + FIXED + total * Integer.BYTES;
+        long seq = sequence.getAndIncrement(), time = clock.currentTimeMillis();
+        Tap tap = this.tap; // after taking the sequence (see tap)
+        if (tap != null) {
+            int[] all = new int[total];
+            if (fixedCount > 0) all[0] = a;
+            if (fixedCount > 1) all[1] = b;
+            if (fixedCount > 2) all[2] = c;
+            if (values != null) System.arraycopy(values, 0, all, fixedCount, values.length);
+            tap.publish(new Record(seq, time, type, all));
+        }
+        if (directory == null) return; // the records go to the tap only
+        while (true) {
+            Segment segment = current;
+            int at = segment.position.getAndAdd(size);
+            if (at >= 0 && at <= segmentBytes - size) {
+                ByteBuffer buffer = segment.buffer.duplicate();
+                buffer.position(at + HEADER);
+                buffer.putLong(seq).putLong(time).put((byte) type.ordinal()).putShort((short) total);
+                if (fixedCount > 0) buffer.putInt(a);
+                if (fixedCount > 1) buffer.putInt(b);
+                if (fixedCount > 2) buffer.putInt(c);
+                if (values != null)
+                    for (int value : values) buffer.putInt(value);
+                buffer.limit(buffer.position()).position(at + HEADER);
+                CRC32 checksum = checksums.get();
+                checksum.reset();
+                checksum.update(buffer);
+                segment.buffer.putInt(at + Integer.BYTES, (int) checksum.getValue());
+                segment.buffer.putInt(at, size - HEADER); // last, so the record counts only once it is complete
+                return;
+            }
+            if (at >= 0 && at <= segmentBytes - Integer.BYTES) // the first record that did not fit marks the end
+                segment.buffer.putInt(at, END_OF_SEGMENT);
+            roll(segment);
+            if (closed) return;
+        }
+    }
+
+    /**
+     * Makes the next segment the current one, unless another thread did already.
+     */
+    private synchronized void roll(Segment full) {
+        if (current != full || closed) return;
+        try {
+            Segment next = spare.get();
+            current = next;
+            roller.execute(() -> {
+                full.buffer.force();
+                closeQuietly(full.channel);
+            });
+            spare = roller.submit(() -> map(next.index + 1));
+        } catch (InterruptedException | ExecutionException e) {
+            logger.log(Level.SEVERE, "cannot roll the journal to a new segment, closing it", e);
+            closed = true;
+            if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+        }
+    }
+
+    private Segment map(int index) throws IOException {
+        Path path = directory.resolve(String.format("%s-%06d%s", run, index, SUFFIX));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        return new Segment(index, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes));
+    }
+
+    /**
+     * Stops recording, waits for the tap to handle the records (see drain), forces the records to the disk and removes
+     * the spare segment. Records that are being appended while the journal closes may be lost.
+     */
+    @Override
+    public synchronized void close() {
+        if (!enabled || closed) return;
+        closed = true;
+        if (tap != null) {
+            drain();
+            tap.cancel();
+            tap = null;
+        }
+        if (directory == null) return;
+        Segment last = current;
+        last.buffer.force();
+        try {
+            last.channel.truncate(Math.min(last.position.get(), segmentBytes)); // the rest is unused
+        } catch (IOException ignored) { // e.g. a platform that cannot truncate a mapped file
+        }
+        closeQuietly(last.channel);
+        try {
+            Segment unused = spare.get();
+            closeQuietly(unused.channel);
+            Files.deleteIfExists(unused.path);
+        } catch (InterruptedException | ExecutionException | IOException e) {
+            logger.log(Level.WARNING, "cannot remove the spare journal segment", e);
+        }
+        roller.shutdown();
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * A record that was read from the journal.
+     */
+    public static class Record {
+
+        public final long sequence;
+        public final long time;
+        public final Type type;
+        private final int[] values;
+
+        private Record(long sequence, long time, Type type, int[] values) {
+            this.sequence = sequence;
+            this.time = time;
+            this.type = type;
+            this.values = values;
+        }
+
+        /**
+         * @return - the number of values.
+         */
+        public int count() {
+            return values.length;
+        }
+
+        /**
+         * @return - the value at the index.
+         */
+        public int value(int index) {
+            return values[index];
+        }
+
+        /**
+         * @return - the values from the index to the end.
+         */
+        public int[] values(int from) {
+            int[] copy = new int[values.length - from];
+            System.arraycopy(values, from, copy, 0, copy.length);
+            return copy;
+        }
+
+        /**
+         * @return - true iff the other record is of the same type with the same values (at any time and sequence).
+         */
+        public boolean sameAs(Record other) {
+            return type == other.type && Arrays.equals(values, other.values);
+        }
+
+        @Override
+        public String toString() {
+            return "#" + sequence + " " + time + " " + type + " " + Arrays.toString(values);
+        }
+    }
+
+    /**
+     * @param directory - the directory of the journal.
+     * @return - the latest run in the directory, or null if there is none.
+     * @throws IOException - if the directory cannot be listed.
+     */
+    public static String latestRun(Path directory) throws IOException {
+        String latest = null;
+        for (Path segment : segments(directory, null)) {
+            String name = segment.getFileName().toString();
+            String run = name.substring(0, name.lastIndexOf('-'));
+            if (latest == null || Long.parseLong(run.substring(4)) > Long.parseLong(latest.substring(4)))
+                latest = run;
+        }
+        return latest;
+    }
+
+    /**
+     * Reads the records of a run, in the order of their sequence.
+     * A segment is read up to its first incomplete or damaged record (e.g. after a crash), and reading continues with
+     * the next segment.
+     *
+     * @param directory - the directory of the journal.
+     * @param run       - the run (see run and latestRun).
+     * @return - the complete records of the run.
+     * @throws IOException - if a segment cannot be read.
+     */
+    public static List<Record> read(Path directory, String run) throws IOException {
+        List<Record> records = new ArrayList<>();
+        Type[] types = Type.values();
+        CRC32 checksum = new CRC32();
+        for (Path path : segments(directory, run)) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                while (buffer.remaining() >= HEADER) {
+                    int at = buffer.position();
+                    int length = buffer.getInt(), expected = buffer.getInt();
+                    if (length < FIXED || length > buffer.remaining()) break; // the end, or an incomplete record
+                    ByteBuffer body = buffer.duplicate();
+                    body.limit(at + HEADER + length);
+                    checksum.reset();
+                    checksum.update(body);
+                    if ((int) checksum.getValue() != expected) break; // damaged
+                    long seq = buffer.getLong(), time = buffer.getLong();
+                    int type = buffer.get(), count = buffer.getShort();
+                    if (type < 0 || type >= types.length || count < 0 || FIXED + count * Integer.BYTES != length) break;
+                    int[] values = new int[count];
+                    for (int i = 0; i < count; i++)
+                        values[i] = buffer.getInt();
+                    records.add(new Record(seq, time, types[type], values));
+                }
+            }
+        }
+        records.sort(Comparator.comparingLong(record -> record.sequence)); // threads may write out of order
+        return records;
+    }
+
+    /**
+     * @return - the segments of the run (of all the runs if null), in order.
+     */
+    private static List<Path> segments(Path directory, String run) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, (run == null ? "run-*" : run + "-*") + SUFFIX)) {
+            for (Path path : stream)
+                segments.add(path);
+        }
+        segments.sort(Comparator.comparing(path -> path.getFileName().toString()));
+        return segments;
+    }
+}
@@ -0,0 +1,76 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Measures the time to append a record to the journal (a token record, the most common one), with threads appending at
+ * once as the players of a game do, and checks that all the records are read back.
+ * The journal is written to a temporary directory that is removed at the end. The threads stop after the time is over
+ * or after RECORDS records (so that they can be read back into memory).
+ * Usage: JournalBenchmark [threads] [seconds] [segment megabytes]
+ */
+public class JournalBenchmark {
+
+    private static final long RECORDS = 4000000;
+
+    /**
+     * The benchmark's main function.
+     *
+     * @param args - [threads] [seconds] [segment megabytes].
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 128;
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 5;
+        int segmentMegabytes = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+        Path directory = Files.createTempDirectory("journal-benchmark");
+        Journal journal = new Journal(Logger.getAnonymousLogger(), new SystemClock(), directory, segmentMegabytes << 20);
+
+        AtomicLong appended = new AtomicLong(), claimed = new AtomicLong(), busyNanos = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1), done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            int player = i;
+            new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long count = 0, begin = System.nanoTime(), end = begin + (long) (seconds * 1e9), now;
+                do {
+                    if (claimed.addAndGet(100) > RECORDS) {
+                        now = System.nanoTime();
+                        break;
+                    }
+                    for (int j = 0; j < 100; j++, count++)
+                        journal.append(Journal.Type.TOKEN, player, (int) (count % 12), (int) (count & 1));
+                } while ((now = System.nanoTime()) < end);
+                appended.addAndGet(count);
+                busyNanos.addAndGet(now - begin);
+                done.countDown();
+            }).start();
+        }
+        start.countDown();
+        done.await();
+        journal.close();
+
+        List<Journal.Record> records = Journal.read(directory, journal.run());
+        long size = 0;
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory)) {
+            for (Path segment : segments) {
+                size += Files.size(segment);
+                Files.delete(segment);
+            }
+        }
+        Files.delete(directory);
+        System.out.printf("%d threads  %.1f ns per append (per thread)  %.2f million records per second  "
+                        + "%d of %d records read back  %.1f MB%n", threads, (double) busyNanos.get() / appended.get(),
+                appended.get() * 1e3 / busyNanos.get() * threads, records.size(), appended.get(), size / 1e6);
+    }
+}
@@ -0,0 +1,559 @@
+package bguspl.set;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * The standings of the players across games, kept in a directory: the games played, wins, points, penalties and rating
+ * of each player (by name). The rating is an Elo rating: after each game every two players are compared by their
+ * scores, as if they played each other.
+ * The results of the games are appended to a log ("results.log"), and every CHECKPOINT_BYTES of log the standings of
+ * all players are written to a segment ("summary-(log offset).segment") sorted by rating, so opening the leaderboard
+ * reads the latest segment and only the end of the log. The standings are kept in memory, indexed by name and by
+ * rating: the players are grouped by steps of rating, with a Fenwick tree of the number of players per step, so
+ * recording a game, the top players, the rank and the rating of a player take microseconds however many games were
+ * played (a step holds few players).
+ * Any number of threads may record results and query at once (e.g. the games of a GameHost or a TournamentRunner).
+ * The log is not forced to disk after each result, only at checkpoints and on close, so a crash of the machine (but not
+ * of the process) may lose the last results. A damaged end of the log is dropped when the leaderboard is opened.
+ * Log record: length (int, of the body), CRC32 of the body (int), then the body: time (long, of the system clock),
+ * the number of players (short) and per player: name (short length and UTF-8 bytes), score and penalties (ints).
+ */
+public class Leaderboard implements AutoCloseable {
+
+    public static final double INITIAL_RATING = 1500;
+    private static final double K_FACTOR = 32; // the most a rating changes against a single opponent
+    private static final long CHECKPOINT_BYTES = 16 << 20;
+    private static final int SEGMENT_MAGIC = 0x4c424453; // "LBDS"
+    private static final int SEGMENT_VERSION = 1;
+    private static final int STEPS_PER_POINT = 16; // the players are indexed by their rating in steps of 1/16 points
+    private static final int STEPS = 8192 * STEPS_PER_POINT; // ratings of 8192 and higher are in the top step
+
+    /**
+     * The standing of a player.
+     */
+    public static class Standing {
+
+        public final String player;
+        public final int rank; // 1 for the highest rating
+        public final double rating;
+        public final long games;
+        public final long wins;
+        public final long points;
+        public final long penalties;
+
+        Standing(Entry entry, int rank) {
+            player = entry.player;
+            this.rank = rank;
+            rating = entry.rating;
+            games = entry.games;
+            wins = entry.wins;
+            points = entry.points;
+            penalties = entry.penalties;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d. %s: rating %.1f, %d games, %d wins, %d points, %d penalties", rank, player, rating,
+                    games, wins, points, penalties);
+        }
+    }
+
+    /**
+     * The mutable standing of a player (guarded by the leaderboard's lock).
+     */
+    private static class Entry {
+
+        final String player;
+        double rating;
+        long games, wins, points, penalties;
+        int index = -1; // in the list of its step (-1 if not in one)
+
+        Entry(String player, double rating) {
+            this.player = player;
+            this.rating = rating;
+        }
+    }
+
+    // the highest rating first, then by name
+    private static final Comparator<Entry> BY_RATING = (a, b) -> {
+        int byRating = Double.compare(b.rating, a.rating);
+        return byRating != 0 ? byRating : a.player.compareTo(b.player);
+    };
+
+    private final Logger logger;
+    private final Path directory;
+    private final FileChannel log;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Entry> byName = new HashMap<>();
+    @SuppressWarnings("unchecked")
+    private final List<Entry>[] bySteps = (List<Entry>[]) new List<?>[STEPS]; // the players of each step, in no order
+    private final int[] perStep = new int[STEPS + 1]; // a Fenwick tree of the number of players per step
+
+    private long results; // the number of games recorded
+    private long logBytes; // the size of the log
+    private long checkpointBytes; // the size of the log at the latest segment
+
+    /**
+     * Opens the leaderboard in the directory, creating it if needed.
+     *
+     * @param logger    - for warnings about damaged files.
+     * @param directory - the directory of the leaderboard.
+     * @throws IOException - if the directory or the log cannot be opened.
+     */
+    public Leaderboard(Logger logger, Path directory) throws IOException {
+        this.logger = logger;
+        this.directory = directory;
+        Files.createDirectories(directory);
+        log = FileChannel.open(directory.resolve("results.log"), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        load();
+    }
+
+    /**
+     * Records the result of a game.
+     *
+     * @param players   - the names of the players.
+     * @param scores    - the score of each player.
+     * @param penalties - the number of penalties of each player.
+     * @throws IOException - if the result cannot be written to the log (then it is not recorded).
+     * @throws IllegalArgumentException - if the arrays are not of the same length.
+     */
+    public void record(String[] players, int[] scores, int[] penalties) throws IOException {
+        if (scores.length != players.length || penalties.length != players.length)
+            throw new IllegalArgumentException("the result of " + players.length + " players has " + scores.length
+                    + " scores and " + penalties.length + " penalties");
+        ByteBuffer body = encode(System.currentTimeMillis(), players, scores, penalties); // outside the lock
+        lock.writeLock().lock();
+        try {
+            while (body.hasRemaining())
+                log.write(body, logBytes + body.position());
+            logBytes += body.limit();
+            apply(players, scores, penalties);
+            if (logBytes - checkpointBytes >= CHECKPOINT_BYTES)
+                checkpoint();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param k - the number of players.
+     * @return - the standings of the k players with the highest ratings, in order.
+     */
+    public List<Standing> top(int k) {
+        lock.readLock().lock();
+        try {
+            List<Standing> top = new ArrayList<>(Math.min(k, byName.size()));
+            int ahead = 0;
+            while (top.size() < k && ahead < byName.size()) {
+                List<Entry> step = sorted(find(byName.size() - ahead)); // the step of the next player
+                for (int i = 0; i < step.size() && top.size() < k; i++)
+                    top.add(new Standing(step.get(i), ahead + i + 1));
+                ahead += step.size();
+            }
+            return top;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param player - the name of the player.
+     * @return - the standing of the player, or null if the player did not play yet.
+     */
+    public Standing standing(String player) {
+        lock.readLock().lock();
+        try {
+            Entry entry = byName.get(player);
+            return entry == null ? null : new Standing(entry, rank(entry));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param player - the name of the player.
+     * @return - the rank of the player (1 for the highest rating), or 0 if the player did not play yet.
+     */
+    public int rank(String player) {
+        lock.readLock().lock();
+        try {
+            Entry entry = byName.get(player);
+            return entry == null ? 0 : rank(entry);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param player - the name of the player.
+     * @return - the rating of the player (INITIAL_RATING if the player did not play yet).
+     */
+    public double rating(String player) {
+        lock.readLock().lock();
+        try {
+            Entry entry = byName.get(player);
+            return entry == null ? INITIAL_RATING : entry.rating;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return - the number of games recorded.
+     */
+    public long results() {
+        lock.readLock().lock();
+        try {
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return - the number of players who played.
+     */
+    public int players() {
+        lock.readLock().lock();
+        try {
+            return byName.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes a segment of the standings now, and forces the log and the segment to disk.
+     *
+     * @throws IOException - if the segment cannot be written.
+     */
+    public void checkpoint() throws IOException {
+        lock.writeLock().lock();
+        try {
+            log.force(false);
+            Path segment = directory.resolve(String.format("summary-%016x.segment", logBytes));
+            Path temp = directory.resolve(segment.getFileName() + ".tmp");
+            CheckedOutputStream checked = new CheckedOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16), new CRC32());
+            try (DataOutputStream out = new DataOutputStream(checked)) {
+                out.writeInt(SEGMENT_MAGIC);
+                out.writeInt(SEGMENT_VERSION);
+                out.writeLong(logBytes);
+                out.writeLong(results);
+                out.writeInt(byName.size());
+                for (int s = STEPS - 1; s >= 0; s--) {
+                    if (bySteps[s] == null || bySteps[s].isEmpty()) continue;
+                    for (Entry entry : sorted(s)) {
+                        out.writeUTF(entry.player);
+                        out.writeDouble(entry.rating);
+                        out.writeLong(entry.games);
+                        out.writeLong(entry.wins);
+                        out.writeLong(entry.points);
+                        out.writeLong(entry.penalties);
+                    }
+                }
+                out.writeInt((int) checked.getChecksum().getValue());
+            }
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temp, segment, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            checkpointBytes = logBytes;
+            for (Path old : segments().values()) // the new segment covers all of them
+                if (!old.equals(segment)) Files.delete(old);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes a segment (if there are results since the latest one) and closes the log.
+     */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (logBytes > checkpointBytes) checkpoint();
+            log.close();
+        } catch (IOException e) {
+            logger.severe("warning: cannot close the leaderboard in " + directory + ": " + e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reads the latest segment that is valid and the results logged after it. A damaged end of the log is dropped.
+     */
+    private void load() throws IOException {
+        long logSize = log.size();
+        for (Map.Entry<Long, Path> segment : segments().descendingMap().entrySet()) {
+            if (segment.getKey() > logSize) continue; // a segment of a log that was removed
+            try {
+                readSegment(segment.getValue());
+                checkpointBytes = logBytes = segment.getKey();
+                break;
+            } catch (IOException e) {
+                logger.severe("warning: ignoring the damaged leaderboard segment " + segment.getValue() + ": " + e);
+                clear();
+            }
+        }
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(log.position(logBytes)), 1 << 16));
+        byte[] body = new byte[256];
+        CRC32 checksum = new CRC32();
+        while (logBytes < logSize) {
+            try {
+                int length = in.readInt(), crc = in.readInt();
+                if (length < 10 || length > logSize - logBytes - 8)
+                    break;
+                if (body.length < length)
+                    body = new byte[Math.max(length, body.length * 2)];
+                in.readFully(body, 0, length);
+                checksum.reset();
+                checksum.update(body, 0, length);
+                if ((int) checksum.getValue() != crc)
+                    break;
+                decode(ByteBuffer.wrap(body, 0, length));
+                logBytes += 8 + length;
+            } catch (EOFException e) {
+                break;
+            }
+        }
+        if (logBytes < logSize) {
+            logger.severe("warning: dropping the damaged end of the leaderboard log in " + directory + " ("
+                    + (logSize - logBytes) + " bytes)");
+            log.truncate(logBytes);
+        }
+    }
+
+    private void readSegment(Path segment) throws IOException {
+        CheckedInputStream checked = new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(segment), 1 << 16), new CRC32());
+        try (DataInputStream in = new DataInputStream(checked)) {
+            if (in.readInt() != SEGMENT_MAGIC || in.readInt() != SEGMENT_VERSION)
+                throw new IOException("not a leaderboard segment of version " + SEGMENT_VERSION);
+            in.readLong(); // the log offset, also in the file's name
+            results = in.readLong();
+            int players = in.readInt();
+            for (int i = 0; i < players; i++) {
+                Entry entry = new Entry(in.readUTF(), in.readDouble());
+                entry.games = in.readLong();
+                entry.wins = in.readLong();
+                entry.points = in.readLong();
+                entry.penalties = in.readLong();
+                add(entry);
+            }
+            int expected = (int) checked.getChecksum().getValue();
+            if (in.readInt() != expected)
+                throw new IOException("checksum mismatch");
+        }
+    }
+
+    /**
+     * @return - the segments in the directory by the log offset they cover.
+     */
+    private TreeMap<Long, Path> segments() throws IOException {
+        TreeMap<Long, Path> segments = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "summary-*.segment")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    segments.put(Long.parseLong(name.substring(8, name.length() - 8), 16), file);
+                } catch (NumberFormatException ignored) {}
+            }
+        }
+        return segments;
+    }
+
+    private ByteBuffer encode(long time, String[] players, int[] scores, int[] penalties) {
+        int size = 8 + 8 + 2;
+        byte[][] names = new byte[players.length][];
+        for (int i = 0; i < players.length; i++) {
+            names[i] = players[i].getBytes(StandardCharsets.UTF_8);
+            size += 2 + names[i].length + 8;
+        }
+        ByteBuffer record = ByteBuffer.allocate(size);
+        record.putInt(size - 8).putInt(0).putLong(time).putShort((short) players.length); // the checksum comes last
+        for (int i = 0; i < players.length; i++)
+            record.putShort((short) names[i].length).put(names[i]).putInt(scores[i]).putInt(penalties[i]);
+        CRC32 checksum = new CRC32();
+        checksum.update(record.array(), 8, size - 8);
+        record.putInt(4, (int) checksum.getValue());
+        record.flip();
+        return record;
+    }
+
+    private void decode(ByteBuffer body) {
+        body.getLong(); // the time
+        int count = body.getShort();
+        String[] players = new String[count];
+        int[] scores = new int[count], penalties = new int[count];
+        for (int i = 0; i < count; i++) {
+            byte[] name = new byte[body.getShort()];
+            body.get(name);
+            players[i] = new String(name, StandardCharsets.UTF_8);
+            scores[i] = body.getInt();
+            penalties[i] = body.getInt();
+        }
+        apply(players, scores, penalties);
+    }
+
+    /**
+     * Updates the standings with the result of a game (guarded by the write lock).
+     */
+    private void apply(String[] players, int[] scores, int[] penalties) {
+        results++;
+        Entry[] entries = new Entry[players.length];
+        int best = Integer.MIN_VALUE;
+        for (int i = 0; i < players.length; i++) {
+            entries[i] = byName.get(players[i]);
+            if (entries[i] == null) {
+                entries[i] = new Entry(players[i], INITIAL_RATING);
+                add(entries[i]);
+            }
+            best = Math.max(best, scores[i]);
+        }
+        double[] change = new double[players.length];
+        for (int i = 0; i < players.length; i++)
+            for (int j = i + 1; j < players.length; j++) {
+                if (entries[i] == entries[j]) continue; // the same name twice
+                double expected = 1 / (1 + Math.pow(10, (entries[j].rating - entries[i].rating) / 400));
+                double actual = scores[i] > scores[j] ? 1 : scores[i] == scores[j] ? 0.5 : 0;
+                double delta = K_FACTOR / Math.max(1, players.length - 1) * (actual - expected);
+                change[i] += delta;
+                change[j] -= delta;
+            }
+        for (int i = 0; i < players.length; i++) {
+            Entry entry = entries[i];
+            remove(entry);
+            entry.rating += change[i];
+            entry.games++;
+            if (scores[i] == best) entry.wins++;
+            entry.points += scores[i];
+            entry.penalties += penalties[i];
+            add(entry);
+        }
+    }
+
+    private void add(Entry entry) {
+        byName.put(entry.player, entry);
+        int step = step(entry.rating);
+        if (bySteps[step] == null) bySteps[step] = new ArrayList<>(4);
+        entry.index = bySteps[step].size();
+        bySteps[step].add(entry);
+        for (int i = step + 1; i <= STEPS; i += i & -i)
+            perStep[i]++;
+    }
+
+    private void remove(Entry entry) {
+        int step = step(entry.rating);
+        List<Entry> players = bySteps[step];
+        Entry last = players.remove(players.size() - 1); // the last one takes the place of the removed one
+        if (last != entry) {
+            players.set(entry.index, last);
+            last.index = entry.index;
+        }
+        entry.index = -1;
+        for (int i = step + 1; i <= STEPS; i += i & -i)
+            perStep[i]--;
+    }
+
+    private void clear() {
+        byName.clear();
+        Arrays.fill(bySteps, null);
+        Arrays.fill(perStep, 0);
+        results = 0;
+    }
+
+    /**
+     * @return - the rank of the player: one more than the number of players of higher steps, and of players of the same
+     * step ahead of it.
+     */
+    private int rank(Entry entry) {
+        int step = step(entry.rating), rank = byName.size() + 1;
+        for (int i = step + 1; i > 0; i -= i & -i) // minus the players of this step and below
+            rank -= perStep[i];
+        for (Entry other : bySteps[step])
+            if (BY_RATING.compare(other, entry) < 0) rank++;
+        return rank;
+    }
+
+    /**
+     * @param count - the number of players (at least 1 and at most all of them).
+     * @return - the lowest step such that it and the steps below it hold at least count players.
+     */
+    private int find(int count) {
+        int step = 0; // the number of steps below the result, in the Fenwick tree's order
+        for (int bit = Integer.highestOneBit(STEPS); bit > 0; bit >>= 1)
+            if (step + bit <= STEPS && perStep[step + bit] < count) {
+                step += bit;
+                count -= perStep[step];
+            }
+        return step;
+    }
+
+    /**
+     * @return - the players of a step, from the highest rating.
+     */
+    private List<Entry> sorted(int step) {
+        List<Entry> players = new ArrayList<>(bySteps[step]);
+        players.sort(BY_RATING);
+        return players;
+    }
+
+    private static int step(double rating) {
+        return (int) Math.max(0, Math.min(STEPS - 1, Math.floor(rating * STEPS_PER_POINT)));
+    }
+
+    /**
+     * Prints the top players of a leaderboard and the standings of the given players.
+     * Usage: Leaderboard [directory] [top] [player] ...
+     *
+     * @param args - [directory] [top] [player] ...
+     */
+    public static void main(String[] args) throws IOException {
+        Path directory = Paths.get(args.length > 0 ? args[0] : "leaderboard");
+        int top = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        Logger logger = Logger.getLogger("SetLeaderboardLogger");
+        try (Leaderboard leaderboard = new Leaderboard(logger, directory)) {
+            System.out.println(leaderboard.results() + " games, " + leaderboard.players() + " players");
+            for (Standing standing : leaderboard.top(top))
+                System.out.println(standing);
+            for (int i = 2; i < args.length; i++) {
+                Standing standing = leaderboard.standing(args[i]);
+                System.out.println(standing != null ? standing : args[i] + ": did not play");
+            }
+        }
+    }
+}
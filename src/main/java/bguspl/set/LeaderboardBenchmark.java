@@ -0,0 +1,109 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Measures a leaderboard (see Leaderboard) of many made-up games: the rate of recording results from concurrent
+ * writers, the time of the queries (top players, rank and standing of a player) while the writers run and after, and
+ * the time to open the leaderboard again (reading its latest segment and the end of its log).
+ * Usage: LeaderboardBenchmark [results] [players] [writers]
+ */
+public class LeaderboardBenchmark {
+
+    private static final int PLAYERS_PER_GAME = 4;
+
+    /**
+     * The benchmark's main function.
+     *
+     * @param args - [results] [players] [writers].
+     */
+    public static void main(String[] args) throws Exception {
+        int results = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int players = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+        int writers = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        Logger logger = Logger.getLogger("SetLeaderboardLogger");
+        Path directory = Files.createTempDirectory("leaderboard-benchmark");
+        try {
+            Leaderboard leaderboard = new Leaderboard(logger, directory);
+            Thread[] threads = new Thread[writers];
+            long start = System.nanoTime();
+            for (int w = 0; w < writers; w++) {
+                SplittableRandom random = new SplittableRandom(w);
+                int count = results / writers + (w < results % writers ? 1 : 0);
+                threads[w] = new Thread(() -> write(leaderboard, random, players, count), "writer-" + w);
+                threads[w].start();
+            }
+            query("while writing", leaderboard, players, new SplittableRandom(42), 20000);
+            for (Thread thread : threads)
+                thread.join();
+            long writeNanos = System.nanoTime() - start;
+            System.out.printf("%d results of %d players from %d writers: %.0f results/s (%.2f us each)%n",
+                    leaderboard.results(), leaderboard.players(), writers, results * 1e9 / writeNanos,
+                    writeNanos / 1e3 / results);
+            query("idle", leaderboard, players, new SplittableRandom(43), 200000);
+
+            String player = leaderboard.top(1).get(0).player;
+            Leaderboard.Standing before = leaderboard.standing(player);
+            leaderboard.close();
+            start = System.nanoTime();
+            Leaderboard reopened = new Leaderboard(logger, directory);
+            long openNanos = System.nanoTime() - start;
+            Leaderboard.Standing after = reopened.standing(player);
+            System.out.printf("reopened in %.1f ms, %d results, top player %s%n", openNanos / 1e6, reopened.results(),
+                    after.rating == before.rating && after.rank == before.rank ? "unchanged" : "CHANGED");
+            reopened.close();
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+        }
+    }
+
+    /**
+     * Records made-up games of random players with random scores.
+     */
+    private static void write(Leaderboard leaderboard, SplittableRandom random, int players, int count) {
+        String[] names = new String[PLAYERS_PER_GAME];
+        int[] scores = new int[PLAYERS_PER_GAME], penalties = new int[PLAYERS_PER_GAME];
+        try {
+            for (int i = 0; i < count; i++) {
+                for (int p = 0; p < PLAYERS_PER_GAME; p++) {
+                    names[p] = "player-" + random.nextInt(players);
+                    scores[p] = random.nextInt(10);
+                    penalties[p] = random.nextInt(3);
+                }
+                leaderboard.record(names, scores, penalties);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void query(String when, Leaderboard leaderboard, int players, SplittableRandom random,
+                              int iterations) {
+        long topNanos = 0, rankNanos = 0, standingNanos = 0, sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            String player = "player-" + random.nextInt(players);
+            long start = System.nanoTime();
+            sink += leaderboard.top(10).size();
+            long ranked = System.nanoTime();
+            sink += leaderboard.rank(player);
+            long stood = System.nanoTime();
+            Leaderboard.Standing standing = leaderboard.standing(player);
+            long end = System.nanoTime();
+            topNanos += ranked - start;
+            rankNanos += stood - ranked;
+            standingNanos += end - stood;
+            if (standing != null) sink += standing.games;
+        }
+        System.out.printf("queries %s: top 10 %.2f us, rank %.2f us, standing %.2f us%n", when,
+                topNanos / 1e3 / iterations, rankNanos / 1e3 / iterations, standingNanos / 1e3 / iterations);
+        if (sink == 42) System.out.println(); // keep the results alive
+    }
+}
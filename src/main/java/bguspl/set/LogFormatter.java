@@ -0,0 +1,30 @@
+package bguspl.set;
+
+import java.util.Date;
+import java.util.logging.Formatter;
+import java.util.logging.LogRecord;
+
+/**
+ * Formats a log record with a String.format pattern, taking the time (1), the level (2) and the message with its
+ * parameters filled in (3), e.g. the default "[%1$tT.%1$tL] [%2$-7s] %3$s%n".
+ * Unlike SimpleFormatter, format is not synchronized: AsyncFileHandler formats on its writer thread only.
+ */
+public class LogFormatter extends Formatter {
+
+    public static final String DEFAULT_FORMAT = "[%1$tT.%1$tL] [%2$-7s] %3$s%n";
+
+    private final String format;
+
+    /**
+     * @param format - the pattern of a line in the log.
+     */
+    public LogFormatter(String format) {
+        this.format = format;
+    }
+
+    @Override
+    public String format(LogRecord record) {
+        return String.format(format, new Date(record.getMillis()), record.getLevel().getLocalizedName(),
+                formatMessage(record));
+    }
+}
@@ -2,14 +2,21 @@ package bguspl.set;
 
 import bguspl.set.ex.Dealer;
 import bguspl.set.ex.Player;
+import bguspl.set.ex.Snapshot;
 import bguspl.set.ex.Table;
+import com.sun.net.httpserver.HttpServer;
 
+import javax.management.JMException;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
-import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.*;
 
 /**
@@ -20,16 +27,36 @@ public class Main {
     private static Dealer dealer;
     private static Thread mainThread;
 
-    private static boolean xButtonPressed = false;
+    private static final int LOG_QUEUE_CAPACITY = 65536; // the log records waiting to be written to the log file
+
+    private static volatile boolean xButtonPressed = false;
     private static Logger logger;
+    private static Path snapshotFile; // the file to pause the game to (null to end the game instead)
 
     public static void xButtonPressed() throws InterruptedException {
         if (logger != null) logger.severe("exit button pressed");
         xButtonPressed = true;
-        if (dealer != null) dealer.terminate();
+        if (dealer != null) stopGame();
         mainThread.join();
     }
 
+    /**
+     * Pauses the game to the snapshot file, or terminates it if there is no snapshot file.
+     */
+    private static void stopGame() {
+        Snapshot snapshot = snapshotFile == null ? null : dealer.pause();
+        if (snapshot == null) { // no snapshot file, or the game is not running
+            dealer.terminate();
+            return;
+        }
+        try {
+            snapshot.write(snapshotFile);
+            logger.severe("game paused to " + snapshotFile);
+        } catch (IOException e) {
+            logger.severe("warning: cannot write the snapshot to " + snapshotFile + ": " + e);
+        }
+    }
+
     /**
      * The game's main function. Creates all data structures and initializes the threads.
      *
@@ -46,40 +73,134 @@ public class Main {
         Util util = new UtilImpl(config);
 
         Player[] players = new Player[config.players];
-        UserInterface ui = null;
+        Clock clock = config.virtualTime ? new VirtualClock() : new SystemClock();
+
+        // the game publishes what it shows to the event bus, and the log and the window subscribe to it
+        EventBus events = new EventBus(logger, util, clock, config.eventBusCapacity);
+        GameMetrics metrics = new GameMetrics();
+        events.subscribe("log", new UserInterfaceDecorator(logger, util, metrics));
         try {
-            ui = new UserInterfaceSwing(logger, config, players);
+            events.subscribe("swing", new UserInterfaceSwing(logger, config, players));
         } catch (UnsupportedOperationException | IllegalArgumentException e) {
             logger.severe("error creating swing user interface: " + e.getMessage());
             logger.severe("will try to run without user interface");
             if (config.humanPlayers > 0)
                 logger.severe("warning: running with human players with no user interface");
+            System.out.println("running without a user interface. Check logs.");
         }
-        ui = new UserInterfaceDecorator(logger, util, ui);
 
-        Env env = new Env(logger, config, ui, util);
+        // the game threads are pooled, so rematches reuse them
+        ExecutorService threads = Executors.newCachedThreadPool();
+        Journal journal = Journal.DISABLED;
+        if (!config.journalDirectory.isEmpty()) {
+            try {
+                journal = new Journal(logger, clock, Paths.get(config.journalDirectory), config.journalSegmentMegabytes << 20);
+                logger.info("journal run " + journal.run() + " in " + config.journalDirectory);
+            } catch (IOException e) {
+                logger.severe("warning: cannot create the journal in " + config.journalDirectory + ": " + e);
+            }
+        }
+        GameAnalytics analytics = null;
+        if (config.analytics) {
+            if (!journal.enabled()) journal = new Journal(logger, clock); // for its tap only
+            analytics = new GameAnalytics(util);
+            journal.tap(analytics);
+        }
+        Env env = new Env(logger, config, events, util, clock, threads, new TimerWheel(logger, clock), journal, metrics);
+        HttpServer metricsServer = null;
+        if (config.metricsPort > 0) {
+            try {
+                metricsServer = metrics.serve(config.metricsPort);
+                logger.info("serving the metrics at http://localhost:" + config.metricsPort + "/metrics");
+            } catch (IOException e) {
+                logger.severe("warning: cannot serve the metrics on port " + config.metricsPort + ": " + e);
+            }
+        }
+        if (config.metricsJmx) {
+            try {
+                metrics.registerMBean("main");
+            } catch (JMException e) {
+                logger.severe("warning: cannot register the metrics MBean: " + e);
+            }
+        }
+        Leaderboard leaderboard = null;
+        if (!config.leaderboardDirectory.isEmpty()) {
+            try {
+                leaderboard = new Leaderboard(logger, Paths.get(config.leaderboardDirectory));
+            } catch (IOException e) {
+                logger.severe("warning: cannot open the leaderboard in " + config.leaderboardDirectory + ": " + e);
+            }
+        }
 
         // create the game entities
         Table table = new Table(env);
         dealer = new Dealer(env, table, players);
         for (int i = 0; i < players.length; i++)
             players[i] = new Player(env, dealer, table, i, i < env.config.humanPlayers);
-
-        // start the dealer thread
-        ThreadLogger dealerThread = new ThreadLogger(dealer, "dealer", logger);
-        dealerThread.startWithLog();
+        if (!config.snapshotFile.isEmpty()) {
+            snapshotFile = Paths.get(config.snapshotFile);
+            if (Files.exists(snapshotFile)) { // a game was paused, continue it instead of dealing a new one
+                try {
+                    dealer.resume(Snapshot.read(snapshotFile));
+                    Files.delete(snapshotFile); // so the next start does not resume the same game again
+                    logger.info("resuming the game paused to " + snapshotFile);
+                } catch (IOException | IllegalArgumentException e) {
+                    logger.severe("warning: cannot resume the game paused to " + snapshotFile + ": " + e);
+                }
+            }
+        }
 
         try {
-            // shutdown stuff
-            dealerThread.joinWithLog();
-            if (!xButtonPressed && config.endGamePauseMillies > 0) Thread.sleep(config.endGamePauseMillies);
+            for (int game = 0; game <= config.rematches; game++) {
+                if (game > 0) dealer.reset(); // rematch: reuse the window, the table and the players
+                if (xButtonPressed) break;
+
+                // start the dealer thread
+                ThreadLogger dealerThread = new ThreadLogger(dealer, "dealer", logger);
+                dealerThread.startWithLog();
+
+                // shutdown stuff
+                dealerThread.joinWithLog();
+                if (dealer.finished() && leaderboard != null) record(leaderboard, config, players);
+                if (dealer.finished() && analytics != null) {
+                    env.journal.drain(); // the analytics run on the journal's tap, behind the game
+                    logger.info("game analytics:\n" + analytics.last());
+                }
+                if (!xButtonPressed && config.endGamePauseMillies > 0) env.clock.sleep(config.endGamePauseMillies);
+            }
         } catch (InterruptedException ignored) {
         } finally {
+            env.timers.close();
+            env.journal.close();
+            if (leaderboard != null) leaderboard.close();
+            if (metricsServer != null) metricsServer.stop(0);
+            if (analytics != null && analytics.total().games() > 1)
+                logger.info("analytics of all games:\n" + analytics.total());
+            threads.shutdown();
             logger.severe("thanks for playing... it was fun!");
             System.out.println("Thanks for playing... it was fun!");
             ThreadLogger.logStop(logger, Thread.currentThread().getName());
             if (!xButtonPressed) env.ui.dispose();
-            for (Handler h : logger.getHandlers()) h.flush();
+            events.close(); // after the subscribers handled the events that were published
+            for (Handler h : logger.getHandlers()) h.close(); // writes the records that are still queued
+        }
+    }
+
+    /**
+     * Records the result of a game that ended by itself in the leaderboard, and logs the top players.
+     */
+    private static void record(Leaderboard leaderboard, Config config, Player[] players) {
+        int[] scores = new int[players.length], penalties = new int[players.length];
+        for (int i = 0; i < players.length; i++) {
+            scores[i] = players[i].score();
+            penalties[i] = players[i].penalties();
+        }
+        try {
+            leaderboard.record(config.playerNames, scores, penalties);
+            for (Leaderboard.Standing standing : leaderboard.top(5))
+                logger.info("leaderboard: " + standing);
+        } catch (IOException e) {
+            logger.severe("warning: cannot record the game in the leaderboard: " + e);
         }
     }
 
@@ -87,11 +208,12 @@ public class Main {
 
         //just to make our log file nicer :)
         SimpleDateFormat format = new SimpleDateFormat("M-d_HH-mm-ss");
-        FileHandler handler;
+        AsyncFileHandler handler;
         try {
             //noinspection ResultOfMethodCallIgnored
             new File("./logs/").mkdirs();
-            handler = new FileHandler("./logs/" + format.format(Calendar.getInstance().getTime()) + ".log");
+            handler = new AsyncFileHandler(new File("./logs/" + format.format(Calendar.getInstance().getTime()) + ".log"),
+                    LOG_QUEUE_CAPACITY);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -99,22 +221,15 @@ public class Main {
         java.util.logging.Logger logger = java.util.logging.Logger.getLogger("SetGameLogger");
         logger.setUseParentHandlers(false);
         logger.addHandler(handler);
-        setLoggerLevelAndFormat(logger, Level.ALL, "[%1$tT.%1$tL] [%2$-7s] %3$s%n");
+        setLoggerLevelAndFormat(logger, Level.ALL, LogFormatter.DEFAULT_FORMAT);
 
         return logger;
     }
 
     public static void setLoggerLevelAndFormat(Logger logger, Level level, String format) {
         Handler[] handlers = logger.getHandlers();
-        if (handlers != null) Arrays.stream(handlers).forEach(h -> h.setFormatter(new SimpleFormatter() {
-            // default format (with timestamp)  = "[%1$tF %1$tT] [%2$-7s] %3$s%n";
-            @Override
-            public synchronized String format(LogRecord lr) {
-                return String.format(format, new Date(lr.getMillis()),
-                        lr.getLevel().getLocalizedName(), lr.getMessage()
-                );
-            }
-        }));
+        // default format (with timestamp)  = "[%1$tF %1$tT] [%2$-7s] %3$s%n";
+        if (handlers != null) Arrays.stream(handlers).forEach(h -> h.setFormatter(new LogFormatter(format)));
         logger.setLevel(level);
     }
 }
@@ -0,0 +1,98 @@
+package bguspl.set;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Logger;
+
+/**
+ * Measures how many frames per second TableRenderer draws offscreen, on the 3x4 board and on a large 6x8 board.
+ * For each board it measures a full redraw of every cell on each frame (as the table was painted before the cells were
+ * cached), and a typical frame of the game in which a set is replaced and a token is placed, which draws and paints
+ * only those 4 cells. With a screen the cells are VolatileImages, and in a headless run plain images.
+ * Usage: RenderBenchmark [config file] [seconds per measurement]
+ */
+public class RenderBenchmark {
+
+    private static final int[][] BOARDS = {{3, 4}, {6, 8}};
+
+    /**
+     * The benchmark's main function.
+     *
+     * @param args - [config file] [seconds per measurement].
+     */
+    public static void main(String[] args) throws Exception {
+        String configFile = args.length > 0 ? args[0] : "config.properties";
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 5;
+
+        Logger logger = Logger.getLogger("SetBenchmarkLogger");
+        logger.setUseParentHandlers(false);
+        Properties template = Config.loadProperties(configFile, logger);
+        GraphicsConfiguration configuration = GraphicsEnvironment.isHeadless() ? null
+                : GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+        System.out.println(configuration == null ? "headless: plain image surfaces" : "volatile image surfaces");
+
+        for (int[] board : BOARDS) {
+            Properties properties = new Properties();
+            properties.putAll(template);
+            properties.setProperty("LogLevel", "OFF");
+            properties.setProperty("Rows", Integer.toString(board[0]));
+            properties.setProperty("Columns", Integer.toString(board[1]));
+            Config config = new Config(logger, properties);
+
+            CountDownLatch loaded = new CountDownLatch(config.deckSize);
+            CardImages images = new CardImages(logger, config, card -> loaded.countDown());
+            images.start();
+            loaded.await();
+
+            TableRenderer renderer = new TableRenderer(config, images, new Font("Dialog", Font.BOLD, 12), Color.black,
+                    Color.lightGray);
+            SplittableRandom random = new SplittableRandom(0);
+            for (int row = 0; row < config.rows; row++)
+                for (int column = 0; column < config.columns; column++)
+                    renderer.setCard(row, column, random.nextInt(config.deckSize));
+
+            Image target = configuration == null
+                    ? new BufferedImage(config.columns * config.cellWidth, config.rows * config.cellHeight, BufferedImage.TYPE_INT_RGB)
+                    : configuration.createCompatibleVolatileImage(config.columns * config.cellWidth, config.rows * config.cellHeight);
+
+            double full = measure(seconds, () -> {
+                renderer.invalidateAll();
+                Graphics g = target.getGraphics();
+                renderer.paint(g, configuration);
+                g.dispose();
+            });
+            double changed = measure(seconds, () -> {
+                Graphics g = target.getGraphics();
+                for (int i = 0; i < 4; i++) { // replace a set and place a token
+                    int row = random.nextInt(config.rows), column = random.nextInt(config.columns);
+                    if (i < 3) renderer.setCard(row, column, random.nextInt(config.deckSize));
+                    else renderer.setText(row, column, "Player " + random.nextInt(4));
+                    g.setClip(column * config.cellWidth, row * config.cellHeight, config.cellWidth, config.cellHeight);
+                    renderer.paint(g, configuration);
+                }
+                g.dispose();
+            });
+            System.out.printf("%dx%d  full redraw %8.0f fps  set and token %8.0f fps%n", config.rows, config.columns,
+                    full, changed);
+        }
+    }
+
+    /**
+     * @return - the number of frames per second, after a warm up of a tenth of the time.
+     */
+    private static double measure(double seconds, Runnable frame) {
+        long warmUp = System.nanoTime() + (long) (seconds * 1e8);
+        while (System.nanoTime() < warmUp)
+            frame.run();
+        long start = System.nanoTime(), end = start + (long) (seconds * 1e9), frames = 0;
+        long now;
+        do {
+            frame.run();
+            frames++;
+        } while ((now = System.nanoTime()) < end);
+        return frames * 1e9 / (now - start);
+    }
+}
@@ -0,0 +1,365 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.ScriptedStrategy;
+import bguspl.set.ex.Table;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/**
+ * Plays a recorded run of games (see Journal) again and checks that it goes exactly as recorded.
+ * The games are played by the real dealer, table and players on a virtual clock, and the players press the keys that
+ * were recorded, at the times they were recorded (see ScriptedStrategy). The deals, card removals, round ends, winners
+ * and every player's verdicts are compared with the recording, so the board is checked after every change.
+ * The replay runs as fast as possible, or paced at a multiple of real time, and measures the wall time and the bytes
+ * allocated by the game's threads, so a corpus of recorded games can be used as a performance regression suite.
+ * Usage: Replay [config file] [speed: max or a multiple of real time] [journal directory or directory/run] ...
+ * Note: the configuration must be the one the games were recorded with (the players, seed and table size are taken
+ * from the journal).
+ */
+public class Replay {
+
+    private static final long PACE_STEP_MILLIS = 10; // the virtual time between pacing steps
+    private static final long WATCH_MILLIS = 10; // how often the game's clock is checked when not pacing
+    private static final int MAX_MISMATCHES = 10; // the number of mismatches reported per run
+
+    /**
+     * The outcome of replaying a run.
+     */
+    static class Outcome {
+
+        final String run;
+        final int games;
+        final int records;
+        final long wallNanos;
+        final long allocatedBytes; // -1 if the JVM cannot tell
+        final long virtualMillis;
+        final long maxDriftMillis; // the largest difference in time between a recorded and a replayed board change
+        final List<String> mismatches;
+
+        Outcome(String run, int games, int records, long wallNanos, long allocatedBytes, long virtualMillis,
+                long maxDriftMillis, List<String> mismatches) {
+            this.run = run;
+            this.games = games;
+            this.records = records;
+            this.wallNanos = wallNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.virtualMillis = virtualMillis;
+            this.maxDriftMillis = maxDriftMillis;
+            this.mismatches = mismatches;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(String.format("%s: %d games, %d records, wall %.1f ms, allocated %s, "
+                            + "virtual %d ms, drift %d ms: %s", run, games, records, wallNanos / 1e6,
+                    allocatedBytes < 0 ? "unknown" : String.format("%.1f MB", allocatedBytes / 1e6), virtualMillis,
+                    maxDriftMillis, mismatches.isEmpty() ? "OK" : "MISMATCH"));
+            for (String mismatch : mismatches)
+                sb.append(System.lineSeparator()).append("  ").append(mismatch);
+            return sb.toString();
+        }
+    }
+
+    private final Logger logger;
+    private final Properties template;
+    private final double speed;
+
+    /**
+     * @param logger   - the logger for the games.
+     * @param template - the configuration the games were recorded with.
+     * @param speed    - the multiple of real time to replay at, or 0 for as fast as possible.
+     */
+    public Replay(Logger logger, Properties template, double speed) {
+        this.logger = logger;
+        this.template = template;
+        this.speed = speed;
+    }
+
+    /**
+     * Replays a run of games and compares it with the recording.
+     *
+     * @param directory - the directory of the journal.
+     * @param run       - the run to replay (see Journal::run).
+     * @return - the outcome of the replay.
+     * @throws IOException - if the journal cannot be read or the replay's journal cannot be written.
+     */
+    Outcome replay(Path directory, String run) throws IOException, InterruptedException, ExecutionException {
+        List<Journal.Record> recorded = Journal.read(directory, run);
+        if (recorded.isEmpty() || recorded.get(0).type != Journal.Type.GAME_START)
+            throw new IOException("run " + run + " in " + directory + " does not start with a game");
+        Journal.Record start = recorded.get(0);
+        List<Journal.Record> starts = new ArrayList<>(), ends = new ArrayList<>();
+        for (Journal.Record record : recorded) {
+            if (record.type == Journal.Type.GAME_START) starts.add(record);
+            if (record.type == Journal.Type.GAME_END) ends.add(record);
+        }
+
+        Properties properties = new Properties();
+        properties.putAll(template);
+        properties.setProperty("LogLevel", "OFF");
+        properties.setProperty("HumanPlayers", "0");
+        properties.setProperty("ComputerPlayers", Integer.toString(start.value(2)));
+        properties.setProperty("Rows", Integer.toString(start.value(3)));
+        properties.setProperty("Columns", Integer.toString(start.value(4)));
+        properties.setProperty("RandomSeed", Long.toString((long) start.value(0) << 32 | start.value(1) & 0xffffffffL));
+        properties.setProperty("VirtualTime", "True");
+        Config config = new Config(logger, properties);
+
+        List<List<Journal.Record>> presses = new ArrayList<>();
+        for (int i = 0; i < config.players; i++)
+            presses.add(new ArrayList<>());
+        for (Journal.Record record : recorded)
+            if (record.type == Journal.Type.KEY)
+                presses.get(record.value(0)).add(record);
+
+        Path replayDirectory = Files.createTempDirectory("replay");
+        VirtualClock clock = new VirtualClock();
+        List<Thread> threads = new ArrayList<>();
+        ExecutorService pool = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task);
+            thread.setDaemon(true);
+            synchronized (threads) {
+                threads.add(thread);
+            }
+            return thread;
+        });
+        TimerWheel timers = new TimerWheel(logger, clock);
+        Journal journal = new Journal(logger, clock, replayDirectory, 16 << 20);
+        Env env = new Env(logger, config, new UserInterfaceNoop(), new UtilImpl(config), clock, pool, timers, journal);
+
+        Player[] players = new Player[config.players];
+        ScriptedStrategy[] strategies = new ScriptedStrategy[config.players];
+        Table table = new Table(env);
+        Dealer dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++) {
+            List<Journal.Record> own = presses.get(i);
+            long[] times = new long[own.size()];
+            int[] slots = new int[own.size()];
+            for (int j = 0; j < times.length; j++) {
+                times[j] = own.get(j).time;
+                slots[j] = own.get(j).value(1);
+            }
+            strategies[i] = new ScriptedStrategy(clock, times, slots);
+            players[i] = new Player(env, dealer, table, i, strategies[i]);
+        }
+
+        List<Journal.Record> replayed;
+        long wall = System.nanoTime();
+        try {
+            for (int game = 0; game < ends.size(); game++) {
+                if (game > 0) dealer.reset(); // a rematch, as in Main
+                long recordedStart = starts.get(game).time;
+                long length = ends.get(game).time - recordedStart + Math.max(config.turnTimeoutMillis, 60000);
+                Thread pacer = new Thread(() -> pace(clock, dealer, clock.currentTimeMillis() + length), "replay-pacer");
+                pacer.setDaemon(true);
+                pool.submit(() -> {
+                    Thread thread = Thread.currentThread();
+                    String name = thread.getName();
+                    thread.setName("dealer"); // as in Main
+                    try {
+                        // before the pacer waits, or the time could pass before the dealer starts
+                        clock.register(Clock.DEALER_ORDER);
+                        // the time between games depends on the threads, so each game is replayed relative to its start
+                        for (ScriptedStrategy strategy : strategies)
+                            strategy.startGame(recordedStart, clock.currentTimeMillis());
+                        pacer.start();
+                        dealer.run();
+                    } finally {
+                        thread.setName(name); // the pool's thread is reused
+                    }
+                }).get();
+                pacer.interrupt();
+                pacer.join();
+                if (config.endGamePauseMillies > 0) clock.sleep(config.endGamePauseMillies);
+            }
+            wall = System.nanoTime() - wall;
+        } finally {
+            timers.close();
+            journal.close();
+            replayed = Journal.read(replayDirectory, journal.run());
+            try (DirectoryStream<Path> segments = Files.newDirectoryStream(replayDirectory)) {
+                for (Path segment : segments)
+                    Files.delete(segment);
+            }
+            Files.delete(replayDirectory);
+        }
+        long allocated = allocatedBytes(threads);
+        pool.shutdownNow();
+        long virtual = clock.currentTimeMillis();
+        clock.close();
+
+        List<String> mismatches = new ArrayList<>();
+        long drift = compare(recorded, replayed, mismatches);
+        return new Outcome(run, ends.size(), recorded.size(), wall, allocated, virtual, drift, mismatches);
+    }
+
+    /**
+     * Holds the virtual time back to the replay's speed, and ends a game that runs past its limit (i.e. did not go as
+     * recorded). When pacing, runs registered with the clock, so the time cannot pass while it waits in real time;
+     * otherwise it only watches the clock.
+     */
+    private void pace(VirtualClock clock, Dealer dealer, long limit) {
+        boolean registered = speed > 0;
+        if (registered) clock.register(Clock.TIMER_ORDER - 1); // after the game's threads
+        try {
+            long virtualStart = clock.currentTimeMillis(), realStart = System.nanoTime();
+            while (!Thread.currentThread().isInterrupted()) {
+                long now = clock.currentTimeMillis();
+                if (now >= limit) {
+                    logger.severe("warning: the replayed game did not end by " + limit + ", terminating it");
+                    if (registered) clock.unregister(); // the time must pass while the game ends
+                    registered = false;
+                    dealer.terminate();
+                    return;
+                }
+                if (registered) {
+                    long due = realStart + (long) ((now - virtualStart) * 1e6 / speed);
+                    while (System.nanoTime() < due && !Thread.currentThread().isInterrupted())
+                        LockSupport.parkNanos(due - System.nanoTime());
+                    clock.sleep(Math.min(PACE_STEP_MILLIS, limit - now));
+                } else
+                    Thread.sleep(WATCH_MILLIS);
+            }
+        } catch (InterruptedException ignored) {
+        } finally {
+            if (registered) clock.unregister();
+        }
+    }
+
+    /**
+     * Compares the replay with the recording: the changes of the board (deals, card removals, round ends and winners)
+     * in order, and the verdicts of each player in order. Each stream is compared up to its first mismatch.
+     *
+     * @param mismatches - filled with the mismatches found.
+     * @return - the largest difference between the recorded and the replayed times of the board changes (from the
+     * start of their game).
+     */
+    static long compare(List<Journal.Record> recorded, List<Journal.Record> replayed, List<String> mismatches) {
+        List<Journal.Record> expectedBoard = board(recorded), actualBoard = board(replayed);
+        long drift = 0, expectedStart = 0, actualStart = 0;
+        int length = Math.min(expectedBoard.size(), actualBoard.size());
+        for (int i = 0; i < length; i++) {
+            Journal.Record expected = expectedBoard.get(i), actual = actualBoard.get(i);
+            if (!expected.sameAs(actual)) {
+                mismatches.add("board change " + i + ": expected " + expected + ", was " + actual);
+                break;
+            }
+            if (expected.type == Journal.Type.GAME_START) {
+                expectedStart = expected.time;
+                actualStart = actual.time;
+            }
+            drift = Math.max(drift, Math.abs(expected.time - expectedStart - (actual.time - actualStart)));
+        }
+        if (mismatches.isEmpty() && expectedBoard.size() != actualBoard.size())
+            mismatches.add("expected " + expectedBoard.size() + " board changes, was " + actualBoard.size());
+
+        for (int player = 0; mismatches.size() < MAX_MISMATCHES; player++) {
+            List<Journal.Record> expectedVerdicts = verdicts(recorded, player), actualVerdicts = verdicts(replayed, player);
+            if (expectedVerdicts.isEmpty() && actualVerdicts.isEmpty() && player >= players(recorded)) break;
+            int verdicts = Math.min(expectedVerdicts.size(), actualVerdicts.size());
+            boolean same = true;
+            for (int i = 0; i < verdicts && same; i++) {
+                same = expectedVerdicts.get(i).sameAs(actualVerdicts.get(i));
+                if (!same)
+                    mismatches.add("player " + (player + 1) + " verdict " + i + ": expected " + expectedVerdicts.get(i)
+                            + ", was " + actualVerdicts.get(i));
+            }
+            if (same && expectedVerdicts.size() != actualVerdicts.size())
+                mismatches.add("player " + (player + 1) + ": expected " + expectedVerdicts.size() + " verdicts, was "
+                        + actualVerdicts.size());
+        }
+        return drift;
+    }
+
+    private static List<Journal.Record> board(List<Journal.Record> records) {
+        List<Journal.Record> board = new ArrayList<>();
+        for (Journal.Record record : records) {
+            switch (record.type) {
+                case GAME_START: case DEAL: case REMOVE_CARD: case ROUND_END: case GAME_END:
+                    board.add(record);
+                    break;
+                default:
+                    break;
+            }
+        }
+        return board;
+    }
+
+    private static List<Journal.Record> verdicts(List<Journal.Record> records, int player) {
+        List<Journal.Record> verdicts = new ArrayList<>();
+        for (Journal.Record record : records)
+            if (record.type == Journal.Type.VERDICT && record.value(0) == player)
+                verdicts.add(record);
+        return verdicts;
+    }
+
+    private static int players(List<Journal.Record> records) {
+        return records.isEmpty() ? 0 : records.get(0).value(2);
+    }
+
+    /**
+     * @return - the bytes allocated by the threads (while they are alive), or -1 if the JVM cannot tell.
+     */
+    private static long allocatedBytes(List<Thread> threads) {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) return -1;
+        long total = 0;
+        synchronized (threads) {
+            for (Thread thread : threads) {
+                long bytes = ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(thread.getId());
+                if (bytes > 0) total += bytes;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * The replay's main function. Exits with status 1 if any run did not go as recorded.
+     *
+     * @param args - [config file] [speed: max or a multiple of real time] [journal directory or directory/run] ...
+     */
+    public static void main(String[] args) throws Exception {
+        String configFile = args.length > 0 ? args[0] : "config.properties";
+        double speed = args.length > 1 && !args[1].equals("max") ? Double.parseDouble(args[1]) : 0;
+        Logger logger = Logger.getLogger("SetReplayLogger");
+        logger.setUseParentHandlers(false);
+        Replay replay = new Replay(logger, Config.loadProperties(configFile, logger), speed);
+
+        boolean failed = false;
+        for (int i = 2; i < Math.max(args.length, 3); i++) {
+            Path path = Paths.get(i < args.length ? args[i] : "journal");
+            Path directory = path;
+            String run;
+            if (Files.isDirectory(path)) // the latest run in the directory
+                run = Journal.latestRun(path);
+            else {
+                directory = path.toAbsolutePath().getParent();
+                run = path.getFileName().toString();
+            }
+            if (run == null) {
+                System.out.println(path + ": no journal");
+                failed = true;
+                continue;
+            }
+            Outcome outcome = replay.replay(directory, run);
+            System.out.println(outcome);
+            failed |= !outcome.mismatches.isEmpty();
+        }
+        System.exit(failed ? 1 : 0);
+    }
+}
@@ -0,0 +1,90 @@
+package bguspl.set;
+
+import bguspl.set.ex.Snapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+/**
+ * Measures the time to encode and decode a snapshot of a paused game (see Snapshot) in memory, and to write it to a
+ * file and read it back. The game is made up: a deck of the given size of which most cards are still in the deck,
+ * a full table and players with tokens and freezes.
+ * Usage: SnapshotBenchmark [deck size] [players] [iterations]
+ */
+public class SnapshotBenchmark {
+
+    private static final int TABLE_SIZE = 12;
+
+    /**
+     * The benchmark's main function.
+     *
+     * @param args - [deck size] [players] [iterations].
+     */
+    public static void main(String[] args) throws IOException {
+        int deckSize = args.length > 0 ? Integer.parseInt(args[0]) : 6561; // 8 features of 3 values
+        int players = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 20000;
+        Snapshot snapshot = game(deckSize, players, new SplittableRandom(7));
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(snapshot.size());
+        long sink = 0;
+        for (int round = 0; round < 2; round++) { // the first round warms up
+            long encodeNanos = 0, decodeNanos = 0;
+            for (int i = 0; i < iterations; i++) {
+                buffer.clear();
+                long start = System.nanoTime();
+                snapshot.encode(buffer);
+                encodeNanos += System.nanoTime() - start;
+                buffer.flip();
+                start = System.nanoTime();
+                sink += Snapshot.decode(buffer).deck.length;
+                decodeNanos += System.nanoTime() - start;
+            }
+            if (round == 1)
+                System.out.printf("deck %d, %d players, %d bytes: encode %.2f us, decode %.2f us%n", deckSize, players,
+                        snapshot.size(), encodeNanos / 1e3 / iterations, decodeNanos / 1e3 / iterations);
+        }
+
+        Path file = Files.createTempFile("snapshot-benchmark", ".snapshot");
+        long start = System.nanoTime();
+        snapshot.write(file);
+        long writeNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        sink += Snapshot.read(file).deck.length;
+        long readNanos = System.nanoTime() - start;
+        Files.delete(file);
+        System.out.printf("write to a file (forced to disk) %.1f us, read from a file %.1f us%n", writeNanos / 1e3,
+                readNanos / 1e3);
+        if (sink == 42) System.out.println(); // keep the results alive
+    }
+
+    /**
+     * Makes up the state of a game in its first round.
+     */
+    private static Snapshot game(int deckSize, int players, SplittableRandom random) {
+        int[] cards = new int[deckSize];
+        for (int i = 0; i < deckSize; i++)
+            cards[i] = i;
+        for (int i = deckSize - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1), card = cards[i];
+            cards[i] = cards[j];
+            cards[j] = card;
+        }
+        int[] table = new int[TABLE_SIZE];
+        System.arraycopy(cards, 0, table, 0, TABLE_SIZE);
+        int[] deck = new int[deckSize - TABLE_SIZE];
+        System.arraycopy(cards, TABLE_SIZE, deck, 0, deck.length);
+        int[] scores = new int[players], penalties = new int[players];
+        long[] freezes = new long[players];
+        int[][] tokens = new int[players][];
+        for (int i = 0; i < players; i++) {
+            penalties[i] = random.nextInt(3);
+            freezes[i] = random.nextInt(2) * random.nextInt(3000);
+            tokens[i] = new int[]{random.nextInt(TABLE_SIZE), random.nextInt(TABLE_SIZE)};
+        }
+        return new Snapshot(deckSize, 1, 0, 0, 42000, table, deck, scores, penalties, freezes, tokens, new int[]{0});
+    }
+}
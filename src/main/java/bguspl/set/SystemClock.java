@@ -0,0 +1,42 @@
+package bguspl.set;
+
+/**
+ * A clock that follows the wall clock time of the system.
+ */
+public class SystemClock implements Clock {
+
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        if (millis > 0) Thread.sleep(millis);
+    }
+
+    @Override
+    public void await(Object monitor, long millis) throws InterruptedException {
+        monitor.wait(millis);
+    }
+
+    @Override
+    public void signal(Object monitor) {
+        monitor.notify();
+    }
+
+    @Override
+    public void signalAll(Object monitor) {
+        monitor.notifyAll();
+    }
+
+    @Override
+    public void register(int order) {
+        // the wall clock does not depend on the game threads
+    }
+
+    @Override
+    public void unregister() {
+        // the wall clock does not depend on the game threads
+    }
+}
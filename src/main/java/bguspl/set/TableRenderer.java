@@ -0,0 +1,208 @@
+package bguspl.set;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+
+/**
+ * Draws the table grid. Each cell (the card, its border and the names of the players with tokens on it) is drawn once
+ * into a surface of its own, and painting copies the surfaces, so only the cells that changed since they were last
+ * painted are drawn again.
+ * With a screen, the surfaces are VolatileImages (kept in video memory when possible) and the card images are copied
+ * to images compatible with the screen. Without one (e.g. in RenderBenchmark), plain images are used.
+ * The renderer is not thread safe: in the game it is only used on the event dispatch thread.
+ */
+public class TableRenderer {
+
+    private final Config config;
+    private final CardImages images;
+    private final Font font;
+    private final Color foreground;
+    private final Color background;
+    private final int width;
+    private final int height;
+
+    private final int[][] cards; // the card in each cell (-1 for none)
+    private final String[][] texts; // the text at the top of each cell
+    private final boolean[][] valid; // true iff the surface of the cell shows its card and text
+    private final Image[][] surfaces; // the surface of each cell (null until it is painted)
+    private final Image[] sprites; // the card images, compatible with the screen (null until used)
+    private GraphicsConfiguration spritesConfiguration; // the configuration of the sprites
+
+    /**
+     * @param font       - the font of the text in the cells.
+     * @param foreground - the color of the text and the border.
+     * @param background - the color behind the card images.
+     */
+    public TableRenderer(Config config, CardImages images, Font font, Color foreground, Color background) {
+        this.config = config;
+        this.images = images;
+        this.font = font;
+        this.foreground = foreground;
+        this.background = background;
+        width = config.cellWidth;
+        height = config.cellHeight;
+        cards = new int[config.rows][config.columns];
+        texts = new String[config.rows][config.columns];
+        valid = new boolean[config.rows][config.columns];
+        surfaces = new Image[config.rows][config.columns];
+        sprites = new Image[config.deckSize];
+        clear();
+    }
+
+    /**
+     * Removes all the cards and text.
+     */
+    public void clear() {
+        for (int row = 0; row < config.rows; row++) {
+            for (int column = 0; column < config.columns; column++) {
+                cards[row][column] = -1;
+                texts[row][column] = "";
+                valid[row][column] = false;
+            }
+        }
+    }
+
+    /**
+     * @param card - the card (-1 for none).
+     */
+    public void setCard(int row, int column, int card) {
+        cards[row][column] = card;
+        valid[row][column] = false;
+    }
+
+    /**
+     * @return - the card in the cell (-1 for none).
+     */
+    public int getCard(int row, int column) {
+        return cards[row][column];
+    }
+
+    /**
+     * @param text - the text at the top of the cell (empty for none).
+     */
+    public void setText(int row, int column, String text) {
+        if (texts[row][column].equals(text)) return;
+        texts[row][column] = text;
+        valid[row][column] = false;
+    }
+
+    /**
+     * Marks the cells of a card for drawing again (e.g. when its image was not ready when it was placed).
+     *
+     * @return - true iff the card is on the table.
+     */
+    public boolean invalidate(int card) {
+        boolean found = false;
+        for (int row = 0; row < config.rows; row++) {
+            for (int column = 0; column < config.columns; column++) {
+                if (cards[row][column] == card) {
+                    valid[row][column] = false;
+                    found = true;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Marks all the cells for drawing again.
+     */
+    public void invalidateAll() {
+        for (int row = 0; row < config.rows; row++)
+            for (int column = 0; column < config.columns; column++)
+                valid[row][column] = false;
+    }
+
+    /**
+     * Paints the cells in the clip of the graphics, drawing the surfaces of the cells that changed first.
+     *
+     * @param g             - the graphics of the table (the top left cell at 0, 0).
+     * @param configuration - the configuration of the screen, or null to draw without one.
+     */
+    public void paint(Graphics g, GraphicsConfiguration configuration) {
+        Rectangle clip = g.getClipBounds();
+        int firstRow = 0, lastRow = config.rows - 1, firstColumn = 0, lastColumn = config.columns - 1;
+        if (clip != null) {
+            firstRow = Math.max(firstRow, clip.y / height);
+            lastRow = Math.min(lastRow, (clip.y + clip.height - 1) / height);
+            firstColumn = Math.max(firstColumn, clip.x / width);
+            lastColumn = Math.min(lastColumn, (clip.x + clip.width - 1) / width);
+        }
+        for (int row = firstRow; row <= lastRow; row++)
+            for (int column = firstColumn; column <= lastColumn; column++)
+                paintCell(g, configuration, row, column);
+    }
+
+    private void paintCell(Graphics g, GraphicsConfiguration configuration, int row, int column) {
+        int x = column * width, y = row * height;
+        if (configuration == null) {
+            if (surfaces[row][column] == null)
+                surfaces[row][column] = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            if (!valid[row][column])
+                drawCell((BufferedImage) surfaces[row][column], null, row, column);
+            g.drawImage(surfaces[row][column], x, y, null);
+            return;
+        }
+
+        VolatileImage surface;
+        do {
+            if (!(surfaces[row][column] instanceof VolatileImage))
+                surfaces[row][column] = configuration.createCompatibleVolatileImage(width, height);
+            surface = (VolatileImage) surfaces[row][column];
+            int status = surface.validate(configuration);
+            if (status == VolatileImage.IMAGE_INCOMPATIBLE) { // e.g. the window moved to another screen
+                surface.flush();
+                surface = configuration.createCompatibleVolatileImage(width, height);
+                surfaces[row][column] = surface;
+                status = VolatileImage.IMAGE_RESTORED;
+            }
+            if (status == VolatileImage.IMAGE_RESTORED || !valid[row][column]) // the contents are gone or outdated
+                drawCell(surface, configuration, row, column);
+            g.drawImage(surface, x, y, null);
+        } while (surface.contentsLost());
+    }
+
+    /**
+     * Draws the card, the border and the text of a cell into its surface.
+     */
+    private void drawCell(Image surface, GraphicsConfiguration configuration, int row, int column) {
+        Graphics2D g = (Graphics2D) surface.getGraphics();
+        g.setColor(background);
+        g.fillRect(0, 0, width, height);
+        g.drawImage(sprite(cards[row][column], configuration), 0, 0, null);
+        g.setColor(foreground);
+        g.drawRect(0, 0, width - 1, height - 1);
+        String text = texts[row][column];
+        if (!text.isEmpty()) {
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setFont(font);
+            FontMetrics metrics = g.getFontMetrics();
+            g.drawString(text, (width - metrics.stringWidth(text)) / 2, 1 + metrics.getAscent()); // centered at the top
+        }
+        g.dispose();
+        valid[row][column] = true;
+    }
+
+    /**
+     * @return - the image to draw for the card (the empty card until its image is loaded).
+     */
+    private Image sprite(int card, GraphicsConfiguration configuration) {
+        Image image = card < 0 ? null : images.get(card);
+        if (image == null) return images.empty();
+        if (configuration == null) return image;
+
+        if (configuration != spritesConfiguration) { // the sprites are compatible with another screen
+            for (int i = 0; i < sprites.length; i++) sprites[i] = null;
+            spritesConfiguration = configuration;
+        }
+        if (sprites[card] == null) {
+            Image sprite = configuration.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+            Graphics g = sprite.getGraphics();
+            g.drawImage(image, 0, 0, null);
+            g.dispose();
+            sprites[card] = sprite;
+        }
+        return sprites[card];
+    }
+}
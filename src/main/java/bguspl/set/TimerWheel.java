@@ -0,0 +1,248 @@
+package bguspl.set;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A hashed timer wheel: runs tasks after a delay, measured by a clock.
+ * Timeouts are kept in a ring of buckets (one bucket per tick), so scheduling and cancelling a timeout is O(1).
+ * A single thread fires all the timeouts of the wheel, so waiting for a timeout does not hold any other thread.
+ * The tasks run on the wheel's thread, hence they should be short and must not block.
+ */
+public class TimerWheel implements AutoCloseable {
+
+    /**
+     * The default resolution of the wheel in milliseconds.
+     */
+    public static final long DEFAULT_TICK_MILLIS = 10;
+
+    /**
+     * The default number of buckets in the wheel (a power of 2).
+     */
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    /**
+     * A task scheduled on the wheel.
+     */
+    public final class Timeout {
+
+        private final Runnable task;
+        private long rounds; // the number of full revolutions of the wheel left before the timeout expires
+        private int bucket = -1; // the bucket the timeout is linked into (-1 if not scheduled)
+        private Timeout prev, next;
+
+        private Timeout(Runnable task) {
+            this.task = task;
+        }
+
+        /**
+         * Cancels the timeout (nothing happens if it already expired or was cancelled).
+         *
+         * @return - true iff the timeout was cancelled before it expired.
+         */
+        public boolean cancel() {
+            synchronized (TimerWheel.this) {
+                if (bucket < 0) return false;
+                unlink(this);
+                // nothing is left to wait for, so do not keep a deadline (in virtual time it would move the time)
+                if (size == 0 && wakeTick != Long.MAX_VALUE) clock.signalAll(TimerWheel.this);
+                return true;
+            }
+        }
+    }
+
+    private final Logger logger;
+    private final Clock clock;
+    private final long tickMillis;
+    private final Timeout[] buckets; // the head of the linked list of timeouts in each bucket
+    private final int mask;
+
+    private long startTime; // the time of tick 0
+    private long tick; // the next tick to process
+    private int size; // the number of scheduled timeouts
+    private long wakeTick = Long.MAX_VALUE; // the tick the wheel's thread is sleeping until
+
+    private Thread thread;
+    private boolean closed;
+
+    public TimerWheel(Logger logger, Clock clock) {
+        this(logger, clock, DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * @param logger     - the logger for the tasks that fail.
+     * @param clock      - the clock measuring the delays.
+     * @param tickMillis - the resolution of the wheel in milliseconds (timeouts expire on a tick boundary).
+     * @param wheelSize  - the number of buckets (rounded up to a power of 2).
+     */
+    public TimerWheel(Logger logger, Clock clock, long tickMillis, int wheelSize) {
+        if (tickMillis <= 0 || wheelSize <= 0) throw new IllegalArgumentException("invalid timer wheel dimensions");
+        this.logger = logger;
+        this.clock = clock;
+        this.tickMillis = tickMillis;
+        int capacity = Integer.highestOneBit(wheelSize);
+        if (capacity < wheelSize) capacity <<= 1;
+        buckets = new Timeout[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * @return - the clock measuring the delays of the wheel.
+     */
+    public Clock clock() {
+        return clock;
+    }
+
+    /**
+     * Schedules a task to run once after the delay.
+     *
+     * @param delayMillis - the delay in milliseconds.
+     * @param task        - the task to run (on the wheel's thread).
+     * @return - the handle for cancelling the task.
+     */
+    public synchronized Timeout schedule(long delayMillis, Runnable task) {
+        if (closed) throw new IllegalStateException("timer wheel is closed");
+        if (thread == null) start();
+
+        long deadlineTick = (clock.currentTimeMillis() + Math.max(0, delayMillis) - startTime + tickMillis - 1) / tickMillis;
+        if (deadlineTick < tick) deadlineTick = tick;
+
+        Timeout timeout = new Timeout(task);
+        timeout.rounds = (deadlineTick - tick) / buckets.length;
+        timeout.bucket = (int) (deadlineTick & mask);
+        timeout.next = buckets[timeout.bucket];
+        if (timeout.next != null) timeout.next.prev = timeout;
+        buckets[timeout.bucket] = timeout;
+        size++;
+        if (deadlineTick < wakeTick) clock.signalAll(this); // the wheel's thread is sleeping for too long
+        return timeout;
+    }
+
+    /**
+     * Stops the wheel's thread. Timeouts that did not expire yet will never run.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (thread != null) clock.signalAll(this);
+    }
+
+    /**
+     * Accepts timeouts again after the wheel was closed (e.g. for a rematch on the same clock). The timeouts that did
+     * not expire before the wheel was closed are dropped, and a new thread starts with the next timeout.
+     */
+    public synchronized void reopen() {
+        if (!closed) return;
+        closed = false;
+        for (Timeout timeout : buckets)
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                unlink(timeout); // so cancelling a dropped timeout is harmless
+                timeout = next;
+            }
+        tick = 0;
+        wakeTick = Long.MAX_VALUE;
+        thread = null; // the old thread exits once it sees it was replaced
+    }
+
+    /**
+     * Starts the wheel's thread and waits until it has registered with the clock, so the time cannot pass the first
+     * timeout before the thread is there to fire it.
+     */
+    private void start() {
+        startTime = clock.currentTimeMillis();
+        CountDownLatch registered = new CountDownLatch(1);
+        thread = new Thread(() -> run(registered), "timer-wheel");
+        thread.setDaemon(true);
+        thread.start();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                registered.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.prev != null) timeout.prev.next = timeout.next;
+        else buckets[timeout.bucket] = timeout.next;
+        if (timeout.next != null) timeout.next.prev = timeout.prev;
+        timeout.prev = timeout.next = null;
+        timeout.bucket = -1;
+        size--;
+    }
+
+    /**
+     * @return - the number of ticks until the next bucket that holds timeouts (at most one revolution).
+     */
+    private int ticksToNextBucket() {
+        for (int i = 0; i < buckets.length; i++)
+            if (buckets[(int) ((tick + i) & mask)] != null) return i;
+        return buckets.length;
+    }
+
+    /**
+     * The main loop of the wheel's thread.
+     *
+     * @param registered - counted down once the thread has registered with the clock.
+     */
+    private void run(CountDownLatch registered) {
+        clock.register(Clock.TIMER_ORDER);
+        registered.countDown();
+        try {
+            while (true) {
+                Timeout expired = null;
+                synchronized (this) {
+                    while (expired == null) {
+                        if (closed || thread != Thread.currentThread()) return;
+                        if (size == 0) {
+                            wakeTick = Long.MAX_VALUE;
+                            clock.await(this, 0);
+                            continue;
+                        }
+
+                        long now = clock.currentTimeMillis();
+                        wakeTick = tick + ticksToNextBucket();
+                        long wakeTime = startTime + wakeTick * tickMillis;
+                        if (wakeTime > now) {
+                            clock.await(this, wakeTime - now);
+                            continue;
+                        }
+                        wakeTick = Long.MAX_VALUE;
+
+                        // process the buckets of all ticks that passed
+                        long dueTick = (now - startTime) / tickMillis;
+                        for (; tick <= dueTick; tick++)
+                            for (Timeout timeout = buckets[(int) (tick & mask)], next; timeout != null; timeout = next) {
+                                next = timeout.next;
+                                if (timeout.rounds > 0) timeout.rounds--;
+                                else {
+                                    unlink(timeout);
+                                    timeout.next = expired; // collect the expired timeouts to run them outside the lock
+                                    expired = timeout;
+                                }
+                            }
+                    }
+                }
+
+                for (Timeout timeout = expired, next; timeout != null; timeout = next) {
+                    next = timeout.next;
+                    timeout.next = null;
+                    try {
+                        timeout.task.run();
+                    } catch (Throwable e) { // an error in one task (e.g. an AssertionError) must not stop the others
+                        logger.log(Level.SEVERE, "timer task failed", e);
+                    }
+                }
+            }
+        } catch (InterruptedException ignored) {
+        } finally {
+            clock.unregister();
+        }
+    }
+}
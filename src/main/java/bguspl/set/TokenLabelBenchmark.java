@@ -0,0 +1,124 @@
+package bguspl.set;
+
+import java.util.SplittableRandom;
+
+/**
+ * Measures the time to update the tokens of a slot and get its label, with 64 players on the 3x4 board: with
+ * TokenLabels, and as the game panel did it before (a flag per player and slot, with the label built by concatenating
+ * the names of all the players on every change, and once per player when the tokens of a slot are removed).
+ * Each player keeps at most 3 tokens, and every tenth change removes all the tokens of a slot (as when a set is taken).
+ * Usage: TokenLabelBenchmark [players] [seconds per measurement]
+ */
+public class TokenLabelBenchmark {
+
+    private static final int SLOTS = 12;
+    private static final int CHANGES = 1 << 16; // the length of the sequence of changes (repeated)
+
+    private static volatile int sink; // keeps the labels from being optimized away
+
+    /**
+     * The benchmark's main function.
+     *
+     * @param args - [players] [seconds per measurement].
+     */
+    public static void main(String[] args) {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 5;
+        String[] names = new String[players];
+        for (int i = 0; i < players; i++)
+            names[i] = "Player " + (i + 1);
+
+        // a sequence of changes: slot >= 0 toggles the token of the player, slot < 0 removes the tokens of slot -1 - s
+        int[] changeSlots = new int[CHANGES], changePlayers = new int[CHANGES];
+        SplittableRandom random = new SplittableRandom(0);
+        boolean[][] placed = new boolean[players][SLOTS];
+        int[] placedCount = new int[players];
+        for (int i = 0; i < CHANGES; i++) {
+            int slot = random.nextInt(SLOTS), player = random.nextInt(players);
+            if (i % 10 == 9) {
+                changeSlots[i] = -1 - slot;
+                for (int p = 0; p < players; p++)
+                    if (placed[p][slot]) { placed[p][slot] = false; placedCount[p]--; }
+                continue;
+            }
+            if (!placed[player][slot] && placedCount[player] == 3) { // remove one of its tokens instead
+                slot = 0;
+                while (!placed[player][slot]) slot++;
+            }
+            placed[player][slot] = !placed[player][slot];
+            placedCount[player] += placed[player][slot] ? 1 : -1;
+            changeSlots[i] = slot;
+            changePlayers[i] = player;
+        }
+
+        double before = measure(seconds, new Runnable() {
+            private final boolean[][] tokens = new boolean[players][SLOTS];
+            private int i;
+
+            @Override
+            public void run() {
+                int slot = changeSlots[i], player = changePlayers[i];
+                i = (i + 1) % CHANGES;
+                if (slot < 0) {
+                    for (int p = 0; p < players; p++) {
+                        tokens[p][-1 - slot] = false;
+                        sink = concatenated(names, tokens, -1 - slot).length();
+                    }
+                } else {
+                    tokens[player][slot] = !tokens[player][slot];
+                    sink = concatenated(names, tokens, slot).length();
+                }
+            }
+        });
+        double after = measure(seconds, new Runnable() {
+            private final TokenLabels tokens = new TokenLabels(names, SLOTS);
+            private int i;
+
+            @Override
+            public void run() {
+                int slot = changeSlots[i], player = changePlayers[i];
+                i = (i + 1) % CHANGES;
+                if (slot < 0) {
+                    tokens.clear(-1 - slot);
+                    sink = tokens.label(-1 - slot).length();
+                } else {
+                    tokens.set(slot, player, !tokens.has(slot, player));
+                    sink = tokens.label(slot).length();
+                }
+            }
+        });
+        System.out.printf("%d players  concatenated %8.1f ns per change  bitmask and cache %8.1f ns per change%n",
+                players, before, after);
+    }
+
+    /**
+     * The label as it was built before TokenLabels.
+     */
+    private static String concatenated(String[] names, boolean[][] tokens, int slot) {
+        String text = "";
+        for (int player = 0; player < names.length; player++) {
+            if (tokens[player][slot])
+                text = text.concat(names[player] + ", ");
+        }
+        if (text.length() < 2)
+            return "";
+        return text.substring(0, text.length() - 2);
+    }
+
+    /**
+     * @return - the mean time of a change in nanoseconds, after a warm up of a tenth of the time.
+     */
+    private static double measure(double seconds, Runnable change) {
+        long warmUp = System.nanoTime() + (long) (seconds * 1e8);
+        while (System.nanoTime() < warmUp)
+            change.run();
+        long start = System.nanoTime(), end = start + (long) (seconds * 1e9), changes = 0;
+        long now;
+        do {
+            for (int i = 0; i < 1000; i++)
+                change.run();
+            changes += 1000;
+        } while ((now = System.nanoTime()) < end);
+        return (double) (now - start) / changes;
+    }
+}
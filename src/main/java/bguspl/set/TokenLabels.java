@@ -0,0 +1,94 @@
+package bguspl.set;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The tokens in each slot of the table as a bitmask of the players that placed them, and the label listing their names.
+ * A label is built once per distinct combination of players and then taken from a cache keyed by the bitmask (up to 64
+ * players; with more, each label is built when asked for, which is still only once per change of the slot).
+ * Not thread safe: in the game it is only used on the event dispatch thread.
+ */
+public class TokenLabels {
+
+    private static final int MAX_CACHED = 4096; // the cache starts over when it holds this many labels
+
+    private final String[] names;
+    private final int words; // the longs in the bitmask of each slot
+    private final long[][] masks; // bit p of slot s is set iff player p has a token in slot s
+    private final Map<Long, String> cache = new HashMap<>();
+
+    /**
+     * @param names - the names of the players.
+     * @param slots - the number of slots in the table.
+     */
+    public TokenLabels(String[] names, int slots) {
+        this.names = names;
+        words = Math.max(1, (names.length + Long.SIZE - 1) / Long.SIZE);
+        masks = new long[slots][words];
+        cache.put(0L, "");
+    }
+
+    /**
+     * Places or removes the token of a player.
+     *
+     * @param placed - true to place the token, false to remove it.
+     * @return - true iff the tokens in the slot changed.
+     */
+    public boolean set(int slot, int player, boolean placed) {
+        long bit = 1L << player, before = masks[slot][player / Long.SIZE];
+        long after = placed ? before | bit : before & ~bit;
+        masks[slot][player / Long.SIZE] = after;
+        return after != before;
+    }
+
+    /**
+     * Removes all the tokens in the slot.
+     *
+     * @return - true iff there were tokens in the slot.
+     */
+    public boolean clear(int slot) {
+        boolean any = false;
+        for (int w = 0; w < words; w++) {
+            any |= masks[slot][w] != 0;
+            masks[slot][w] = 0;
+        }
+        return any;
+    }
+
+    /**
+     * @return - true iff the player has a token in the slot.
+     */
+    public boolean has(int slot, int player) {
+        return (masks[slot][player / Long.SIZE] & 1L << player) != 0;
+    }
+
+    /**
+     * @return - the names of the players with tokens in the slot, separated by commas (empty if none).
+     */
+    public String label(int slot) {
+        if (words > 1) return build(masks[slot]);
+        long mask = masks[slot][0];
+        String label = cache.get(mask);
+        if (label == null) {
+            if (cache.size() >= MAX_CACHED) {
+                cache.clear();
+                cache.put(0L, "");
+            }
+            label = build(masks[slot]);
+            cache.put(mask, label);
+        }
+        return label;
+    }
+
+    private String build(long[] mask) {
+        StringBuilder label = new StringBuilder();
+        for (int w = 0; w < words; w++) {
+            for (long bits = mask[w]; bits != 0; bits &= bits - 1) { // the set bits, lowest first
+                if (label.length() > 0) label.append(", ");
+                label.append(names[w * Long.SIZE + Long.numberOfTrailingZeros(bits)]);
+            }
+        }
+        return label.toString();
+    }
+}
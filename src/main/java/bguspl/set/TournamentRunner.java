@@ -0,0 +1,267 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * Runs many headless games concurrently from one configuration and writes aggregated statistics.
+ * Usage: TournamentRunner [config file] [games] [threads] [output prefix]
+ * Note: set VirtualTime=True in the configuration to run the games as fast as possible.
+ */
+public class TournamentRunner {
+
+    /**
+     * The statistics of a single game.
+     */
+    static class GameResult {
+
+        final int game;
+        final int players;
+        final long seed;
+        final long durationMillis;
+        final long simulatedMillis;
+        final int sets;
+        final int penalties;
+        final int rounds;
+        final int timeouts;
+        final int reshuffles;
+        final int[] winners;
+
+        GameResult(int game, int players, long seed, long durationMillis, long simulatedMillis, int sets,
+                   int penalties, int rounds, int timeouts, int reshuffles, int[] winners) {
+            this.game = game;
+            this.players = players;
+            this.seed = seed;
+            this.durationMillis = durationMillis;
+            this.simulatedMillis = simulatedMillis;
+            this.sets = sets;
+            this.penalties = penalties;
+            this.rounds = rounds;
+            this.timeouts = timeouts;
+            this.reshuffles = reshuffles;
+            this.winners = winners;
+        }
+    }
+
+    private final Logger logger;
+    private final Properties template;
+    private final long baseSeed;
+    private final Leaderboard leaderboard; // null for none
+    private final GameAnalytics.Stats analytics = new GameAnalytics.Stats(); // of the games (if Analytics is set)
+
+    /**
+     * @param logger   - the logger for the games (the games run with logging turned off).
+     * @param template - the configuration all games are created from.
+     */
+    public TournamentRunner(Logger logger, Properties template) {
+        this(logger, template, null);
+    }
+
+    /**
+     * @param logger      - the logger for the games (the games run with logging turned off).
+     * @param template    - the configuration all games are created from.
+     * @param leaderboard - the leaderboard the results of the games are recorded in as they end, or null for none.
+     */
+    public TournamentRunner(Logger logger, Properties template, Leaderboard leaderboard) {
+        this.logger = logger;
+        this.template = template;
+        this.leaderboard = leaderboard;
+        String seed = template.getProperty("RandomSeed", "").trim();
+        baseSeed = seed.isEmpty() ? System.nanoTime() : Long.parseLong(seed);
+    }
+
+    /**
+     * Runs a single game to its end on the calling thread.
+     *
+     * @param game - the index of the game in the tournament (the game's seed is derived from it).
+     * @return - the statistics of the game.
+     */
+    GameResult runGame(int game) {
+        Properties properties = new Properties();
+        properties.putAll(template);
+        properties.setProperty("LogLevel", "OFF");
+        properties.setProperty("HumanPlayers", "0");
+        properties.setProperty("RandomSeed", Long.toString(baseSeed + game));
+
+        Config config = new Config(logger, properties);
+        Util util = new UtilImpl(config);
+        Clock clock = config.virtualTime ? new VirtualClock() : new SystemClock();
+        Journal journal = Journal.DISABLED;
+        if (config.analytics) {
+            journal = new Journal(logger, clock);
+            journal.tap(new GameAnalytics(util, analytics));
+        }
+        Env env = new Env(logger, config, new UserInterfaceNoop(), util, clock, task -> new Thread(task).start(),
+                new TimerWheel(logger, clock), journal);
+
+        Player[] players = new Player[config.players];
+        Table table = new Table(env);
+        Dealer dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, false);
+
+        long start = System.nanoTime();
+        long simulatedStart = env.clock.currentTimeMillis();
+        Thread thread = Thread.currentThread();
+        String name = thread.getName();
+        thread.setName("dealer"); // as in Main
+        try {
+            dealer.run();
+        } finally {
+            thread.setName(name); // the pool's thread is reused
+        }
+        long durationMillis = (System.nanoTime() - start) / 1000000;
+        long simulatedMillis = env.clock.currentTimeMillis() - simulatedStart;
+        env.timers.close();
+        env.journal.close(); // after the tap handed the game to the analytics
+        if (env.clock instanceof VirtualClock) ((VirtualClock) env.clock).close();
+
+        int sets = Arrays.stream(players).mapToInt(Player::score).sum();
+        int penalties = Arrays.stream(players).mapToInt(Player::penalties).sum();
+        if (leaderboard != null) {
+            try {
+                leaderboard.record(config.playerNames, Arrays.stream(players).mapToInt(Player::score).toArray(),
+                        Arrays.stream(players).mapToInt(Player::penalties).toArray());
+            } catch (IOException e) {
+                logger.severe("warning: cannot record game " + game + " in the leaderboard: " + e);
+            }
+        }
+        return new GameResult(game, config.players, config.randomSeed, durationMillis, simulatedMillis, sets, penalties,
+                dealer.rounds(), dealer.timeouts(), dealer.reshuffles(), dealer.winners());
+    }
+
+    /**
+     * Runs the games on a bounded pool of threads and waits for all of them to end.
+     *
+     * @param games   - the number of games to run.
+     * @param threads - the number of games to run concurrently.
+     * @return - the statistics of all games (ordered by game index).
+     */
+    public List<GameResult> run(int games, int threads) throws InterruptedException, ExecutionException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<GameResult>> futures = new ArrayList<>(games);
+            for (int i = 0; i < games; i++) {
+                int game = i;
+                futures.add(pool.submit(() -> runGame(game)));
+            }
+            List<GameResult> results = new ArrayList<>(games);
+            for (Future<GameResult> future : futures)
+                results.add(future.get());
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * @return - the analytics of the games that ended (none unless Analytics is set in the configuration).
+     */
+    public GameAnalytics.Stats analytics() {
+        return analytics;
+    }
+
+    static String toCsv(List<GameResult> results) {
+        StringBuilder sb = new StringBuilder("game,seed,durationMillis,simulatedMillis,sets,penalties,rounds,timeouts,reshuffles,winners\n");
+        for (GameResult r : results) {
+            sb.append(r.game).append(',').append(r.seed).append(',').append(r.durationMillis).append(',')
+                    .append(r.simulatedMillis).append(',').append(r.sets).append(',').append(r.penalties).append(',')
+                    .append(r.rounds).append(',').append(r.timeouts).append(',').append(r.reshuffles).append(',');
+            for (int i = 0; i < r.winners.length; i++)
+                sb.append(i > 0 ? " " : "").append(r.winners[i] + 1);
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    static String toJson(List<GameResult> results) {
+        int players = results.stream().mapToInt(r -> r.players).max().orElse(0);
+        long[] wins = new long[players];
+        long duration = 0, sets = 0, penalties = 0, rounds = 0, timeouts = 0, reshuffles = 0;
+        StringBuilder games = new StringBuilder();
+        for (GameResult r : results) {
+            duration += r.durationMillis;
+            sets += r.sets;
+            penalties += r.penalties;
+            rounds += r.rounds;
+            timeouts += r.timeouts;
+            reshuffles += r.reshuffles;
+            for (int winner : r.winners) wins[winner]++;
+            if (games.length() > 0) games.append(",\n");
+            games.append(String.format("    {\"game\": %d, \"seed\": %d, \"durationMillis\": %d, \"simulatedMillis\": %d, " +
+                            "\"sets\": %d, \"penalties\": %d, \"rounds\": %d, \"timeouts\": %d, \"reshuffles\": %d, " +
+                            "\"winners\": %s}",
+                    r.game, r.seed, r.durationMillis, r.simulatedMillis, r.sets, r.penalties, r.rounds, r.timeouts,
+                    r.reshuffles,
+                    Arrays.toString(Arrays.stream(r.winners).map(id -> id + 1).toArray())));
+        }
+        int n = Math.max(1, results.size());
+        StringBuilder distribution = new StringBuilder();
+        for (int i = 0; i < players; i++)
+            distribution.append(i > 0 ? ", " : "").append('"').append(i + 1).append("\": ").append(wins[i]);
+        return "{\n  \"summary\": {\"games\": " + results.size() +
+                ", \"meanDurationMillis\": " + duration / n +
+                ", \"meanSets\": " + (double) sets / n +
+                ", \"meanPenalties\": " + (double) penalties / n +
+                ", \"meanRounds\": " + (double) rounds / n +
+                ", \"meanTimeouts\": " + (double) timeouts / n +
+                ", \"meanReshuffles\": " + (double) reshuffles / n +
+                ", \"wins\": {" + distribution + "}},\n  \"games\": [\n" + games + "\n  ]\n}\n";
+    }
+
+    /**
+     * The tournament's main function.
+     *
+     * @param args - [config file] [games] [threads] [output prefix].
+     */
+    public static void main(String[] args) throws Exception {
+        String configFile = args.length > 0 ? args[0] : "config.properties";
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        String output = args.length > 3 ? args[3] : "tournament";
+
+        Logger logger = Logger.getLogger("SetTournamentLogger");
+        logger.setUseParentHandlers(false);
+        Properties template = Config.loadProperties(configFile, logger);
+        String leaderboardDirectory = new Config(logger, template).leaderboardDirectory;
+        Leaderboard leaderboard = leaderboardDirectory.isEmpty() ? null
+                : new Leaderboard(logger, Paths.get(leaderboardDirectory));
+        TournamentRunner runner = new TournamentRunner(logger, template, leaderboard);
+
+        long start = System.nanoTime();
+        List<GameResult> results;
+        try {
+            results = runner.run(games, threads);
+        } finally {
+            if (leaderboard != null) leaderboard.close();
+        }
+        long elapsed = (System.nanoTime() - start) / 1000000;
+
+        Files.write(Paths.get(output + ".csv"), toCsv(results).getBytes(StandardCharsets.UTF_8));
+        Files.write(Paths.get(output + ".json"), toJson(results).getBytes(StandardCharsets.UTF_8));
+        if (runner.analytics().games() > 0)
+            Files.write(Paths.get(output + "-analytics.txt"),
+                    runner.analytics().toString().getBytes(StandardCharsets.UTF_8));
+        System.out.println("played " + games + " games on " + threads + " threads in " + elapsed + " ms. results: "
+                + output + ".csv, " + output + ".json");
+    }
+}
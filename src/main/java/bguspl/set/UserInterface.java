@@ -50,6 +50,15 @@ public interface UserInterface {
      */
     void setCountdown(long millies, boolean warn);
 
+    /**
+     * Count down to the specified deadline. The countdown is updated by the user interface itself until it reaches 0
+     * or is replaced (by another deadline, setCountdown or reset), and is painted in red with milliseconds during the
+     * last TurnTimeoutWarningSeconds.
+     * @param deadline - the time the countdown reaches 0 (in the time of the clock).
+     * @param clock    - the clock of the game.
+     */
+    void setCountdownDeadline(long deadline, Clock clock);
+
     /**
      * Set the elapsed time to the specified number of milliseconds.
      * @param millies - the milliseconds to be shown.
@@ -80,6 +89,11 @@ public interface UserInterface {
      */
     void announceWinner(int[] players);
 
+    /**
+     * Clear the table, the tokens, the scores and the winner announcement for a new game (reusing the window).
+     */
+    void reset();
+
     /**
      * Programmatically closes the window.
      */
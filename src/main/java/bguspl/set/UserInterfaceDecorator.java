@@ -2,103 +2,183 @@ package bguspl.set;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
+/**
+ * Logs every call of the user interface, then passes it to the decorated user interface, if any.
+ * In the game it subscribes to the EventBus, so it runs on a thread of its own. The debug spin (see Util::spin) must
+ * delay the game's threads, so a decorator that only logs leaves it to the bus, and only a decorator of a user
+ * interface, which runs on the calling thread, spins.
+ */
 public class UserInterfaceDecorator implements UserInterface {
 
     private final Logger logger;
     private final Util util;
     private final UserInterface ui;
+    private final GameMetrics metrics; // counts the updates (null for none)
+    private final boolean spin; // spins on the calling thread (see Util::spin)
+
+    /**
+     * A decorator that only logs.
+     */
+    public UserInterfaceDecorator(Logger logger, Util util) {
+        this(logger, util, (GameMetrics) null);
+    }
+
+    /**
+     * A decorator that only logs and counts the updates (see GameMetrics::uiUpdates). It does not spin.
+     */
+    public UserInterfaceDecorator(Logger logger, Util util, GameMetrics metrics) {
+        this.ui = null;
+        this.logger = logger;
+        this.util = util;
+        this.metrics = metrics;
+        this.spin = false;
+    }
 
     public UserInterfaceDecorator(Logger logger, Util util, UserInterface ui) {
         this.ui = ui;
         this.logger = logger;
         this.util = util;
+        this.metrics = null;
+        this.spin = true;
 
         if (ui == null) System.out.println("running without a user interface. Check logs.");
     }
 
     @Override
     public void placeCard(int card, int slot) {
-        logger.severe("placing card " + card + " in slot " + slot);
-        util.spin();
+        updated();
+        fine("placing card {0,number,#} in slot {1,number,#}", card, slot);
+        spin();
         if (ui != null) ui.placeCard(card, slot);
     }
 
     @Override
     public void removeCard(int slot) {
-        logger.severe("removing card from slot " + slot);
-        util.spin();
+        updated();
+        fine("removing card from slot {0,number,#}", slot);
+        spin();
         if (ui != null) ui.removeCard(slot);
     }
 
     @Override
     public void placeToken(int player, int slot) {
-        logger.severe("player " + (player + 1) + " placing token on slot " + slot);
-        util.spin();
+        updated();
+        fine("player {0,number,#} placing token on slot {1,number,#}", player + 1, slot);
+        spin();
         if (ui != null) ui.placeToken(player, slot);
     }
 
     @Override
     public void removeTokens() {
-        logger.severe("removing all tokens");
-        util.spin();
+        updated();
+        fine("removing all tokens");
+        spin();
         if (ui != null) ui.removeTokens();
     }
 
     @Override
     public void removeTokens(int slot) {
-        logger.severe("removing tokens from slot " + slot);
-        util.spin();
+        updated();
+        fine("removing tokens from slot {0,number,#}", slot);
+        spin();
         if (ui != null) ui.removeTokens(slot);
     }
 
     @Override
     public void removeToken(int player, int slot) {
-        logger.severe("removing player " + (player + 1) + " token from slot " + slot);
-        util.spin();
+        updated();
+        fine("removing player {0,number,#} token from slot {1,number,#}", player + 1, slot);
+        spin();
         if (ui != null) ui.removeToken(player, slot);
     }
 
     @Override
     public void setCountdown(long millies, boolean warn) {
-        if (!warn || millies % 1000L == 0L)
-            logger.severe("updating countdown to " + millies);
+        updated();
+        fine("updating countdown to {0,number,#}", millies);
         if (ui != null) ui.setCountdown(millies, warn);
     }
 
+    @Override
+    public void setCountdownDeadline(long deadline, Clock clock) {
+        updated();
+        fine("counting down to {0,number,#} ({1,number,#} millis from now)", deadline, deadline - clock.currentTimeMillis());
+        if (ui != null) ui.setCountdownDeadline(deadline, clock);
+    }
+
     @Override
     public void setElapsed(long millies) {
-        logger.severe("updating elapsed time to " + millies);
-        util.spin();
+        updated();
+        fine("updating elapsed time to {0,number,#}", millies);
+        spin();
         if (ui != null) ui.setElapsed(millies);
     }
 
     @Override
     public void setFreeze(int player, long millies) {
-        logger.severe("setting player " + (player + 1) + " freeze to " + millies);
-        util.spin();
+        updated();
+        fine("setting player {0,number,#} freeze to {1,number,#}", player + 1, millies);
+        spin();
         if (ui != null) ui.setFreeze(player, millies);
     }
 
     @Override
     public void setScore(int player, int score) {
-        logger.severe("setting player " + (player + 1) + " score to " + score);
-        util.spin();
+        updated();
+        fine("setting player {0,number,#} score to {1,number,#}", player + 1, score);
+        spin();
         if (ui != null) ui.setScore(player, score);
     }
 
     @Override
     public void announceWinner(int[] players) {
-        List<String> winners = Arrays.stream(players).mapToObj(id -> "player " + (id + 1)).collect(Collectors.toList());
-        logger.severe("announcing winner(s): " + String.join(", ", winners));
+        updated();
+        if (logger.isLoggable(Level.INFO)) {
+            List<String> winners = Arrays.stream(players).mapToObj(id -> "player " + (id + 1)).collect(Collectors.toList());
+            logger.info("announcing winner(s): " + String.join(", ", winners));
+        }
         if (ui != null) ui.announceWinner(players);
     }
 
+    @Override
+    public void reset() {
+        updated();
+        logger.info("resetting user interface elements for a new game");
+        if (ui != null) ui.reset();
+    }
+
     @Override
     public void dispose() {
-        logger.severe("disposing of user interface elements");
+        updated();
+        logger.info("disposing of user interface elements");
         if (ui != null) ui.dispose();
     }
+
+    private void updated() {
+        if (metrics != null) metrics.uiUpdates.increment();
+    }
+
+    private void spin() {
+        if (spin) util.spin();
+    }
+
+    /**
+     * Logs a ui update at the FINE level. Nothing is allocated unless FINE is enabled, and the message is formatted
+     * only when it is written (on the log writer thread).
+     */
+    private void fine(String message) {
+        logger.fine(message);
+    }
+
+    private void fine(String message, long parameter) {
+        if (logger.isLoggable(Level.FINE)) logger.log(Level.FINE, message, parameter);
+    }
+
+    private void fine(String message, long first, long second) {
+        if (logger.isLoggable(Level.FINE)) logger.log(Level.FINE, message, new Object[]{first, second});
+    }
 }
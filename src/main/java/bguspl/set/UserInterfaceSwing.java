@@ -4,10 +4,10 @@ import bguspl.set.ex.Player;
 
 import javax.swing.*;
 import java.awt.*;
-import java.io.FileNotFoundException;
-import java.net.URL;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -15,6 +15,8 @@ import static java.lang.String.format;
 
 /**
  * Java Swing implementation of the UserInterface interface.
+ * The methods of the interface may be called from any thread: they only queue an update, and the queued updates are
+ * applied on the event dispatch thread at most MaxFrameRate times per second, repainting only the cells that changed.
  */
 public class UserInterfaceSwing extends JFrame implements UserInterface {
 
@@ -23,14 +25,34 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
     private final PlayersPanel playersPanel;
     private final WinnerPanel winnerPanel;
     private final Config config;
+    private final CardImages images;
+
+    private final ConcurrentLinkedQueue<Runnable> updates = new ConcurrentLinkedQueue<>(); // applied on the next frame
+    private final AtomicBoolean frameScheduled = new AtomicBoolean(); // true while a frame will apply the updates
+    private final Timer frameTimer; // delays a frame that is too close to the previous one (event dispatch thread only)
+    private final long frameNanos; // the minimal time between frames
+    private long lastFrame; // the time of the previous frame (event dispatch thread only)
 
     static String intInBaseToPaddedString(int n, int padding, int base) {
         return format("%" + padding + "s", Integer.toString(n, base)).replace(' ', '0');
     }
 
     public UserInterfaceSwing(Logger logger, Config config, Player[] players) {
+        this(logger, config, players, null);
+    }
+
+    /**
+     * @param onClose - called when the window is closed (null for exiting the application via Main).
+     */
+    public UserInterfaceSwing(Logger logger, Config config, Player[] players, Runnable onClose) {
 
         this.config = config;
+        frameNanos = 1000000000L / config.maxFrameRate;
+        lastFrame = System.nanoTime() - frameNanos;
+        frameTimer = new Timer(0, e -> frame());
+        frameTimer.setRepeats(false);
+
+        images = new CardImages(logger, config, this::cardLoaded);
         timerPanel = new TimerPanel();
         gamePanel = new GamePanel();
         playersPanel = new PlayersPanel();
@@ -61,18 +83,69 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
 
         setTitle("Set Card Game");
         setLocationRelativeTo(null);
-        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        setDefaultCloseOperation(onClose == null ? JFrame.EXIT_ON_CLOSE : JFrame.DISPOSE_ON_CLOSE);
 
         addKeyListener(new InputManager(logger, config, players));
-        addWindowListener(new WindowManager());
+        addWindowListener(onClose == null ? new WindowManager() : new WindowManager(onClose));
 
         EventQueue.invokeLater(() -> setVisible(true));
+        images.start(); // the cards are shown as they are loaded
+    }
+
+    /**
+     * Queues an update of the window and makes sure a frame will apply it.
+     *
+     * @param update - the update (run on the event dispatch thread).
+     */
+    private void update(Runnable update) {
+        updates.add(update);
+        if (frameScheduled.compareAndSet(false, true))
+            EventQueue.invokeLater(this::scheduleFrame);
+    }
+
+    /**
+     * Called (on a loading thread) when the image of a card is ready.
+     */
+    private void cardLoaded(int card) {
+        update(() -> gamePanel.cardLoaded(card));
+    }
+
+    /**
+     * Runs the next frame now, or when the minimal time between frames has passed.
+     */
+    private void scheduleFrame() {
+        long wait = lastFrame + frameNanos - System.nanoTime();
+        if (wait <= 0) {
+            frame();
+        } else {
+            frameTimer.setInitialDelay((int) ((wait + 999999) / 1000000));
+            frameTimer.restart();
+        }
+    }
+
+    /**
+     * Applies all the queued updates, then repaints the cells they changed.
+     */
+    private void frame() {
+        lastFrame = System.nanoTime();
+        frameScheduled.set(false); // updates queued from now on need another frame (it may find nothing left to do)
+        Runnable update;
+        while ((update = updates.poll()) != null)
+            update.run();
+        gamePanel.repaintChangedCells();
     }
 
     private class TimerPanel extends JPanel {
 
+        private static final int WARNING_REPAINT_MILLIS = 30; // how often the countdown is repainted when it shows millis
+
         private final JLabel timerField;
 
+        // the countdown repaints itself from the deadline (only touched on the event dispatch thread)
+        private final Timer countdownTimer;
+        private long deadline;
+        private Clock clock;
+
         private String generateTime(long millies, boolean warn) {
             if (warn)
                 return format("Remaining Time: %.2f", (double) millies / 1000.0f);
@@ -88,9 +161,53 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
             timerField.setForeground(Color.BLACK);
 
             add(timerField);
+
+            countdownTimer = new Timer(0, e -> countdownTick());
+            countdownTimer.setRepeats(false);
+        }
+
+        private void reset() {
+            countdownTimer.stop();
+            timerField.setText(config.turnTimeoutMillis < 0 ? "PLAY" : "GET READY...");
+            timerField.setForeground(Color.BLACK);
+            setVisible(true);
         }
 
         private void setCountdown(long millies, boolean warn) {
+            countdownTimer.stop();
+            showCountdown(millies, warn);
+        }
+
+        private void setCountdownDeadline(long deadline, Clock clock) {
+            this.deadline = deadline;
+            this.clock = clock;
+            countdownTick();
+        }
+
+        /**
+         * Shows the time left to the deadline and schedules the next repaint: on the next whole second, or after
+         * WARNING_REPAINT_MILLIS when the remaining time is in the warning period.
+         */
+        private void countdownTick() {
+            long remaining = Math.max(0, deadline - clock.currentTimeMillis());
+            long warning = config.turnTimeoutWarningMillis;
+            if (remaining == 0) {
+                setCountdown(0, true);
+                return;
+            }
+            long delay;
+            if (remaining > warning) { // round the excess seconds to keep the time clean
+                showCountdown(Math.round(remaining / 1000.0) * 1000, false);
+                delay = Math.min((remaining - 1) % 1000 + 1, remaining - warning);
+            } else {
+                showCountdown(remaining, true);
+                delay = Math.min(WARNING_REPAINT_MILLIS, remaining);
+            }
+            countdownTimer.setInitialDelay((int) delay);
+            countdownTimer.restart();
+        }
+
+        private void showCountdown(long millies, boolean warn) {
             timerField.setText(generateTime(millies, warn));
             timerField.setForeground(warn ? Color.RED : Color.BLACK);
         }
@@ -100,75 +217,63 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         }
     }
 
-    private class GamePanel extends JLayeredPane {
+    private class GamePanel extends JPanel {
 
-        private final Image emptyCard;
-        private final Image[] deck;
-        private final Image[][] grid;
-        private final boolean[][][] playerTokens;
-        private final JLabel[][] tokenText;
-
-        private Image loadImageResource(String filename) {
-            URL imageResource = getClass().getClassLoader().getResource(filename);
-            if (imageResource == null)
-                throw new RuntimeException(new FileNotFoundException(filename));
-            return new ImageIcon(imageResource).getImage();
-        }
+        private final TableRenderer renderer;
+        private final TokenLabels tokens;
+        private final boolean[][] changed; // cells to repaint on this frame
+        private final boolean[][] tokensChanged; // cells whose token text is outdated
 
         private GamePanel() {
 
             setPreferredSize(new Dimension(config.columns * config.cellWidth, config.rows * config.cellHeight));
+            setLayout(null);
+            setOpaque(true); // the cells cover the whole panel
 
-            // init deck and load all pictures from png files
+            // the card images are named by their features
             assert config.featureSize < 10; // otherwise there will be naming conflicts
 
-            // load the image resources
-            deck = new Image[config.deckSize];
-            for (int i = 0; i < config.deckSize; ++i)
-                deck[i] = loadImageResource("cards/" + intInBaseToPaddedString(i, config.featureCount, config.featureSize) + ".png");
-            emptyCard = loadImageResource("cards/empty_card.png");
+            // the cells are drawn by the renderer, with the tokens text like a label at the top of the cell
+            renderer = new TableRenderer(config, images, UIManager.getFont("Label.font"), Color.black, getBackground());
+            tokens = new TokenLabels(config.playerNames, config.tableSize);
+            changed = new boolean[config.rows][config.columns];
+            tokensChanged = new boolean[config.rows][config.columns];
+        }
 
-            grid = new Image[config.rows][config.columns];
-            tokenText = new JLabel[config.rows][config.columns];
-            playerTokens = new boolean[config.players][config.rows][config.columns];
-            for (int row = 0; row < config.rows; row++) {
-                for (int column = 0; column < config.columns; column++) {
-                    // init the cards on the table grid as empty cards
-                    grid[row][column] = emptyCard;
-
-                    // init the JLabel selection overlay
-                    tokenText[row][column] = new JLabel("");
-                    tokenText[row][column].setVerticalAlignment(JLabel.TOP);
-                    tokenText[row][column].setHorizontalAlignment(JLabel.CENTER);
-                    tokenText[row][column].setOpaque(false);
-                    tokenText[row][column].setBorder(BorderFactory.createLineBorder(Color.black));
-                    tokenText[row][column].setBounds((column * config.cellWidth), (row * config.cellHeight), config.cellWidth, config.cellHeight);
-                    add(tokenText[row][column]);
-                }
-            }
+        private void reset() {
+            renderer.clear();
+            removeTokens();
+            for (int row = 0; row < config.rows; row++)
+                Arrays.fill(changed[row], true);
         }
 
         private void placeCard(int slot, int card) {
             int row = slot / config.columns;
             int column = slot % config.columns;
-            grid[row][column] = deck[card];
-            validate();
-            repaint();
+            renderer.setCard(row, column, card);
+            changed[row][column] = true;
         }
 
         private void removeCard(int slot) {
             int row = slot / config.columns;
             int column = slot % config.columns;
-            grid[row][column] = emptyCard;
-            validate();
-            repaint();
+            renderer.setCard(row, column, -1);
+            changed[row][column] = true;
+        }
+
+        /**
+         * Repaints the cells of a card whose image was not ready when it was placed.
+         */
+        private void cardLoaded(int card) {
+            if (!renderer.invalidate(card)) return;
+            for (int row = 0; row < config.rows; row++)
+                for (int column = 0; column < config.columns; column++)
+                    if (renderer.getCard(row, column) == card)
+                        changed[row][column] = true;
         }
 
         private void placeToken(int player, int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            playerTokens[player][row][column] = true;
-            tokenText[row][column].setText(generatePlayersTokenText(row, column));
+            setToken(player, slot, true);
         }
 
         private void removeTokens() {
@@ -177,38 +282,43 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         }
 
         private void removeTokens(int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            for (int player = 0; player < playerTokens.length; player++) {
-                playerTokens[player][row][column] = false;
-                tokenText[row][column].setText(generatePlayersTokenText(row, column));
-            }
+            if (tokens.clear(slot))
+                tokensChanged[slot / config.columns][slot % config.columns] = true;
         }
 
         private void removeToken(int player, int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            playerTokens[player][row][column] = false;
-            tokenText[row][column].setText(generatePlayersTokenText(row, column));
+            setToken(player, slot, false);
+        }
+
+        private void setToken(int player, int slot, boolean placed) {
+            if (tokens.set(slot, player, placed))
+                tokensChanged[slot / config.columns][slot % config.columns] = true;
         }
 
-        private String generatePlayersTokenText(int row, int column) {
-            String text = "";
-            for (int player = 0; player < config.players; player++) {
-                if (playerTokens[player][row][column])
-                    text = text.concat(config.playerNames[player] + ", ");
+        /**
+         * Updates the token text and repaints each cell that changed since the previous frame (once, no matter how
+         * many times it changed).
+         */
+        private void repaintChangedCells() {
+            for (int row = 0; row < config.rows; row++) {
+                for (int column = 0; column < config.columns; column++) {
+                    if (tokensChanged[row][column]) {
+                        tokensChanged[row][column] = false;
+                        renderer.setText(row, column, tokens.label(row * config.columns + column));
+                        changed[row][column] = true;
+                    }
+                    if (changed[row][column]) {
+                        changed[row][column] = false;
+                        repaint(column * config.cellWidth, row * config.cellHeight, config.cellWidth, config.cellHeight);
+                    }
+                }
             }
-            if (text.length() < 2)
-                return "";
-            return text.substring(0, text.length() - 2);
         }
 
         @Override
         public void paintComponent(Graphics g) {
-            // draw card images
-            for (int row = 0; row < config.rows; row++)
-                for (int column = 0; column < config.columns; column++)
-                    g.drawImage(grid[row][column], (column * config.cellWidth), (row * config.cellHeight), this);
+            // draw the cells that need repainting (the renderer draws again only the cells that changed)
+            renderer.paint(g, getGraphicsConfiguration());
         }
     }
 
@@ -235,6 +345,14 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
             }
         }
 
+        private void reset() {
+            for (int i = 0; i < config.players; i++) {
+                setFreeze(i, 0);
+                setScore(i, 0);
+            }
+            setVisible(true);
+        }
+
         private void setFreeze(int player, long millies) {
             if (millies > 0) {
                 this.playersTable[0][player].setText(config.playerNames[player] + " (" + millies / 1000 + ")");
@@ -276,63 +394,82 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
 
     @Override
     public void placeCard(int card, int slot) {
-        gamePanel.placeCard(slot, card);
+        images.prioritize(card);
+        update(() -> gamePanel.placeCard(slot, card));
     }
 
     @Override
     public void removeCard(int slot) {
-        gamePanel.removeCard(slot);
+        update(() -> gamePanel.removeCard(slot));
     }
 
     @Override
     public void placeToken(int player, int slot) {
-        gamePanel.placeToken(player, slot);
+        update(() -> gamePanel.placeToken(player, slot));
     }
 
     @Override
     public void removeTokens() {
-        gamePanel.removeTokens();
+        update(gamePanel::removeTokens);
     }
 
     @Override
     public void removeTokens(int slot) {
-        gamePanel.removeTokens(slot);
+        update(() -> gamePanel.removeTokens(slot));
     }
 
     @Override
     public void removeToken(int player, int slot) {
-        gamePanel.removeToken(player, slot);
+        update(() -> gamePanel.removeToken(player, slot));
     }
 
     @Override
     public void setCountdown(long millies, boolean warn) {
-        timerPanel.setCountdown(millies, warn);
+        update(() -> timerPanel.setCountdown(millies, warn));
+    }
+
+    @Override
+    public void setCountdownDeadline(long deadline, Clock clock) {
+        update(() -> timerPanel.setCountdownDeadline(deadline, clock));
     }
 
     @Override
     public void setElapsed(long millies) {
-        timerPanel.setElapsed(millies);
+        update(() -> timerPanel.setElapsed(millies));
     }
 
     @Override
     public void setFreeze(int player, long millies) {
-        playersPanel.setFreeze(player, millies);
+        update(() -> playersPanel.setFreeze(player, millies));
     }
 
     @Override
     public void setScore(int player, int score) {
-        playersPanel.setScore(player, score);
+        update(() -> playersPanel.setScore(player, score));
     }
 
     @Override
     public void announceWinner(int[] players) {
-        playersPanel.setVisible(false);
-        winnerPanel.announceWinner(players);
-        winnerPanel.setVisible(true);
+        update(() -> {
+            playersPanel.setVisible(false);
+            winnerPanel.announceWinner(players);
+            winnerPanel.setVisible(true);
+        });
+    }
+
+    @Override
+    public void reset() {
+        update(() -> {
+            winnerPanel.setVisible(false);
+            timerPanel.reset();
+            gamePanel.reset();
+            playersPanel.reset();
+        });
     }
 
     @Override
     public void dispose() {
-        super.dispose();
+        if (EventQueue.isDispatchThread()) super.dispose(); // e.g. when the window is closed
+        else update(super::dispose); // after the updates that are still queued
     }
 }
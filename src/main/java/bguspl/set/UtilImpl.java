@@ -13,8 +13,16 @@ public class UtilImpl implements Util {
 
     private final Config config;
 
+    /**
+     * The features of every card in the deck, computed once (immutable, so it can be shared by many games).
+     */
+    private final int[][] cardFeatures;
+
     public UtilImpl(Config config) {
         this.config = config;
+        cardFeatures = new int[config.deckSize][config.featureCount];
+        for (int card = 0; card < config.deckSize; card++)
+            cardToFeatures(card, cardFeatures[card]);
     }
 
     private void cardToFeatures(int card, int[] features) {
@@ -26,35 +34,34 @@ public class UtilImpl implements Util {
 
     @Override
     public int[] cardToFeatures(int card) {
-        int[] features = new int[config.featureCount];
-        cardToFeatures(card, features);
-        return features;
+        return cardFeatures[card].clone();
     }
 
     @Override
     public int[][] cardsToFeatures(int[] cards) {
-        int[][] features = new int[cards.length][config.featureCount];
-        IntStream.range(0, cards.length).forEach(i -> cardToFeatures(cards[i], features[i]));
+        int[][] features = new int[cards.length][];
+        IntStream.range(0, cards.length).forEach(i -> features[i] = cardToFeatures(cards[i]));
         return features;
     }
 
     @Override
     public boolean testSet(int[] cards) {
-        int[][] features = cardsToFeatures(Arrays.copyOf(cards, cards.length));
+        // reads the features table directly, so testing a set does not allocate (the computer players test many)
+        int[][] features = cardFeatures;
         for (int i = 0; i < config.featureCount; ++i) {
             boolean sameSame = true, butDifferent = true;
 
             // check if this features is sameSame in all cards
-            for (int j = 1; j < features.length; ++j)
-                if (features[0][i] != features[j][i]) {
+            for (int j = 1; j < cards.length; ++j)
+                if (features[cards[0]][i] != features[cards[j]][i]) {
                     sameSame = false;
                     break;
                 }
 
             // check if this feature is butDifferent in all cards
-            for (int j = 1; j < features.length; ++j)
-                for (int k = j; k < features.length; ++k)
-                    if (features[j - 1][i] == features[k][i]) {
+            for (int j = 1; j < cards.length; ++j)
+                for (int k = j; k < cards.length; ++k)
+                    if (features[cards[j - 1]][i] == features[cards[k]][i]) {
                         butDifferent = false;
                         break;
                     }
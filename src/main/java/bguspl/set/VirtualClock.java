@@ -0,0 +1,325 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A clock that runs in simulated time.
+ * The time stands still as long as at least one registered game thread is running (i.e. not waiting through the
+ * clock). Once all registered threads are waiting, the time jumps directly to the nearest deadline and the threads
+ * whose deadline has passed are woken up. This way timeouts and freezes fire exactly as they would in real time, but
+ * a game runs as fast as the CPU allows.
+ * Threads are woken up one at a time, each once the threads woken before it are waiting again. A signaled thread is
+ * woken up the same way, as if its deadline were now, so it does not run alongside the thread that signaled it.
+ * Threads due at the same time are woken up in the order they registered with (e.g. the computer players before the
+ * dealer, see Clock::register), then unregistered threads in the order they started waiting. So only one game thread
+ * runs at a time, and the game goes the same way every time the same keys are pressed at the same times, whatever
+ * the threads did before and however busy the machine is (see Replay).
+ * Note: monitors used with await must only be notified via signal/signalAll (and not via Object::notify).
+ */
+public class VirtualClock implements Clock {
+
+    /**
+     * A thread that is currently waiting through the clock.
+     */
+    private static class Waiter {
+
+        final Object monitor; // the monitor the thread waits on (null if sleeping)
+        long deadline; // the virtual time to wake up at (Long.MAX_VALUE if none), now once signaled
+        final boolean registered; // true iff the thread is a registered game thread
+        final int order; // the order of the thread (see register), orders the threads woken up at the same time
+        boolean signaled; // true once the thread was signaled (it is woken up by the driver)
+        volatile boolean woken; // true once the thread was woken up
+
+        Waiter(Object monitor, long deadline, boolean registered, int order) {
+            this.monitor = monitor;
+            this.deadline = deadline;
+            this.registered = registered;
+            this.order = order;
+        }
+    }
+
+    /**
+     * The current virtual time (written only while holding the clock's lock).
+     */
+    private volatile long now;
+
+    /**
+     * The number of registered threads that are not waiting through the clock.
+     */
+    private int busy;
+
+    private final Map<Thread, Integer> registered = new HashMap<>(); // the registered threads and their orders
+    private final List<Waiter> waiters = new ArrayList<>();
+
+    /**
+     * The thread that advances the time and wakes up the threads waiting on monitors. Monitors are notified by this
+     * thread while it holds no other lock, so that it cannot take part in a deadlock with the game threads. Sleeping
+     * threads are woken up by the last thread that stops running, without the driver (see handOff).
+     * A new driver replaces it when the clock is reopened.
+     */
+    private Thread driver;
+
+    private volatile boolean closed;
+
+    public VirtualClock() {
+        this(0);
+    }
+
+    /**
+     * @param startMillis - the virtual time the clock starts at.
+     */
+    public VirtualClock(long startMillis) {
+        now = startMillis;
+        startDriver();
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return now;
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        if (millis <= 0) return;
+        Waiter waiter, next;
+        synchronized (this) {
+            waiter = enter(null, deadline(millis));
+            next = handOff(waiter);
+        }
+        try {
+            wakeSleeper(next);
+            synchronized (waiter) {
+                while (!waiter.woken) waiter.wait();
+            }
+        } finally {
+            synchronized (this) {
+                leave(waiter);
+            }
+        }
+    }
+
+    @Override
+    public void await(Object monitor, long millis) throws InterruptedException {
+        Waiter waiter, next;
+        synchronized (this) {
+            waiter = enter(monitor, millis > 0 ? deadline(millis) : Long.MAX_VALUE);
+            next = handOff(waiter);
+        }
+        wakeSleeper(next);
+        try {
+            while (!waiter.woken) monitor.wait();
+        } finally {
+            synchronized (this) {
+                leave(waiter);
+            }
+        }
+    }
+
+    /**
+     * Signals the first of the threads waiting on the monitor, in the order they registered with.
+     */
+    @Override
+    public void signal(Object monitor) {
+        synchronized (this) {
+            Waiter first = null;
+            for (Waiter waiter : waiters)
+                if (waiter.monitor == monitor && !waiter.woken && !waiter.signaled
+                        && (first == null || waiter.order < first.order)) first = waiter;
+            if (first == null) return;
+            if (!closed) {
+                signaled(first);
+                return;
+            }
+            wake(first);
+        }
+        monitor.notifyAll(); // the waiters that were not woken up will go back to wait
+    }
+
+    @Override
+    public void signalAll(Object monitor) {
+        synchronized (this) {
+            boolean woken = false;
+            for (Waiter waiter : waiters)
+                if (waiter.monitor == monitor && !waiter.woken && !waiter.signaled) {
+                    if (!closed) signaled(waiter);
+                    else {
+                        wake(waiter);
+                        woken = true;
+                    }
+                }
+            if (!woken) return;
+        }
+        monitor.notifyAll();
+    }
+
+    @Override
+    public synchronized void register(int order) {
+        if (registered.put(Thread.currentThread(), order) == null) busy++;
+    }
+
+    @Override
+    public void unregister() {
+        Waiter next;
+        synchronized (this) {
+            if (registered.remove(Thread.currentThread()) == null) return;
+            busy--;
+            next = handOff(null);
+        }
+        wakeSleeper(next);
+    }
+
+    /**
+     * Stops the thread driving the clock. Threads that are still waiting on a deadline will not be woken up (unless the
+     * clock is reopened), but signaled threads are woken up right away (from now on as soon as they are signaled).
+     */
+    public void close() {
+        List<Object> monitors = new ArrayList<>();
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+            for (Waiter waiter : waiters)
+                if (waiter.signaled && !waiter.woken) {
+                    wake(waiter);
+                    monitors.add(waiter.monitor);
+                }
+        }
+        for (Object monitor : monitors)
+            synchronized (monitor) {
+                monitor.notifyAll();
+            }
+    }
+
+    /**
+     * Starts driving the clock again after it was closed (e.g. for a rematch on the same clock). The time goes on
+     * from where it stopped.
+     */
+    public synchronized void reopen() {
+        if (!closed) return;
+        closed = false;
+        startDriver();
+    }
+
+    private void startDriver() {
+        driver = new Thread(this::drive, "virtual-clock");
+        driver.setDaemon(true);
+        driver.start();
+    }
+
+    private long deadline(long millis) {
+        return millis >= Long.MAX_VALUE - 1 - now ? Long.MAX_VALUE - 1 : now + millis;
+    }
+
+    private Waiter enter(Object monitor, long deadline) {
+        Integer order = registered.get(Thread.currentThread());
+        Waiter waiter = new Waiter(monitor, deadline, order != null, order != null ? order : Integer.MAX_VALUE);
+        waiters.add(waiter);
+        if (waiter.registered) busy--;
+        return waiter;
+    }
+
+    private void leave(Waiter waiter) {
+        waiters.remove(waiter);
+        if (waiter.registered && !waiter.woken) busy++; // interrupted
+    }
+
+    private void wake(Waiter waiter) {
+        waiter.woken = true;
+        if (waiter.registered) busy++;
+    }
+
+    /**
+     * Makes the driver wake up the waiter as soon as it is the first thread due.
+     */
+    private void signaled(Waiter waiter) {
+        waiter.signaled = true;
+        waiter.deadline = now;
+        if (busy == 0) notifyAll(); // the signal came from an unregistered thread, there is no one to hand off the turn
+    }
+
+    /**
+     * Called by a thread that stops running (while holding the clock's lock). If it was the last registered thread
+     * that ran, the turn goes to the next thread due: a sleeping thread is handed the turn by the calling thread
+     * itself (see wakeSleeper), which saves waking up the driver. A thread waiting on a monitor is woken up by the
+     * driver, as only the driver notifies monitors (see driver).
+     *
+     * @param self - the calling thread's waiter (null if it is not waiting), which needs no notification.
+     * @return - the sleeping thread to wake up once the clock's lock is released, or null if none.
+     */
+    private Waiter handOff(Waiter self) {
+        Waiter first = due();
+        if (first == null) return null;
+        if (first.monitor != null && first != self) {
+            notifyAll();
+            return null;
+        }
+        wake(first);
+        return first == self ? null : first;
+    }
+
+    /**
+     * Notifies a sleeping thread that was woken up. Its waiter's lock is never held while acquiring another lock, so
+     * this is safe whatever locks the calling thread holds.
+     */
+    private static void wakeSleeper(Waiter waiter) {
+        if (waiter == null) return;
+        synchronized (waiter) {
+            waiter.notify();
+        }
+    }
+
+    /**
+     * Advances the time to the nearest deadline if no thread is due yet, once all registered threads are waiting.
+     * Called while holding the clock's lock.
+     *
+     * @return - the first of the threads whose deadline has passed (see the class comment), or null if the time cannot
+     * advance yet.
+     */
+    private Waiter due() {
+        if (busy > 0 || closed) return null;
+        long next = nextDeadline();
+        if (next == Long.MAX_VALUE) return null;
+        if (next > now) now = next;
+        Waiter first = null;
+        for (Waiter waiter : waiters)
+            if (!waiter.woken && waiter.deadline <= now && (first == null || waiter.order < first.order))
+                first = waiter;
+        return first;
+    }
+
+    private long nextDeadline() {
+        long next = Long.MAX_VALUE;
+        for (Waiter waiter : waiters)
+            if (!waiter.woken && waiter.deadline < next) next = waiter.deadline;
+        return next;
+    }
+
+    /**
+     * The main loop of the driver thread.
+     */
+    private void drive() {
+        while (true) {
+            Waiter first;
+            synchronized (this) {
+                while (true) {
+                    if (closed || driver != Thread.currentThread()) return;
+                    first = due();
+                    if (first != null) break;
+                    try {
+                        wait();
+                    } catch (InterruptedException ignored) {}
+                }
+                wake(first);
+            }
+
+            // notify outside of the clock's lock
+            if (first.monitor == null) wakeSleeper(first);
+            else
+                synchronized (first.monitor) {
+                    first.monitor.notifyAll();
+                }
+        }
+    }
+}
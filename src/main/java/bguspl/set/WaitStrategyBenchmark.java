@@ -0,0 +1,57 @@
+package bguspl.set;
+
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * Measures the dealer's claim-to-verdict latency with each of its wait strategies (see DealerWaitStrategy).
+ * Plays a headless real-time game per strategy, with random computer players so that nearly all claims are illegal
+ * sets and the latency is mostly the time the dealer takes to react. Prints the latency percentiles and the CPU time
+ * each game used.
+ * Usage: WaitStrategyBenchmark [config file] [seconds per strategy]
+ */
+public class WaitStrategyBenchmark {
+
+    private static final String[] STRATEGIES = {"blocking", "timed-park", "yield-park", "busy-spin"};
+
+    /**
+     * The benchmark's main function.
+     *
+     * @param args - [config file] [seconds per strategy].
+     */
+    public static void main(String[] args) throws Exception {
+        String configFile = args.length > 0 ? args[0] : "config.properties";
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 20;
+
+        Logger logger = Logger.getLogger("SetBenchmarkLogger");
+        logger.setUseParentHandlers(false);
+        Properties template = Config.loadProperties(configFile, logger);
+
+        try (GameHost host = new GameHost(logger)) {
+            for (String strategy : STRATEGIES) {
+                Properties properties = new Properties();
+                properties.putAll(template);
+                properties.setProperty("LogLevel", "OFF");
+                properties.setProperty("HumanPlayers", "0");
+                properties.setProperty("VirtualTime", "False");
+                properties.setProperty("ComputerStrategy", "random");
+                properties.setProperty("PreValidateClaims", "False");
+                properties.setProperty("DealerWaitStrategy", strategy);
+                Config config = new Config(logger, properties);
+
+                GameHost.Game game = host.create(config);
+                game.start();
+                long end = System.currentTimeMillis() + seconds * 1000;
+                while (!game.isDone() && System.currentTimeMillis() < end)
+                    Thread.sleep(100);
+                long cpu = game.cpuNanos();
+                game.terminate();
+
+                Histogram latency = game.dealer.claimLatency();
+                System.out.printf("%-10s claims %7d  p50 %9.1f us  p99 %9.1f us  max %9.1f us  cpu %6d ms%n",
+                        strategy, latency.count(), latency.percentile(50) / 1e3, latency.percentile(99) / 1e3,
+                        latency.max() / 1e3, cpu / 1000000);
+            }
+        }
+    }
+}
@@ -8,6 +8,29 @@ import java.awt.event.WindowListener;
  */
 public class WindowManager implements WindowListener {
 
+    /**
+     * Called when the window is being closed.
+     */
+    private final Runnable onClose;
+
+    /**
+     * Closing the window exits the game started by Main.
+     */
+    public WindowManager() {
+        this(() -> {
+            try {
+                Main.xButtonPressed();
+            } catch (InterruptedException ignored) {}
+        });
+    }
+
+    /**
+     * @param onClose - called when the window is being closed (e.g. terminating the game of the window).
+     */
+    public WindowManager(Runnable onClose) {
+        this.onClose = onClose;
+    }
+
     @Override
     public void windowOpened(WindowEvent e) {
         // Auto-generated method stub
@@ -15,9 +38,7 @@ public class WindowManager implements WindowListener {
 
     @Override
     public void windowClosing(WindowEvent e) {
-        try {
-            Main.xButtonPressed();
-        } catch (InterruptedException ignored) {}
+        onClose.run();
     }
 
     @Override
@@ -0,0 +1,43 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.SplittableRandom;
+
+/**
+ * Decides the key presses of a computer player.
+ * Each computer player has a strategy of its own, which is only used by the player's AI thread.
+ * Strategies read a snapshot of the table into preallocated arrays, so deciding on a key press does not allocate.
+ */
+public interface BotStrategy {
+
+    /**
+     * @return - the slot to press next, or -1 if there is nothing to press right now.
+     */
+    int nextKeyPress();
+
+    /**
+     * @return - the time in milliseconds the player takes before its next key press.
+     */
+    long reactionTime();
+
+    /**
+     * Creates the strategy configured for the computer players (see Config::computerStrategy).
+     *
+     * @param env    - the environment object.
+     * @param table  - the table the player plays on.
+     * @param player - the computer player.
+     * @param random - the player's own random stream.
+     * @return - the player's strategy.
+     */
+    static BotStrategy create(Env env, Table table, Player player, SplittableRandom random) {
+        switch (env.config.computerStrategy) {
+            case "solver":
+                return new SolverStrategy(env, table, player, random);
+            case "noisy":
+                return new NoisySolverStrategy(env, table, player, random, env.config.computerSkill);
+            default:
+                return new RandomStrategy(env, table, player, random);
+        }
+    }
+}
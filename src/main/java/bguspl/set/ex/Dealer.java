@@ -1,6 +1,10 @@
 package bguspl.set.ex;
 
+import bguspl.set.Clock;
 import bguspl.set.Env;
+import bguspl.set.Histogram;
+import bguspl.set.Journal;
+import bguspl.set.TimerWheel;
 
 
 import java.util.*;
@@ -8,6 +12,8 @@ import java.util.logging.Level;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * This class manages the dealer's threads and data
@@ -38,13 +44,12 @@ public class Dealer implements Runnable {
     /**
      * The time when the dealer needs to reshuffle the deck due to turn timeout.
      */
-    private long futureReshuffleTime;
+    private volatile long futureReshuffleTime;
 
 
     ////////////////////ADDED FIELDS
 
     private volatile Queue<Integer> idQueue; // queue that represents the players that added a set by their id
-    private Thread[] playerThreads; // array of all the players threads, used to close the game gracefully
 
     protected volatile boolean legalSetWasFound; // true when a legal set was found, used to block players from pressing keys while removing set cards
     private volatile boolean isRoundStartingOrEnding; // true if the state of game is between end of round and start of a new one
@@ -55,9 +60,44 @@ public class Dealer implements Runnable {
 
     long remainingTime = -1; // will be used to represent the remaining time of the timer
 
+    private TimerWheel.Timeout deadlineTimer; // the timeout of the round on the timer wheel (guarded by this)
+
     private volatile int numOfSets; // number of sets that were sumbited to the dealer to check, will be used to know if dealer should wait
 
-    Thread dealerThread; // thread of dealer, used in termination
+    volatile Thread dealerThread; // thread of dealer, used in termination (null when the dealer is not running)
+    private volatile boolean started; // true once the dealer thread has started running
+    private volatile CountDownLatch dealerStopped = new CountDownLatch(1); // count down when the dealer thread finishes
+
+    private final SplittableRandom random; // shuffles the deck and the order of the slots, seeded from the config
+    private final SplittableRandom[] playerRandoms; // independent random streams for the players, split from the same seed
+
+    private int rounds; // number of rounds that were dealt
+    private int timeouts; // number of rounds that ended because the turn timed out
+    private int reshuffles; // number of those rounds that timed out on a board with no set (a dead board)
+    private int[] winners = new int[0]; // ids of the winners, set at the end of the game
+
+    private final Integer[] cards; // all the card ids, boxed once and reused for refilling the deck on reset
+
+    // input latency in nanoseconds, recorded by the players: from a key press to its token on the table,
+    // and from the key press that completed a set to the dealer's verdict on it
+    private final Histogram tokenLatency = new Histogram();
+    private final Histogram verdictLatency = new Histogram();
+
+    // the number of sets waiting to be checked when a set is claimed, and the time from a claim to its verdict
+    // in nanoseconds
+    private final Histogram queueDepth = new Histogram();
+    private final Histogram claimLatency = new Histogram();
+    private final long[] claimedAt; // when each player claimed its set (guarded by this)
+
+    private volatile boolean pausing; // true once the game was asked to pause (see pause)
+    private volatile boolean finished; // true once the game ended by itself (not terminated or paused)
+    private Snapshot paused; // the state of the game when it paused (null if it did not pause)
+    private Snapshot resumeFrom; // the state to continue from when the dealer runs (null for a new game)
+    private long resumeMillis = -1; // the time left in the first round of a resumed game (-1 for a full round)
+
+    private final WaitStrategy waitStrategy; // how the dealer waits for claimed sets
+    private static final long PARK_NANOS = 50000; // how long the dealer parks between checks (timed-park)
+    private static final int YIELDS = 1000; // how many times the dealer yields before it blocks (yield-park)
 
     ////////////////////
 
@@ -65,16 +105,23 @@ public class Dealer implements Runnable {
         this.env = env;
         this.table = table;
         this.players = players;
-        deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
+        claimedAt = new long[players.length];
+        waitStrategy = WaitStrategy.parse(env.config.dealerWaitStrategy);
+        cards = IntStream.range(0, env.config.deckSize).boxed().toArray(Integer[]::new);
+        deck = new ArrayList<>(Arrays.asList(cards));
         //reshuffleTime = env.config.turnTimeoutMillis;
         idQueue = new ConcurrentLinkedQueue<>();
-        playerThreads = new Thread[players.length];
         legalSetWasFound = false;
         slotsToFill = new ArrayList<>();
         futureReshuffleTime = -1;
         isItASetReset = false;
         isRoundStartingOrEnding = false;
         numOfSets = 0;
+        SplittableRandom seeds = new SplittableRandom(env.config.randomSeed);
+        playerRandoms = new SplittableRandom[players.length];
+        for (int i = 0; i < players.length; i++) // split the streams in a fixed order so the same seed yields the same streams
+            playerRandoms[i] = seeds.split();
+        random = seeds.split();
     }
 
     /**
@@ -84,28 +131,56 @@ public class Dealer implements Runnable {
     public void run() {
         env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " starting.");
         dealerThread = Thread.currentThread();
+        started = true;
+        env.clock.register(Clock.DEALER_ORDER); // the game time may only advance while the dealer waits
         isRoundStartingOrEnding = true; // round is currently in a state where players cannot place tokens
-        for (int i = 0; i < players.length; i++) { // start all the player's threads
-            playerThreads[i] = new Thread(players[i]);
-            playerThreads[i].start();
-        }
+        if (resumeFrom != null) restore(resumeFrom); // before the players start, so they see the resumed state
+        for (Player player : players) // start all the player's threads
+            env.executor.execute(player);
+        try {
+            for (Player player : players) // the time stands still until the computer players can press keys
+                player.awaitStart();
+        } catch (InterruptedException ignored) {}
+        env.metrics.gamesStarted.increment();
+        env.journal.append(Journal.Type.GAME_START, (int) (env.config.randomSeed >>> 32), (int) env.config.randomSeed,
+                new int[]{players.length, env.config.rows, env.config.columns});
 
         while (!shouldFinish()) {
             placeCardsOnTable(); // place cards depending on state
+            rounds++;
+            env.metrics.rounds.increment();
             timerLoop(); // loop for each round
+            if (pausing) break; // keep the round as it is for the snapshot
+            if (!terminate) { // the round was not interrupted, so the countdown has timed out
+                timeouts++;
+                env.metrics.roundTimeouts.increment();
+                if (!boardHasSet()) { // nobody could have found a set, the board had to be reshuffled
+                    reshuffles++;
+                    env.metrics.reshuffles.increment();
+                }
+            }
+            env.journal.append(Journal.Type.ROUND_END, rounds, terminate ? 0 : 1);
             updateTimerDisplay(true); // update and reset timer for next round
             removeAllCardsFromTable(); // remove all the cards from the table in before next round is starting
         }
-        announceWinners(); // change ui to present the winners
-        for (int i = playerThreads.length - 1; i >= 0; i--) { // used for bonus section to close the players first and then the dealer
+        finished = !terminate && !pausing;
+        if (finished) env.metrics.gamesFinished.increment();
+        stopCountdown(); // the game is over, no need to keep the countdown going
+        if (!pausing) announceWinners(); // change ui to present the winners
+        env.logger.log(Level.INFO, "input latency: key to token " + tokenLatency + ", key to verdict " + verdictLatency);
+        env.logger.log(Level.INFO, "claims: queue depth " + queueDepth.toString(1, "") + ", claim to verdict " + claimLatency);
+        for (int i = players.length - 1; i >= 0; i--) { // used for bonus section to close the players first and then the dealer
             players[i].terminate();
-            playerThreads[i].interrupt();
             try {
-                playerThreads[i].join();
+                players[i].join();
             } catch (InterruptedException ignored) {
             }
         }
+        if (pausing) paused = capture(); // the players stopped, so their state is final
+        env.clock.unregister();
         env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " terminated.");
+        synchronized (this) { dealerThread = null; } // the thread may be reused, so it must not be interrupted from now on
+        dealerStopped.countDown();
     }
 
     /**
@@ -113,39 +188,168 @@ public class Dealer implements Runnable {
      */
     private void timerLoop() {
         // save the future time of when the round should end, used to calculate the time left in the current round
-        futureReshuffleTime = System.currentTimeMillis() + env.config.turnTimeoutMillis;
+        updateTimerDisplay(true);
         // while X button was not pressed and the round is not over
-        while (!terminate && System.currentTimeMillis() < futureReshuffleTime) {
+        while (!terminate && !pausing && env.clock.currentTimeMillis() < futureReshuffleTime) {
             if (isItASetReset) // true if the round should be over due to legal set that was found, reset the time for next round
-                futureReshuffleTime = System.currentTimeMillis() + env.config.turnTimeoutMillis;
-            remainingTime = futureReshuffleTime - System.currentTimeMillis(); // calculate countdown of this round
-            sleepUntilWokenOrTimeout(); // sleep if no tasks should be done
-            updateTimerDisplay(false); // update timer, without reset
+                updateTimerDisplay(true);
+            sleepUntilWokenOrTimeout(); // sleep until a set is submitted or the countdown times out
+            long woke = System.nanoTime();
             removeCardsFromTable(); // remove cards from table if a set was found
             placeCardsOnTable(); // place new cards instead of the removed legal set
+            env.metrics.dealerLoops.increment();
+            env.metrics.dealerBusyNanos.add(System.nanoTime() - woke);
         }
     }
 
+    /**
+     * Prepares the dealer, the table and the players for a new game, reusing all of their data structures.
+     * The random streams continue from where the previous game stopped, so a series of games is reproducible too.
+     *
+     * @pre - the previous game has ended (or was terminated) and its threads have finished running.
+     * @post - the deck is full and the table, the players' scores and tokens and the user interface are clear.
+     */
+    public void reset() {
+        deck.clear();
+        Collections.addAll(deck, cards);
+        idQueue.clear();
+        slotsToFill.clear();
+        legalSetWasFound = false;
+        isRoundStartingOrEnding = false;
+        isItASetReset = false;
+        futureReshuffleTime = -1;
+        remainingTime = -1;
+        numOfSets = 0;
+        rounds = 0;
+        timeouts = 0;
+        reshuffles = 0;
+        winners = new int[0];
+        tokenLatency.reset();
+        verdictLatency.reset();
+        queueDepth.reset();
+        claimLatency.reset();
+        terminate = false;
+        finished = false;
+        started = false;
+        pausing = false;
+        paused = null;
+        resumeFrom = null;
+        resumeMillis = -1;
+        dealerStopped = new CountDownLatch(1);
+        table.reset();
+        for (Player player : players)
+            player.reset();
+        env.ui.reset();
+    }
+
     /**
      * Called when the game should be terminated due to an external event.
      */
     public void terminate() {
-        for (int i = playerThreads.length - 1; i >= 0; i--) { // terminate all the players first, before terminating the dealer
+        terminate = true; // terminate dealer
+        if (!started) return; // the game has not started yet
+        for (int i = players.length - 1; i >= 0; i--) { // terminate all the players first, before terminating the dealer
             players[i].terminate();
-            playerThreads[i].interrupt();
             try {
-                playerThreads[i].join();
+                players[i].join();
             } catch (InterruptedException ignored) {}
         }
-        terminate = true; // terminate dealer
-        dealerThread.interrupt();
+        synchronized (this) { if (dealerThread != null) dealerThread.interrupt(); }
         try {
-            dealerThread.join();
+            dealerStopped.await();
         } catch (InterruptedException ignored) {}
     }
 
 
 
+    /**
+     * Stops the game without ending it, so that it can be resumed later, e.g. by another process (see resume).
+     * The dealer stops between its steps (so no set is half checked) and stops the players, and then the state of the
+     * game is taken. The time left in the round and in the players' freezes is kept to the millisecond.
+     *
+     * @return - the state of the game, or null if the game did not start.
+     */
+    public Snapshot pause() {
+        if (!started) return null;
+        pausing = true;
+        synchronized (this) { env.clock.signal(this); } // wake the dealer if it waits for a set or for the timeout
+        if (waitStrategy == WaitStrategy.TIMED_PARK) {
+            Thread dealer = dealerThread;
+            if (dealer != null) LockSupport.unpark(dealer);
+        }
+        try {
+            dealerStopped.await();
+        } catch (InterruptedException ignored) {}
+        return paused;
+    }
+
+    /**
+     * Makes the next run of the dealer continue a paused game instead of dealing a new one.
+     *
+     * @param snapshot - the state of the paused game (see pause).
+     * @throws IllegalArgumentException - if the snapshot is of a game with other numbers of players, slots or cards.
+     * @pre - the dealer is not running (e.g. it was just created or reset).
+     */
+    public void resume(Snapshot snapshot) {
+        if (snapshot.players() != players.length || snapshot.table.length != env.config.tableSize
+                || snapshot.deckSize != env.config.deckSize)
+            throw new IllegalArgumentException("the snapshot is of a game of " + snapshot.players() + " players, "
+                    + snapshot.table.length + " slots and " + snapshot.deckSize + " cards");
+        resumeFrom = snapshot;
+    }
+
+    /**
+     * Takes the state of the game.
+     *
+     * @pre - the players' threads have finished running.
+     */
+    private Snapshot capture() {
+        int[] onTable = new int[env.config.tableSize];
+        for (int slot = 0; slot < onTable.length; slot++) {
+            Integer card = table.slotToCard(slot);
+            onTable[slot] = card == null ? -1 : card;
+        }
+        int[] scores = new int[players.length], penalties = new int[players.length];
+        long[] freezes = new long[players.length];
+        int[][] tokens = new int[players.length][];
+        for (int i = 0; i < players.length; i++) {
+            scores[i] = players[i].score();
+            penalties[i] = players[i].penalties();
+            freezes[i] = players[i].remainingFreeze();
+            tokens[i] = players[i].tokens();
+        }
+        long remaining = isRoundStartingOrEnding ? -1 : Math.max(0, futureReshuffleTime - env.clock.currentTimeMillis());
+        return new Snapshot(env.config.deckSize, rounds, timeouts, reshuffles, remaining, onTable,
+                deck.stream().mapToInt(Integer::intValue).toArray(), scores, penalties, freezes, tokens,
+                idQueue.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * Continues a paused game: deals the cards and places the tokens as they were and requeues the claimed sets.
+     * The round in progress continues with the time that was left in it.
+     */
+    private void restore(Snapshot snapshot) {
+        resumeFrom = null;
+        deck.clear();
+        for (int card : snapshot.deck)
+            deck.add(cards[card]);
+        rounds = snapshot.remainingMillis >= 0 ? snapshot.rounds - 1 : snapshot.rounds; // the run loop counts it again
+        timeouts = snapshot.timeouts;
+        reshuffles = snapshot.reshuffles;
+        for (int slot = 0; slot < snapshot.table.length; slot++)
+            if (snapshot.table[slot] >= 0)
+                table.placeCard(snapshot.table[slot], slot);
+        boolean[] claimed = new boolean[players.length];
+        for (int id : snapshot.claims)
+            claimed[id] = true;
+        for (int i = 0; i < players.length; i++)
+            players[i].restore(snapshot.scores[i], snapshot.penalties[i], snapshot.tokens[i],
+                    snapshot.freezeMillis[i], claimed[i]);
+        for (int id : snapshot.claims)
+            notifyDealer(id);
+        resumeMillis = snapshot.remainingMillis;
+    }
+
     /**
      * Check if the game should be terminated or the game end conditions are met.
      *
@@ -156,6 +360,19 @@ public class Dealer implements Runnable {
     }
     // indicates if the game should be close due to pressing the X button or having no more sets
 
+    /**
+     * @return - true iff there is a legal set among the cards on the table.
+     */
+    private boolean boardHasSet() {
+        List<Integer> onTable = new ArrayList<>(env.config.tableSize);
+        for (int slot = 0; slot < env.config.tableSize; slot++) {
+            Integer card = table.slotToCard(slot);
+            if (card != null)
+                onTable.add(card);
+        }
+        return env.util.findSets(onTable, 1).size() > 0;
+    }
+
     /**
      * Checks cards should be removed from the table and removes them.
      */
@@ -167,14 +384,20 @@ public class Dealer implements Runnable {
                 List<Integer> slotSet = new ArrayList<>(players[firstCandidate].getTokenList());
             // create a card array to hold the cards that the player has tokens on
                 int[] cards = new int[slotSet.size()];
+                boolean onTable = true; // false if a token is on an empty slot (it cannot be part of a set)
                 for (int i = 0; i < slotSet.size(); i++) { // for each slot that the player had a token on, transform it to the card on this slot
                                                             // and insert to the card array
                     Integer card = table.slotToCard(slotSet.get(i));
                     if (card != null)
                         cards[i] = card;
+                    else
+                        onTable = false;
                 }
                 // used to validate that the set is legal, contains SET_SIZE number of cards and is legal
-                if (cards.length == Player.SET_SIZE && env.util.testSet(cards)) {
+                boolean legal = onTable && cards.length == Player.SET_SIZE && env.util.testSet(cards);
+                env.journal.append(Journal.Type.VERDICT, firstCandidate, legal ? 1 : 0, cards);
+                (legal ? env.metrics.legalVerdicts : env.metrics.illegalVerdicts).increment();
+                if (legal) {
                     slotsToFill = new ArrayList<>(slotSet); // initialize slots that needs to be filled with new cards
                     legalSetWasFound = true; // indicate that a set was found
                     updateTimerDisplay(true); // update the timer and reset it due to set that was found legal
@@ -183,6 +406,10 @@ public class Dealer implements Runnable {
                     removeIntersectingElementsFromAll(slotSet); // remove from all the player's token lists the slots that were removed now
                     players[firstCandidate].givePoint(); // give point to player
                 }
+                long latency;
+                synchronized (this) { latency = System.nanoTime() - claimedAt[firstCandidate]; }
+                claimLatency.record(latency);
+                env.metrics.claimToVerdict.record(latency);
                 players[firstCandidate].notifyPlayer(); // notify the player to end his wait. wether got a point or penalty
         }
     }
@@ -193,66 +420,108 @@ public class Dealer implements Runnable {
      * @post - cardsToAdd number of cards were placed in table and removed from deck.
      */
     protected void placeCardsOnTable() {
-        Collections.shuffle(deck);
         int rows = env.config.rows, cols = env.config.columns;
         int cardsToAdd = (rows*cols) - table.countCards(); // calculates the number of cards that needs to be added to the table
         if(cardsToAdd > deck.size()) // if the deck contains less cards that the number that needs to be added,
                                         // add the entire deck, because that is what is left in the game
             cardsToAdd = deck.size();
+        if (cardsToAdd > 0) // shuffle only when dealing, so the random stream does not depend on the number of dealer loops
+            shuffle(deck);
         if (legalSetWasFound) { // if we add cards due to removing a legal set
             for (int i = 0; i < cardsToAdd; i++) { // remove the cards from the deck and place on the table
                 table.placeCard(deck.remove(0), slotsToFill.get(i));
             }
             legalSetWasFound = false; // reset flag for next time
-            synchronized (table) { table.notifyAll(); } // notify all the players that tried to place a token while replacing cards
+            synchronized (table) { env.clock.signalAll(table); } // notify all the players that tried to place a token while replacing cards
         }
         else { // we get here if we place cards due to round start
             List<Integer> slots = IntStream.range(0, cardsToAdd).boxed().collect(Collectors.toList());
-            Collections.shuffle(slots);
+            shuffle(slots);
             for (int i = 0 ; i < cardsToAdd ; i++) { // remove the cards from the deck and place on the table
                 table.placeCard(deck.remove(0), slots.get(i));
             }
             isRoundStartingOrEnding = false; // players can now start placing tokens
+            for (Player player : players)
+                player.notifyRoundStart();
         }
     }
 
     /**
-     * Sleep for a fixed amount of time or until the thread is awakened for some purpose.
+     * Sleep until the thread is awakened for some purpose (a set to check, the countdown timed out or termination).
      */
     private void sleepUntilWokenOrTimeout() {
-        if (remainingTime > (env.config.turnTimeoutWarningMillis)) { // if there is more that warning seconds to the round
-            try {
-                synchronized (this) {
-                    if (numOfSets == 0) { // if there are no sets to check, enter wait, otherwise, do not wait, something needs to be done
-                        this.wait(1000); // wait for at most a second to update timer
-                    }
-                }
-            } catch (InterruptedException ignored) {}
-        }
-        else {
-            try {
-            synchronized (this) {wait(3);}} catch (InterruptedException ignored) {} // if time is less that warning seconds,
-                                                                                                // wait for a very short time to update milliseconds
+        switch (waitStrategy) {
+            case BUSY_SPIN:
+                while (shouldWait()); // keep checking until there is something to do
+                Thread.interrupted(); // clear the interrupt of terminate, like a wait would
+                return;
+            case TIMED_PARK:
+                while (shouldWait())
+                    LockSupport.parkNanos(this, PARK_NANOS); // a claim unparks the dealer (see notifyDealer)
+                Thread.interrupted();
+                return;
+            case YIELD_PARK:
+                for (int i = 0; i < YIELDS && shouldWait(); i++)
+                    Thread.yield();
+                break; // then block
         }
+        try {
+            synchronized (this) {
+                // if there are no sets to check and the round is not over, wait. the timeout on the timer wheel
+                // wakes the dealer when the round times out
+                if (shouldWait())
+                    env.clock.await(this, 0);
+            }
+        } catch (InterruptedException ignored) {}
+    }
+
+    /**
+     * @return - true iff there are no sets to check and the round is not over.
+     */
+    private boolean shouldWait() {
+        return numOfSets == 0 && !terminate && !pausing && env.clock.currentTimeMillis() < futureReshuffleTime;
     }
 
     /**
      * Reset and/or update the countdown and the countdown display.
+     * The ui counts down to the deadline by itself, so it is only told about the deadline when it changes.
      */
     private void updateTimerDisplay(boolean reset) {
-        if(!reset) { // if no reset needs to be done
-            if (remainingTime > (env.config.turnTimeoutWarningMillis)) // if there is more that warning seconds to the round,
-                                                                        // round the excess seconds to keep the time clean
-                remainingTime = Math.round(remainingTime / 1000.0) * 1000;
-            env.ui.setCountdown(remainingTime, remainingTime <= (env.config.turnTimeoutWarningMillis)); // update timer in ui according to
-                                                                                                            // remaining time
-        }
-        else { // if a reset needs to be done, calculate the end of the next round
-            futureReshuffleTime = System.currentTimeMillis() + env.config.turnTimeoutMillis;
+        synchronized (this) {
+            if (reset) { // if a reset needs to be done, calculate the end of the next round
+                long timeout = env.config.turnTimeoutMillis;
+                if (resumeMillis >= 0) { // the first round of a resumed game, continue it where it paused
+                    timeout = resumeMillis;
+                    resumeMillis = -1;
+                }
+                futureReshuffleTime = env.clock.currentTimeMillis() + timeout;
+                remainingTime = timeout;
+                if (deadlineTimer != null) deadlineTimer.cancel(); // restart the countdown from now
+                deadlineTimer = env.timers.schedule(timeout, this::deadlineReached);
+            }
+            env.ui.setCountdownDeadline(futureReshuffleTime, env.clock);
         }
         isItASetReset = false; // reset the flag for next time
     }
 
+    /**
+     * Wakes the dealer when the round times out (called on the timer wheel).
+     */
+    private synchronized void deadlineReached() {
+        deadlineTimer = null;
+        remainingTime = 0;
+        env.clock.signal(this); // the round is over
+    }
+
+    /**
+     * Cancels the pending timeout of the round and stops the countdown display.
+     */
+    private synchronized void stopCountdown() {
+        if (deadlineTimer != null) deadlineTimer.cancel();
+        deadlineTimer = null;
+        env.ui.setCountdown(Math.max(0, futureReshuffleTime - env.clock.currentTimeMillis()), false);
+    }
+
     /**
      * Returns all the cards from the table to the deck.
      *
@@ -264,7 +533,7 @@ public class Dealer implements Runnable {
         isRoundStartingOrEnding = true; // block players from placing tokens while ending the round
         int allSlots = env.config.rows * env.config.columns; // number of slots on the table
         List<Integer> slots = IntStream.range(0, allSlots).boxed().collect(Collectors.toList());
-        Collections.shuffle(slots);
+        shuffle(slots);
         for (int i = 0; i < allSlots; i++) { // for every slot that was picked randomly, remove the card from it and the tokens from all players
                                             // and return the card to the deck
             Integer card = table.slotToCard(slots.get(i));
@@ -274,12 +543,15 @@ public class Dealer implements Runnable {
                 deck.add(card);
             }
         }
+        for (Player player : players) // the tokens were removed from the table, so they are no longer the players'
+            player.clearTokens();
         while(!idQueue.isEmpty()) { // if there are players waiting to be checked by the dealer, notify them without giving point or penalty
                                     // because the round is ending
             int playerId = idQueue.poll();
+            synchronized (this) {numOfSets--;} // keep the number of sets waiting to be checked in sync with the queue
             synchronized (players[playerId]) {
-                players[playerId].notifyAll();
-                players[playerId].getTokenList().clear();
+                env.clock.signalAll(players[playerId]);
+                players[playerId].clearTokens();
             }
         }
     }
@@ -296,7 +568,9 @@ public class Dealer implements Runnable {
         int max = sortedPlayers[sortedPlayers.length - 1].score();
         for (int i = sortedPlayers.length - 1; i >= 0 && sortedPlayers[i].score() == max; i--)
             winnerIds.add(sortedPlayers[i].getId());
-        env.ui.announceWinner(winnerIds.stream().mapToInt(i -> i).toArray());
+        winners = winnerIds.stream().mapToInt(i -> i).toArray();
+        env.journal.append(Journal.Type.GAME_END, winners);
+        env.ui.announceWinner(winners);
     }
 
 
@@ -305,7 +579,15 @@ public class Dealer implements Runnable {
                                                     // add one to number of sets to be checked, add id to queue and notify
         numOfSets++;
         idQueue.add(id);
-        notify();
+        claimedAt[id] = System.nanoTime();
+        env.journal.append(Journal.Type.CLAIM, id);
+        env.metrics.claims.increment();
+        queueDepth.record(numOfSets);
+        if (waitStrategy == WaitStrategy.TIMED_PARK) {
+            Thread dealer = dealerThread;
+            if (dealer != null) LockSupport.unpark(dealer);
+        } else
+            env.clock.signal(this);
     }
 
 
@@ -323,18 +605,79 @@ public class Dealer implements Runnable {
                                                                         // slots lists and removes intersecting slots(cards)
         for (int i = 0; i < players.length; i++) {
             synchronized (players[i]) {
-                List<Integer> currTokenList = players[i].getTokenList();
-                currTokenList.removeAll(legalSetSlots); // removed all the elements in currTokenList that are present in legalSetSlots
+                players[i].removeTokens(legalSetSlots); // removed all the slots in the player's token list that are present in legalSetSlots
                 // from all the players that sumbitted a set to be checked,
                 // if a player has now less than 3 tokens, remove him from the queue and notify without giving point or penalty
                 if (idQueue.contains(players[i].getId()) && players[i].getTokenList().size() != Player.SET_SIZE) {
-                    idQueue.remove(players[i].getId());
-                    players[i].notifyAll();
+                    if (idQueue.remove(players[i].getId()))
+                        synchronized (this) {numOfSets--;}
+                    env.clock.signalAll(players[i]);
                 }
             }
         }
     }
 
+    /**
+     * Shuffles the list in place (Fisher-Yates) using the dealer's seeded random stream.
+     */
+    private void shuffle(List<Integer> list) {
+        for (int i = list.size() - 1; i > 0; i--)
+            Collections.swap(list, i, random.nextInt(i + 1));
+    }
+
+    /**
+     * @param id - the id of the player.
+     * @return - the player's own random stream (derived from the game's seed).
+     */
+    public SplittableRandom playerRandom(int id) {
+        return playerRandoms[id];
+    }
+
+    public Histogram tokenLatency() {
+        return tokenLatency;
+    }
+
+    public Histogram verdictLatency() {
+        return verdictLatency;
+    }
+
+    public Histogram queueDepth() {
+        return queueDepth;
+    }
+
+    public Histogram claimLatency() {
+        return claimLatency;
+    }
+
+    public int rounds() {
+        return rounds;
+    }
+
+    /**
+     * @return - the number of rounds that ended because the countdown timed out.
+     */
+    public int timeouts() {
+        return timeouts;
+    }
+
+    /**
+     * @return - the number of rounds that timed out with no set on the table (dead boards that had to be reshuffled).
+     */
+    public int reshuffles() {
+        return reshuffles;
+    }
+
+    public int[] winners() {
+        return winners;
+    }
+
+    /**
+     * @return - true iff the game ended by itself, i.e. it ran out of sets rather than being terminated or paused.
+     */
+    public boolean finished() {
+        return finished;
+    }
+
     public boolean isLegalSetWasFound() {
         return legalSetWasFound;
     } // used by the player
@@ -0,0 +1,201 @@
+package bguspl.set.ex;
+
+import bguspl.set.Clock;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * The key presses of a single player: a lock-free ring of slots with one producer (the thread pressing the keys,
+ * e.g. the Swing event thread or the AI thread) and one consumer (the player thread).
+ * Pressing a slot that is still pending in the ring cancels both presses (two presses toggle a token back), so the
+ * player thread never sees them. Pressing a key never blocks: when the ring is full a press is dropped according to
+ * the overflow policy.
+ */
+public class KeyPressRing {
+
+    /**
+     * Which press to drop when a key is pressed while the ring is full.
+     */
+    public enum OverflowPolicy { DROP_OLDEST, DROP_NEWEST }
+
+    private static final int NONE = -1; // an empty entry, or a press that was cancelled or taken
+
+    private final Clock clock;
+    private final int capacity; // the maximal number of pending presses
+    private final OverflowPolicy policy;
+
+    /**
+     * The entries between head and tail are pending presses (or NONE if cancelled). Cancelled entries still take
+     * room until the consumer skips them, so the ring is larger than the capacity.
+     */
+    private final AtomicIntegerArray entries;
+    private final long[] stamps; // the time of each press (published by the write of its entry)
+    private long lastStamp; // the time of the press that was taken last (used only by the consumer)
+    private final int mask;
+    private volatile long head; // written only by the consumer
+    private volatile long tail; // written only by the producer
+    private final AtomicInteger size = new AtomicInteger(); // the number of pending presses
+
+    private volatile boolean waiting; // true while the consumer waits for a press (or is about to)
+
+    private volatile long dropped; // written only by the producer
+    private volatile long coalesced; // written only by the producer
+
+    /**
+     * @param clock    - the clock the consumer waits through.
+     * @param capacity - the maximal number of pending presses.
+     * @param policy   - which press to drop when the ring is full.
+     */
+    public KeyPressRing(Clock clock, int capacity, OverflowPolicy policy) {
+        this.clock = clock;
+        this.capacity = capacity;
+        this.policy = policy;
+        int length = Integer.highestOneBit(Math.max(1, capacity * 2 - 1)) << 1;
+        entries = new AtomicIntegerArray(length);
+        stamps = new long[length];
+        mask = length - 1;
+        for (int i = 0; i < length; i++)
+            entries.set(i, NONE);
+    }
+
+    /**
+     * Adds a press (called by the producer only). Never blocks.
+     *
+     * @param slot  - the slot that was pressed.
+     * @param stamp - the time the key was pressed (System::nanoTime), see lastStamp.
+     * @return - true iff the press is pending now (false if it cancelled a pending press or was dropped).
+     */
+    public boolean offer(int slot, long stamp) {
+        long t = tail;
+        for (long i = head; i < t; i++) // cancel a pending press of the same slot, unless the consumer took it already
+            if (entries.get((int) i & mask) == slot && entries.compareAndSet((int) i & mask, slot, NONE)) {
+                size.decrementAndGet();
+                coalesced += 2;
+                return false;
+            }
+
+        if (size.get() >= capacity) {
+            if (policy == OverflowPolicy.DROP_NEWEST) {
+                dropped++;
+                return false;
+            }
+            if (cancelOldest(t)) dropped++; // otherwise the consumer took it meanwhile, so there is room now
+        }
+        if (t - head > mask) { // all the room is taken by cancelled presses the consumer did not skip yet
+            dropped++;
+            return false;
+        }
+
+        stamps[(int) t & mask] = stamp;
+        entries.set((int) t & mask, slot);
+        size.incrementAndGet();
+        tail = t + 1;
+        if (waiting) { // the consumer may be waiting for this press
+            synchronized (this) {
+                waiting = false;
+                clock.signalAll(this);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Cancels the oldest pending press, unless the consumer takes it first.
+     */
+    private boolean cancelOldest(long t) {
+        for (long i = head; i < t; i++) {
+            int slot = entries.get((int) i & mask);
+            if (slot != NONE && entries.compareAndSet((int) i & mask, slot, NONE)) {
+                size.decrementAndGet();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Takes the oldest pending press (called by the consumer only).
+     *
+     * @return - the slot that was pressed, or -1 if there are no pending presses.
+     */
+    public int poll() {
+        long h = head, t = tail;
+        for (; h < t; h++) {
+            int slot = entries.getAndSet((int) h & mask, NONE);
+            if (slot != NONE) {
+                lastStamp = stamps[(int) h & mask]; // read before the entry can be reused
+                head = h + 1;
+                size.decrementAndGet();
+                return slot;
+            }
+        }
+        head = h;
+        return NONE;
+    }
+
+    /**
+     * Takes the oldest pending press, waiting while there are none (called by the consumer only).
+     *
+     * @return - the slot that was pressed.
+     * @throws InterruptedException - if the consumer was interrupted while waiting.
+     */
+    public int take() throws InterruptedException {
+        while (true) {
+            int slot = poll();
+            if (slot != NONE) return slot;
+            waiting = true; // announce the wait before looking again, so the producer cannot miss it
+            slot = poll();
+            if (slot != NONE) {
+                waiting = false;
+                return slot;
+            }
+            synchronized (this) {
+                while (waiting)
+                    clock.await(this, 0);
+            }
+        }
+    }
+
+    /**
+     * @return - the time the press that was taken last was pressed (called by the consumer only).
+     */
+    public long lastStamp() {
+        return lastStamp;
+    }
+
+    /**
+     * @return - the number of pending presses.
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * @return - the number of presses that were dropped because the ring was full.
+     */
+    public long dropped() {
+        return dropped;
+    }
+
+    /**
+     * @return - the number of presses that cancelled each other out while pending.
+     */
+    public long coalesced() {
+        return coalesced;
+    }
+
+    /**
+     * Removes all pending presses and clears the counters.
+     *
+     * @pre - neither the producer nor the consumer is running.
+     */
+    public void clear() {
+        for (int i = 0; i <= mask; i++)
+            entries.set(i, NONE);
+        head = tail = 0;
+        size.set(0);
+        waiting = false;
+        dropped = coalesced = 0;
+    }
+}
@@ -0,0 +1,28 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.SplittableRandom;
+
+/**
+ * A solver that makes mistakes: each key press completes a legal set with probability skill, and is a random card
+ * otherwise. The reaction time is taken from the configuration, like the other strategies.
+ */
+public class NoisySolverStrategy extends SolverStrategy {
+
+    private final double skill;
+
+    /**
+     * @param skill - the probability of a key press towards a legal set (between 0 and 1).
+     */
+    public NoisySolverStrategy(Env env, Table table, Player player, SplittableRandom random, double skill) {
+        super(env, table, player, random);
+        this.skill = skill;
+    }
+
+    @Override
+    public int nextKeyPress() {
+        readTable();
+        return random.nextDouble() < skill ? solve() : randomCard();
+    }
+}
@@ -1,15 +1,17 @@
 package bguspl.set.ex;
 
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.logging.Level;
 
+import bguspl.set.Clock;
 import bguspl.set.Env;
+import bguspl.set.Journal;
+import bguspl.set.TimerWheel;
 
 
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.Random;
 
 /**
  * This class manages the players' threads and data
@@ -35,14 +37,31 @@ public class Player implements Runnable {
     public final int id;
 
     /**
-     * The thread representing the current player.
+     * The thread representing the current player (null when the player is not running).
      */
-    private Thread playerThread;
+    private volatile Thread playerThread;
 
     /**
      * The thread of the AI (computer) player (an additional thread used to generate key presses).
      */
-    private Thread aiThread;
+    private volatile Thread aiThread;
+
+    /**
+     * Guards interrupting the player's threads. Not the player's own lock, so stopping the player never waits for
+     * whoever uses the player's state.
+     */
+    private final Object threadLock = new Object();
+
+    /**
+     * Count down when the player's thread and the AI thread finish running (the threads may be reused afterwards).
+     */
+    private volatile CountDownLatch playerStopped = new CountDownLatch(1);
+    private volatile CountDownLatch aiStopped = new CountDownLatch(1);
+
+    /**
+     * Counts down when the player's thread and the AI thread (if any) have registered with the clock.
+     */
+    private volatile CountDownLatch started;
 
     /**
      * True iff the player is human (not a computer player).
@@ -59,21 +78,50 @@ public class Player implements Runnable {
      */
     private int score;
 
+    /**
+     * The number of penalties the player got.
+     */
+    private int penalties;
+
 
     ////////////////////////////// ADDED FIELDS
     public static final int SET_SIZE = 3; // represents the size of a set
 
+    private static final long IDLE_MILLIS = 10; // how long a computer player waits when it has nothing to press
+
     protected volatile List<Integer> tokenList; // list that holds the slots that the player placed tokens on
 
-    private BlockingQueue<Integer> keyPQueue; //  represents the keypress queue
+    /**
+     * The slots of the player's tokens as a bitmask (bit s of word s / 64 is set iff the player has a token in slot s),
+     * kept with tokenList under the player's lock. The AI thread reads it without locking (see hasToken).
+     */
+    private final AtomicLongArray tokenMask;
+
+    private final KeyPressRing keyPresses; //  represents the keypress queue
+
+    private final Object aiTurn = new Object(); // the AI thread waits on it for its turn
+
+    private volatile boolean aiKeyPending; // true while a key press of the AI was not fully handled yet
+
+    private final int[] claimSlots = new int[SET_SIZE]; // the slots and cards of a set the player checks before claiming
+    private final int[] claimCards = new int[SET_SIZE];
 
     private volatile boolean isFrozen; // true when player is in timeout from point or penalty
 
+    private long freezeUntil; // the time the current freeze ends at (guarded by this)
+
+    private TimerWheel.Timeout freezeTimer; // the next update of the current freeze on the timer wheel (guarded by this)
+
     private volatile boolean pointScored; // true when player got a point changed by the dealer.
 
     private volatile  boolean hasBeenChecked; // true if dealer checked the player's set already
 
+    private volatile boolean claimed; // true if the player's set waits for the dealer when the game is resumed
+
     private Dealer dealer;
+
+    private final BotStrategy strategy; // decides the key presses of a computer player (null for a human player)
+
     ///////////////////////////////
     /**
      * The class constructor.
@@ -85,18 +133,44 @@ public class Player implements Runnable {
      * @param human  - true iff the player is a human player (i.e. input is provided manually, via the keyboard).
      */
     public Player(Env env, Dealer dealer, Table table, int id, boolean human) {
+        this(env, dealer, table, id, human, null);
+    }
+
+    /**
+     * Creates a computer player that presses the keys its strategy decides on (e.g. the key presses of a recorded game).
+     *
+     * @param env      - the environment object.
+     * @param dealer   - the dealer object.
+     * @param table    - the table object.
+     * @param id       - the id of the player.
+     * @param strategy - the player's strategy.
+     */
+    public Player(Env env, Dealer dealer, Table table, int id, BotStrategy strategy) {
+        this(env, dealer, table, id, false, strategy);
+    }
+
+    /**
+     * @param strategy - the strategy of a computer player, or null for the configured one (see BotStrategy::create).
+     */
+    private Player(Env env, Dealer dealer, Table table, int id, boolean human, BotStrategy strategy) {
         this.env = env;
         this.table = table;
         this.id = id;
         this.human = human;
+        started = new CountDownLatch(human ? 1 : 2);
         //intializing added fields
 
         tokenList = new ArrayList<>(SET_SIZE);
-        keyPQueue = new ArrayBlockingQueue<>(SET_SIZE);
+        tokenMask = new AtomicLongArray(Math.max(1, (env.config.tableSize + Long.SIZE - 1) / Long.SIZE));
+        keyPresses = new KeyPressRing(env.clock, SET_SIZE, env.config.keyOverflowPolicy.equals("drop-oldest") ?
+                KeyPressRing.OverflowPolicy.DROP_OLDEST : KeyPressRing.OverflowPolicy.DROP_NEWEST);
         isFrozen = false;
         pointScored = false;
         this.dealer = dealer;
         hasBeenChecked = false;
+        if (!human && strategy == null)
+            strategy = BotStrategy.create(env, table, this, dealer.playerRandom(id));
+        this.strategy = strategy;
     }
 
     /**
@@ -105,35 +179,91 @@ public class Player implements Runnable {
     @Override
     public void run() {
         playerThread = Thread.currentThread();
+        playerThread.setName("player-" + id);
+        env.clock.register(Clock.PLAYER_ORDER + id);
+        started.countDown();
         env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + "starting.");
         if (!human) createArtificialIntelligence();
+        if (claimed) { // the game was resumed while the player's set waited for the dealer (see Dealer::resume)
+            claimed = false;
+            awaitVerdict(System.nanoTime());
+        }
 
         while (!terminate) {
             int slot = -1;
             try {
-                slot = keyPQueue.take(); // take head of queue (first element)
+                slot = takeKeyPress(); // take head of queue (first element)
 
             } catch (InterruptedException ignored) {continue;} // used to exit loop when terminate is called
-            // checking slot condition and if tokenList has reached SET_SIZE
-            if (!playerThread.isInterrupted() && operateSlot(slot) && tokenList.size() == SET_SIZE) {
-                dealer.notifyDealer(id); // add players id to dealers queue, notify dealer and increase numOfSets
-                try { synchronized (this) {
-                    if (!hasBeenChecked) // if the player's set has already been checked by the dealer, don't enter wait, otherwise, wait
-                        this.wait();
-                    hasBeenChecked = false;
-                } } catch(InterruptedException ignored) {}
-                if (pointScored) // if true, the player's set is legal
-                    point();
-                else // otherwise, penalty
-                    penalty();
+            long pressed = keyPresses.lastStamp(); // when the key was pressed, for measuring the input latency
+            try {
+                if (isFrozen) continue; // the key was pressed before the freeze started, drop it
+                // checking slot condition and if tokenList has reached SET_SIZE
+                if (!playerThread.isInterrupted() && operateSlot(slot)) {
+                    long latency = System.nanoTime() - pressed;
+                    dealer.tokenLatency().record(latency);
+                    env.metrics.keyToToken.record(latency);
+                    if (tokenList.size() != SET_SIZE)
+                        continue;
+                    if (env.config.preValidateClaims && !plausibleSet()) { // not a set, no need to bother the dealer
+                        env.journal.append(Journal.Type.CLAIM, id);
+                        env.journal.append(Journal.Type.VERDICT, id, 0, claimCards);
+                        env.metrics.claims.increment();
+                        env.metrics.rejectedClaims.increment();
+                        penalty();
+                        continue;
+                    }
+                    dealer.notifyDealer(id); // add players id to dealers queue, notify dealer and increase numOfSets
+                    awaitVerdict(pressed);
+                }
+            } finally {
+                keyHandled();
+            }
+        }
+        if (!human) { // if player is computer, end ai thread first by interrupting it and joining it
+            boolean interrupted = Thread.interrupted(); // terminate may interrupt this thread outside of a wait
+            synchronized (threadLock) { if (aiThread != null) aiThread.interrupt(); }
+            while (true) {
+                try {
+                    aiStopped.await();
+                    break;
+                } catch (InterruptedException ignored) {interrupted = true;}
             }
+            if (interrupted) Thread.currentThread().interrupt();
         }
-        if (!human) try { // if player is computer, end ai thread first by interrupting it and joining it
-            aiThread.interrupt();
-            aiThread.join();
-        } catch (InterruptedException ignored) {}
 
+        env.clock.unregister();
         env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " terminated.");
+        synchronized (threadLock) { playerThread = null; } // the thread may be reused, so it must not be interrupted from now on
+        playerStopped.countDown();
+    }
+
+    /**
+     * Waits for the dealer's verdict on the player's set, then scores the point or takes the penalty.
+     *
+     * @param pressed - the time the key that completed the set was pressed (System::nanoTime).
+     */
+    private void awaitVerdict(long pressed) {
+        boolean checked;
+        try { synchronized (this) {
+            if (!hasBeenChecked) // if the player's set has already been checked by the dealer, don't enter wait, otherwise, wait
+                env.clock.await(this, 0);
+        } } catch(InterruptedException ignored) {}
+        synchronized (this) {
+            checked = hasBeenChecked; // otherwise the set was dropped without a verdict (e.g. the round ended)
+            hasBeenChecked = false;
+        }
+        if (checked) {
+            long latency = System.nanoTime() - pressed;
+            dealer.verdictLatency().record(latency);
+            env.metrics.keyToVerdict.record(latency);
+        }
+        else if (terminate) // the game stopped before the dealer got to the set, which stays claimed (see Dealer::pause)
+            return;
+        if (pointScored) // if true, the player's set is legal
+            point();
+        else // otherwise, penalty
+            penalty();
     }
 
     /**
@@ -142,26 +272,159 @@ public class Player implements Runnable {
      */
     private void createArtificialIntelligence() {
         // note: this is a very very smart AI (!)
-        aiThread = new Thread(() -> {
+        env.executor.execute(() -> {
+            aiThread = Thread.currentThread();
+            aiThread.setName("computer-" + id);
+            env.clock.register(Clock.COMPUTER_ORDER + id);
+            started.countDown();
             env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " starting.");
             while (!terminate) {
-                int slot = generateKeyPress(); // generate random slot
-                if (table.slotToCard(slot) == null) // if there isn't a card in the selected slot, generate new one
-                    continue;
-                keyPressed(slot); // initiate key press with selected slot
-
+                try {
+                    awaitTurn(); // park while key presses would be ignored anyway
+                    env.clock.sleep(strategy.reactionTime()); // pause between key presses
+                    int slot = strategy.nextKeyPress(); // let the strategy pick a slot
+                    if (slot >= 0) {
+                        aiKeyPending = true; // before pressing, so the player thread cannot handle the key first
+                        if (!pressKey(slot, System.nanoTime())) aiKeyPending = false; // initiate key press with selected slot
+                    }
+                    else // nothing to press (e.g. no set on the table), look again a bit later
+                        env.clock.sleep(IDLE_MILLIS);
+                } catch (InterruptedException ignored) {}
             }
+            env.clock.unregister();
             env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " terminated.");
-        }, "computer-" + id);
-        aiThread.start();
+            synchronized (threadLock) { aiThread = null; }
+            aiStopped.countDown();
+        });
+    }
+
+    /**
+     * Waits while the player cannot act: the player is frozen, the round is starting or ending or the previous key
+     * press was not handled yet (including the dealer's verdict on a set). Notified when a key press was handled,
+     * when the freeze is over and when a round starts.
+     *
+     * @throws InterruptedException - if the AI thread was interrupted while waiting.
+     */
+    private void awaitTurn() throws InterruptedException {
+        synchronized (aiTurn) {
+            while (!terminate && (isFrozen || dealer.roundStartOrEnd() || aiKeyPending))
+                env.clock.await(aiTurn, 0);
+        }
+    }
+
+    /**
+     * Called by the player thread once a key press was handled.
+     */
+    private void keyHandled() {
+        if (human) return;
+        aiKeyPending = false;
+        wakeAI();
+    }
+
+    /**
+     * Wakes the AI thread if it waits for its turn.
+     */
+    private void wakeAI() {
+        synchronized (aiTurn) { env.clock.signalAll(aiTurn); }
     }
 
     /**
      * Called when the game should be terminated due to an external event.
+     * Interrupts the player's thread, so it does not keep waiting for key presses or for the dealer.
      */
     public void terminate()
     {
         terminate = true;
+        wakeAI(); // release the AI thread if it waits for its turn
+        synchronized (threadLock) { if (playerThread != null) playerThread.interrupt(); }
+        synchronized (this) {
+            if (freezeTimer != null) freezeTimer.cancel(); // no one will see the rest of the freeze
+            freezeTimer = null;
+        }
+    }
+
+    /**
+     * Prepares the player for a new game, reusing its data structures.
+     *
+     * @pre - the player's threads have finished running.
+     * @post - the player's score is 0 and the player has no tokens and no pending key presses.
+     */
+    public void reset() {
+        score = 0;
+        penalties = 0;
+        clearTokens();
+        keyPresses.clear();
+        aiKeyPending = false;
+        synchronized (this) {
+            if (freezeTimer != null) freezeTimer.cancel();
+            freezeTimer = null;
+        }
+        isFrozen = false;
+        pointScored = false;
+        hasBeenChecked = false;
+        claimed = false;
+        terminate = false;
+        playerStopped = new CountDownLatch(1);
+        aiStopped = new CountDownLatch(1);
+        started = new CountDownLatch(human ? 1 : 2);
+    }
+
+    /**
+     * Waits until the player's threads have registered with the clock. Until then the game time must not pass, or a
+     * computer player would start late by however long the thread took to start.
+     *
+     * @throws InterruptedException - if the calling thread was interrupted while waiting.
+     */
+    public void awaitStart() throws InterruptedException {
+        started.await();
+    }
+
+    /**
+     * Restores the state of the player in a paused game (see Dealer::resume).
+     *
+     * @param score     - the player's score.
+     * @param penalties - the number of penalties the player got.
+     * @param tokens    - the slots of the player's tokens.
+     * @param freeze    - the remaining freeze in milliseconds (0 if not frozen).
+     * @param claimed   - true iff the player's set waits for the dealer's verdict.
+     * @pre - the player was reset and its threads are not running.
+     */
+    void restore(int score, int penalties, int[] tokens, long freeze, boolean claimed) {
+        this.score = score;
+        this.penalties = penalties;
+        env.ui.setScore(id, score);
+        synchronized (this) {
+            for (int slot : tokens) {
+                tokenList.add(slot);
+                setToken(slot, true);
+                table.placeToken(id, slot);
+            }
+        }
+        if (freeze > 0) freeze(freeze);
+        this.claimed = claimed;
+    }
+
+    /**
+     * @return - the slots of the player's tokens, in the order they were placed.
+     */
+    synchronized int[] tokens() {
+        return tokenList.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * @return - the remaining time of the player's freeze in milliseconds (0 if not frozen).
+     */
+    synchronized long remainingFreeze() {
+        return isFrozen ? Math.max(0, freezeUntil - env.clock.currentTimeMillis()) : 0;
+    }
+
+    /**
+     * Waits for the player's thread (and the AI thread, if any) to finish running.
+     *
+     * @throws InterruptedException - if the calling thread was interrupted while waiting.
+     */
+    public void join() throws InterruptedException {
+        playerStopped.await();
     }
 
     /**
@@ -170,16 +433,60 @@ public class Player implements Runnable {
      * @param slot - the slot corresponding to the key pressed.
      */
     public void keyPressed(int slot) {
+        pressKey(slot, System.nanoTime());
+    }
+
+    /**
+     * This method is called when a key is pressed.
+     *
+     * @param slot    - the slot corresponding to the key pressed.
+     * @param pressed - the time the key was pressed (System::nanoTime), for measuring the input latency.
+     */
+    public void keyPressed(int slot, long pressed) {
+        pressKey(slot, pressed);
+    }
+
+    /**
+     * Adds a key press to the queue without blocking. Must be called by a single thread (the Swing event thread for
+     * a human player, the AI thread for a computer player).
+     *
+     * @param slot    - the slot corresponding to the key pressed.
+     * @param pressed - the time the key was pressed (System::nanoTime).
+     * @return - true iff the key press is waiting in the queue.
+     */
+    private boolean pressKey(int slot, long pressed) {
         // if the function call is not between removing all the cards from the table
         // and placing new ones for the next round in order to not place cards in this stage
-        if (!dealer.roundStartOrEnd()) {
-            // if player is not frozen due to point or penalty
-            if (!isFrozen) {
-                try {
-                    keyPQueue.put(slot); // add the slot to the key press queue
-                } catch (InterruptedException ignored) {}
-            }
+        // and if player is not frozen due to point or penalty
+        if (dealer.roundStartOrEnd() || isFrozen) {
+            env.metrics.ignoredKeyPresses.increment();
+            return false;
+        }
+        long dropped = keyPresses.dropped(); // only this thread changes it
+        boolean queued = keyPresses.offer(slot, pressed);
+        if (keyPresses.dropped() != dropped) env.metrics.droppedKeyPresses.increment();
+        if (!queued) {
+            env.metrics.cancelledKeyPresses.increment();
+            return false;
         }
+        env.metrics.keyPresses.increment();
+        env.metrics.keyPressQueueDepth.record(keyPresses.size());
+        env.journal.append(Journal.Type.KEY, id, slot); // only the presses that count, so a replay presses no others
+        return true;
+    }
+
+    /**
+     * @return - the number of key presses that were dropped because the player pressed keys too fast.
+     */
+    public long droppedKeyPresses() {
+        return keyPresses.dropped();
+    }
+
+    /**
+     * @return - the number of key presses that cancelled each other out (the same slot twice) before being handled.
+     */
+    public long coalescedKeyPresses() {
+        return keyPresses.coalesced();
     }
 
     /**
@@ -189,20 +496,9 @@ public class Player implements Runnable {
      * @post - the player's score is updated in the ui.
      */
     public void point() {
-            try {
-                isFrozen = true; // true to prevent human/ai from entering keys to the key press queue when it's not valid
-                env.ui.setScore(id, ++score); // give point in the table
-                // update the remaining time in seconds until freeze is over
-                long overallTime = System.currentTimeMillis() +env.config.pointFreezeMillis;
-                // while the remaining freeze time is more than a sec, update freeze time on ui and sleep
-                while (overallTime - System.currentTimeMillis() >= 1000){
-                    env.ui.setFreeze(id, overallTime - System.currentTimeMillis());
-                    Thread.sleep(900);
-                }
-                env.ui.setFreeze(id, 0); // end freeze for the player in the ui
-                isFrozen = false; // player can now continue press keys
-                pointScored = false; // reset for next time
-            } catch (InterruptedException ignored) {}
+        pointScored = false; // reset for next time
+        env.ui.setScore(id, ++score); // give point in the table
+        freeze(env.config.pointFreezeMillis);
         int ignored = table.countCards(); // this part is just for demonstration in the unit tests
     }
 
@@ -210,25 +506,48 @@ public class Player implements Runnable {
      * Penalize a player and perform other related actions.
      */
     public void penalty() {
-        try {
-            isFrozen = true; // true to prevent human/ai from entering keys to the key press queue when it's not valid
-            // update the remaining time in seconds until freeze is over
-            long startTime = System.currentTimeMillis() + env.config.penaltyFreezeMillis;
-            // while the remaining freeze time is more than a sec, update freeze time on ui and sleep
-            while (startTime - System.currentTimeMillis() >= 1000){
-                env.ui.setFreeze(id, startTime - System.currentTimeMillis());
-                Thread.sleep(900);
-            }
+        penalties++;
+        freeze(env.config.penaltyFreezeMillis);
+    }
+
+    /**
+     * Freezes the player. The freeze is counted down by the timer wheel, so the player thread is free meanwhile.
+     *
+     * @param millis - the length of the freeze in milliseconds.
+     */
+    private synchronized void freeze(long millis) {
+        isFrozen = true; // true to prevent human/ai from entering keys to the key press queue when it's not valid
+        if (freezeTimer != null) freezeTimer.cancel();
+        freezeUntil = env.clock.currentTimeMillis() + millis;
+        env.journal.append(Journal.Type.FREEZE, id, (int) millis);
+        freezeTick();
+    }
+
+    /**
+     * Updates the remaining freeze time on the ui, and schedules the next update on the next whole second.
+     * Ends the freeze once its time is over.
+     */
+    private synchronized void freezeTick() {
+        freezeTimer = null;
+        long remaining = freezeUntil - env.clock.currentTimeMillis();
+        if (remaining <= 0 || terminate) {
             env.ui.setFreeze(id, 0); // end freeze for the player in the ui
             isFrozen = false; // player can now continue press keys
-        } catch (InterruptedException ignored) {}
-
+            wakeAI();
+            return;
+        }
+        env.ui.setFreeze(id, remaining);
+        freezeTimer = env.timers.schedule((remaining - 1) % 1000 + 1, this::freezeTick);
     }
 
     public int score() {
         return score;
     }
 
+    public int penalties() {
+        return penalties;
+    }
+
     /**
      * Places or removes players token based on tokenList entries, and performs other actions.
      *
@@ -237,37 +556,99 @@ public class Player implements Runnable {
      */
     protected boolean operateSlot(int slot) {
         if (dealer.isLegalSetWasFound()) // wait for dealer to remove legal set that was found and place new cards
-            synchronized (table) { try { table.wait(); } catch(InterruptedException ignored) {} }
+            synchronized (table) { try { env.clock.await(table, 0); } catch(InterruptedException ignored) {} }
+        boolean placed;
         synchronized (this) {
             if (tokenList.contains(slot)) {
                 // if slot in tokenList, remove the slot from there and remove players token from the slot
                 tokenList.remove(Integer.valueOf(slot));
-                table.removeToken(id, slot);
+                setToken(slot, false);
+                placed = false;
             } else if (table.slotToCard(slot) != null && !tokenList.contains(slot) && tokenList.size() < 3) {
                 // otherwise, if slot is not in tokenList and slot is valid (null) and tokenList is not full,
                 // add slot to tokenList and place token in slot
                 tokenList.add(slot);
-                table.placeToken(id, slot);
+                setToken(slot, true);
+                placed = true;
             }
             else
                 return false;
-            return true;
         }
+        // the table takes time to place or remove the token, don't keep the dealer from the token list meanwhile
+        if (placed)
+            table.placeToken(id, slot);
+        else
+            table.removeToken(id, slot);
+        return true;
     }
 
 
-    public List<Integer> getTokenList() { //will be used so the dealer gets our set through the id
-            synchronized (this) {return tokenList; }
+    /**
+     * Takes the next key press from the queue, waiting while the queue is empty.
+     *
+     * @return - the slot of the key press.
+     * @throws InterruptedException - if the player thread was interrupted while waiting.
+     */
+    private int takeKeyPress() throws InterruptedException {
+        return keyPresses.take();
+    }
+
+    /**
+     * Checks the cards under the player's tokens before claiming them as a set.
+     * The tokens are read under the player's lock, so the dealer cannot replace a card and remove its token meanwhile.
+     *
+     * @return - false iff the cards are surely not a set (true if they are, or if they are being replaced right now,
+     * in which case the dealer decides).
+     */
+    private boolean plausibleSet() {
+        synchronized (this) {
+            if (tokenList.size() != SET_SIZE)
+                return true;
+            for (int i = 0; i < SET_SIZE; i++)
+                claimSlots[i] = tokenList.get(i);
+            if (!table.cardsAt(claimSlots, claimCards))
+                return true;
         }
+        return env.util.testSet(claimCards);
+    }
 
-    private int generateKeyPress() {
-        // pick random row and column and according to the formula provided in project description, calculate random slot
-        Random rand = new Random();
-        int randomRow = rand.nextInt(env.config.rows);
-        int randomCol = rand.nextInt(env.config.columns);
-        return (randomCol+env.config.columns*randomRow);
+    /**
+     * @param slot - the slot.
+     * @return - true iff the player has a token on the slot (read without locking, used by the AI thread).
+     */
+    boolean hasToken(int slot) {
+        return (tokenMask.get(slot / Long.SIZE) & 1L << slot) != 0;
     }
 
+    /**
+     * Marks the slot in tokenMask. Called while holding the player's lock, with the change of tokenList.
+     */
+    private void setToken(int slot, boolean placed) {
+        long word = tokenMask.get(slot / Long.SIZE), bit = 1L << slot;
+        tokenMask.set(slot / Long.SIZE, placed ? word | bit : word & ~bit);
+    }
+
+    /**
+     * Removes all of the player's tokens from its token list (the tokens on the table are removed by the dealer).
+     */
+    synchronized void clearTokens() {
+        tokenList.clear();
+        for (int i = 0; i < tokenMask.length(); i++)
+            tokenMask.set(i, 0);
+    }
+
+    /**
+     * Removes the player's tokens on the slots from its token list (the tokens on the table are removed by the dealer).
+     */
+    synchronized void removeTokens(List<Integer> slots) {
+        tokenList.removeAll(slots);
+        for (int slot : slots)
+            setToken(slot, false);
+    }
+
+    public List<Integer> getTokenList() { //will be used so the dealer gets our set through the id
+            synchronized (this) {return tokenList; }
+        }
 
     public int getId() {
         return id;
@@ -277,10 +658,15 @@ public class Player implements Runnable {
         pointScored = true;
     } // will be used by dealer to give point to player
 
+    public void notifyRoundStart() {
+        // will be used by the dealer to wake the AI thread when the players can place tokens again
+        wakeAI();
+    }
+
     public synchronized void notifyPlayer(){
         // will be used by the dealer to notify the player after his set was checked
         hasBeenChecked = true;
-        notifyAll();
+        env.clock.signalAll(this);
     }
     //////////////////////////////
 
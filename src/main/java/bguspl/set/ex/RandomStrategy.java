@@ -0,0 +1,70 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.SplittableRandom;
+
+/**
+ * Presses a random card on the table (the original "very very smart AI").
+ * Also holds the table snapshot and the reaction time model shared by the other strategies.
+ */
+public class RandomStrategy implements BotStrategy {
+
+    protected final Env env;
+    protected final Table table;
+    protected final Player player;
+    protected final SplittableRandom random;
+
+    /**
+     * The card on each slot when the table was last read (-1 for an empty slot).
+     */
+    protected final int[] slotCards;
+
+    /**
+     * The slots that held a card when the table was last read, and their number.
+     */
+    protected final int[] occupied;
+    protected int cards;
+
+    public RandomStrategy(Env env, Table table, Player player, SplittableRandom random) {
+        this.env = env;
+        this.table = table;
+        this.player = player;
+        this.random = random;
+        slotCards = new int[env.config.tableSize];
+        occupied = new int[env.config.tableSize];
+    }
+
+    @Override
+    public int nextKeyPress() {
+        readTable();
+        return randomCard();
+    }
+
+    @Override
+    public long reactionTime() {
+        // uniform between the configured bounds
+        long min = env.config.computerDelayMillis, max = env.config.computerMaxDelayMillis;
+        return max > min ? min + random.nextLong(max - min + 1) : min;
+    }
+
+    /**
+     * Reads the cards on the table into the snapshot.
+     */
+    protected void readTable() {
+        cards = 0;
+        for (int slot = 0; slot < slotCards.length; slot++) {
+            Integer card = table.slotToCard(slot);
+            slotCards[slot] = card == null ? -1 : card;
+            if (card != null)
+                occupied[cards++] = slot;
+        }
+    }
+
+    /**
+     * @return - a random slot that holds a card in the snapshot (-1 if the table is empty).
+     */
+    protected int randomCard() {
+        return cards == 0 ? -1 : occupied[random.nextInt(cards)];
+    }
+}
@@ -0,0 +1,60 @@
+package bguspl.set.ex;
+
+import bguspl.set.Clock;
+
+/**
+ * Presses the keys of a recorded game at the times they were pressed (see bguspl.set.Replay).
+ * A key is pressed once the game's clock reaches its time, or as soon as the player can act if it is late.
+ */
+public class ScriptedStrategy implements BotStrategy {
+
+    private final Clock clock;
+    private final long[] times;
+    private final int[] slots;
+    private int next; // the index of the next key press
+    private volatile long offset; // the time of the replay minus the time of the recording
+
+    /**
+     * @param clock - the game's clock.
+     * @param times - the recorded times of the key presses, in ascending order.
+     * @param slots - the slot of each key press.
+     */
+    public ScriptedStrategy(Clock clock, long[] times, int[] slots) {
+        this.clock = clock;
+        this.times = times;
+        this.slots = slots;
+    }
+
+    /**
+     * Starts a game of the recording: the key presses recorded from the game's start on are pressed relative to the
+     * start of the replayed game. Called before the player's threads start.
+     *
+     * @param recordedStart - the recorded time of the game's start.
+     * @param start         - the time of the replayed game's start.
+     */
+    public void startGame(long recordedStart, long start) {
+        while (next < times.length && times[next] < recordedStart) next++; // left over from a game that ended early
+        offset = start - recordedStart;
+    }
+
+    @Override
+    public int nextKeyPress() {
+        if (next == times.length || times[next] + offset > clock.currentTimeMillis())
+            return -1;
+        return slots[next++];
+    }
+
+    @Override
+    public long reactionTime() {
+        if (next == times.length)
+            return Long.MAX_VALUE / 2; // nothing left to press, wait until the game ends
+        return Math.max(0, times[next] + offset - clock.currentTimeMillis());
+    }
+
+    /**
+     * @return - the number of key presses that were not pressed yet.
+     */
+    public int remaining() {
+        return times.length - next;
+    }
+}
@@ -0,0 +1,221 @@
+package bguspl.set.ex;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * The state of a paused game (see Dealer::pause), enough to resume it in another process (see Dealer::resume): the
+ * deck in its order, the cards on the table, the score, penalties, tokens and remaining freeze of each player, the sets
+ * that wait for the dealer's verdict and the time left in the round.
+ * The binary format is versioned and written with a single write of a direct buffer, so a snapshot of a large deck is
+ * written in microseconds (and read as fast). The random streams are not part of a snapshot: the resumed game shuffles
+ * from the start of its seed's streams.
+ * Format (big-endian): magic (int, "SETS"), version (int), CRC32 of the body (int), then the body: deck size,
+ * rounds, timeouts, reshuffles (ints), remaining time of the round (long, -1 between rounds), the table (count, then
+ * the card per slot or -1), the deck (count, then the cards), the players (count, then per player: score, penalties
+ * (ints), remaining freeze (long) and tokens (count, then the slots)) and the claims (count, then the player ids).
+ */
+public class Snapshot {
+
+    private static final int MAGIC = 0x53455453; // "SETS"
+    public static final int VERSION = 2; // 2: the timeouts of the rounds are kept apart from the reshuffles
+    private static final int HEADER_BYTES = 12;
+
+    public final int deckSize;
+    public final int rounds;
+    public final int timeouts;
+    public final int reshuffles;
+    public final long remainingMillis; // of the round in progress (-1 if the game stopped between rounds)
+    public final int[] table; // the card on each slot (-1 if none)
+    public final int[] deck; // the cards left in the deck, in order
+    public final int[] scores;
+    public final int[] penalties;
+    public final long[] freezeMillis; // the remaining freeze of each player (0 if not frozen)
+    public final int[][] tokens; // the slots of each player's tokens, in the order they were placed
+    public final int[] claims; // the players whose sets wait for the dealer's verdict, in the order they claimed
+
+    /**
+     * @param deckSize        - the number of cards in a full deck.
+     * @param rounds          - the number of rounds dealt so far (including the round in progress).
+     * @param timeouts        - the number of rounds that timed out so far.
+     * @param reshuffles      - the number of rounds that timed out on a board with no set so far.
+     * @param remainingMillis - the time left in the round in progress, or -1 if the game stopped between rounds.
+     * @param table           - the card on each slot, or -1 if none.
+     * @param deck            - the cards left in the deck, in order.
+     * @param scores          - the score of each player.
+     * @param penalties       - the number of penalties of each player.
+     * @param freezeMillis    - the remaining freeze of each player (0 if not frozen).
+     * @param tokens          - the slots of each player's tokens.
+     * @param claims          - the players whose sets wait for the dealer's verdict, in order.
+     */
+    public Snapshot(int deckSize, int rounds, int timeouts, int reshuffles, long remainingMillis, int[] table,
+                    int[] deck, int[] scores, int[] penalties, long[] freezeMillis, int[][] tokens, int[] claims) {
+        this.deckSize = deckSize;
+        this.rounds = rounds;
+        this.timeouts = timeouts;
+        this.reshuffles = reshuffles;
+        this.remainingMillis = remainingMillis;
+        this.table = table;
+        this.deck = deck;
+        this.scores = scores;
+        this.penalties = penalties;
+        this.freezeMillis = freezeMillis;
+        this.tokens = tokens;
+        this.claims = claims;
+    }
+
+    /**
+     * @return - the number of players in the game.
+     */
+    public int players() {
+        return scores.length;
+    }
+
+    /**
+     * @return - the number of bytes the snapshot takes (see encode).
+     */
+    public int size() {
+        int size = HEADER_BYTES + 4 * 4 + 8 + 4 + table.length * 4 + 4 + deck.length * 4 + 4 + 4 + claims.length * 4;
+        for (int[] slots : tokens)
+            size += 4 + 4 + 8 + 4 + slots.length * 4;
+        return size;
+    }
+
+    /**
+     * Writes the snapshot to the buffer.
+     *
+     * @param buffer - the buffer, with at least size() bytes remaining.
+     */
+    public void encode(ByteBuffer buffer) {
+        int start = buffer.position();
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(0); // the checksum is filled in once the body is written
+        buffer.putInt(deckSize).putInt(rounds).putInt(timeouts).putInt(reshuffles).putLong(remainingMillis);
+        putInts(buffer, table);
+        putInts(buffer, deck);
+        buffer.putInt(scores.length);
+        for (int i = 0; i < scores.length; i++) {
+            buffer.putInt(scores[i]).putInt(penalties[i]).putLong(freezeMillis[i]);
+            putInts(buffer, tokens[i]);
+        }
+        putInts(buffer, claims);
+        buffer.putInt(start + 8, checksum(buffer, start + HEADER_BYTES, buffer.position()));
+    }
+
+    /**
+     * Reads a snapshot from the buffer.
+     *
+     * @param buffer - the buffer, positioned at the start of the snapshot.
+     * @return - the snapshot.
+     * @throws IOException - if the buffer does not hold a snapshot of a supported version, or the snapshot is damaged.
+     */
+    public static Snapshot decode(ByteBuffer buffer) throws IOException {
+        try {
+            int start = buffer.position();
+            if (buffer.getInt() != MAGIC)
+                throw new IOException("not a snapshot");
+            int version = buffer.getInt();
+            if (version != VERSION)
+                throw new IOException("unsupported snapshot version " + version + " (expected " + VERSION + ")");
+            int crc = buffer.getInt();
+            int deckSize = buffer.getInt(), rounds = buffer.getInt(), timeouts = buffer.getInt();
+            int reshuffles = buffer.getInt();
+            long remainingMillis = buffer.getLong();
+            int[] table = getInts(buffer);
+            int[] deck = getInts(buffer);
+            int players = count(buffer, 16);
+            int[] scores = new int[players], penalties = new int[players];
+            long[] freezeMillis = new long[players];
+            int[][] tokens = new int[players][];
+            for (int i = 0; i < players; i++) {
+                scores[i] = buffer.getInt();
+                penalties[i] = buffer.getInt();
+                freezeMillis[i] = buffer.getLong();
+                tokens[i] = getInts(buffer);
+            }
+            int[] claims = getInts(buffer);
+            if (checksum(buffer, start + HEADER_BYTES, buffer.position()) != crc)
+                throw new IOException("damaged snapshot (checksum mismatch)");
+            return new Snapshot(deckSize, rounds, timeouts, reshuffles, remainingMillis, table, deck, scores,
+                    penalties, freezeMillis, tokens, claims);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("truncated snapshot");
+        }
+    }
+
+    /**
+     * Writes the snapshot to a file, replacing it atomically (so a crash leaves either the old or the new snapshot).
+     *
+     * @param path - the file.
+     * @throws IOException - if the file cannot be written.
+     */
+    public void write(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size());
+        encode(buffer);
+        buffer.flip();
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            channel.force(false);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a snapshot from a file.
+     *
+     * @param path - the file.
+     * @return - the snapshot.
+     * @throws IOException - if the file cannot be read or does not hold a valid snapshot.
+     */
+    public static Snapshot read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+                throw new IOException("not a snapshot");
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) ;
+            buffer.flip();
+            return decode(buffer);
+        }
+    }
+
+    private static void putInts(ByteBuffer buffer, int[] values) {
+        buffer.putInt(values.length);
+        buffer.asIntBuffer().put(values); // in bulk, the view shares the buffer's content but not its position
+        buffer.position(buffer.position() + values.length * 4);
+    }
+
+    private static int[] getInts(ByteBuffer buffer) {
+        int[] values = new int[count(buffer, 4)];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + values.length * 4);
+        return values;
+    }
+
+    /**
+     * Reads a count of items, checking that the buffer can hold that many, so a damaged count fails fast.
+     */
+    private static int count(ByteBuffer buffer, int itemBytes) {
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining() / itemBytes)
+            throw new BufferUnderflowException();
+        return count;
+    }
+
+    private static int checksum(ByteBuffer buffer, int from, int to) {
+        CRC32 checksum = new CRC32();
+        ByteBuffer body = buffer.duplicate();
+        body.limit(to).position(from);
+        checksum.update(body);
+        return (int) checksum.getValue();
+    }
+}
@@ -0,0 +1,92 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.SplittableRandom;
+
+/**
+ * Finds a legal set on the table and places the player's tokens on it.
+ * The set is kept until one of its cards is removed from the table, and tokens on other slots are removed first.
+ */
+public class SolverStrategy extends RandomStrategy {
+
+    /**
+     * The slots of the set the player is going for, and the cards that were on them when the set was found.
+     */
+    protected final int[] plan = new int[Player.SET_SIZE];
+    protected final int[] planCards = new int[Player.SET_SIZE];
+    protected boolean hasPlan;
+
+    private final int[] candidate = new int[Player.SET_SIZE]; // the cards of the triple being tested
+
+    public SolverStrategy(Env env, Table table, Player player, SplittableRandom random) {
+        super(env, table, player, random);
+    }
+
+    @Override
+    public int nextKeyPress() {
+        readTable();
+        return solve();
+    }
+
+    /**
+     * @return - the next slot to press for completing the planned set (-1 if there is no set on the table or all of
+     * its slots already have tokens).
+     * @pre - the table snapshot is up to date.
+     */
+    protected int solve() {
+        if (!planIsValid() && !findSet())
+            return -1;
+        for (int slot = 0; slot < slotCards.length; slot++) // remove the tokens that are not part of the set
+            if (player.hasToken(slot) && !inPlan(slot))
+                return slot;
+        for (int slot : plan)
+            if (!player.hasToken(slot))
+                return slot;
+        return -1; // the set is complete, waiting for the dealer
+    }
+
+    /**
+     * @return - true iff all the cards of the planned set are still on their slots.
+     */
+    private boolean planIsValid() {
+        if (!hasPlan)
+            return false;
+        for (int i = 0; i < plan.length; i++)
+            if (slotCards[plan[i]] != planCards[i])
+                return false;
+        return true;
+    }
+
+    private boolean inPlan(int slot) {
+        for (int planned : plan)
+            if (planned == slot)
+                return true;
+        return false;
+    }
+
+    /**
+     * Searches the table snapshot for a legal set, starting from a random card so that players do not all go for
+     * the same set.
+     *
+     * @return - true iff a set was found (and is now the plan).
+     */
+    private boolean findSet() {
+        hasPlan = false;
+        if (cards < Player.SET_SIZE)
+            return false;
+        int offset = random.nextInt(cards);
+        for (int i = 0; i < cards; i++)
+            for (int j = i + 1; j < cards; j++)
+                for (int k = j + 1; k < cards; k++) {
+                    plan[0] = occupied[(i + offset) % cards];
+                    plan[1] = occupied[(j + offset) % cards];
+                    plan[2] = occupied[(k + offset) % cards];
+                    for (int c = 0; c < plan.length; c++)
+                        candidate[c] = planCards[c] = slotCards[plan[c]];
+                    if (env.util.testSet(candidate))
+                        return hasPlan = true;
+                }
+        return false;
+    }
+}
@@ -1,6 +1,7 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
+import bguspl.set.Journal;
 
 import java.util.Arrays;
 import java.util.List;
@@ -92,13 +93,17 @@ public class Table {
      */
     public void placeCard(int card, int slot) {
             try {
-                Thread.sleep(env.config.tableDelayMillis);
+                env.clock.sleep(env.config.tableDelayMillis);
             } catch (InterruptedException ignored) {
             }
 
-            cardToSlot[card] = slot;
-            slotToCard[slot] = card;
+            synchronized (this) { // see cardsAt
+                cardToSlot[card] = slot;
+                slotToCard[slot] = card;
+            }
 
+            env.journal.append(Journal.Type.DEAL, slot, card);
+            env.metrics.cardsDealt.increment();
             env.ui.placeCard(card, slot);
 
     }
@@ -111,12 +116,17 @@ public class Table {
      */
     public void removeCard(int slot) {
             try {
-                Thread.sleep(env.config.tableDelayMillis);
+                env.clock.sleep(env.config.tableDelayMillis);
             } catch (InterruptedException ignored) {
             }
-            int card = slotToCard[slot];
-            slotToCard[slot] = null;
-            cardToSlot[card] = null;
+            int card;
+            synchronized (this) { // see cardsAt
+                card = slotToCard[slot];
+                slotToCard[slot] = null;
+                cardToSlot[card] = null;
+            }
+            env.journal.append(Journal.Type.REMOVE_CARD, slot, card);
+            env.metrics.cardsRemoved.increment();
             env.ui.removeCard(slot);
     }
 
@@ -127,9 +137,11 @@ public class Table {
      */
     public void placeToken(int player, int slot) {
             try {
-                Thread.sleep(env.config.tableDelayMillis);
+                env.clock.sleep(env.config.tableDelayMillis);
             } catch (InterruptedException ignored) {
             }
+            env.journal.append(Journal.Type.TOKEN, player, slot, 1);
+            env.metrics.tokensPlaced.increment();
             env.ui.placeToken(player, slot);
     }
 
@@ -141,9 +153,11 @@ public class Table {
      */
     public boolean removeToken(int player, int slot) { ////////////////////////////////////////////
             try {
-                Thread.sleep(env.config.tableDelayMillis);
+                env.clock.sleep(env.config.tableDelayMillis);
             } catch (InterruptedException ignored) {
             }
+            env.journal.append(Journal.Type.TOKEN, player, slot, 0);
+            env.metrics.tokensRemoved.increment();
             try {
                 env.ui.removeToken(player, slot);
                 return true;
@@ -154,15 +168,44 @@ public class Table {
 
     ///////////////////////////////////ADDED FUNCTIONS
 
+    /**
+     * Removes all cards from the table (without updating the user interface), e.g. before a new game.
+     *
+     * @post - all slots are empty.
+     */
+    public void reset() {
+        Arrays.fill(slotToCard, null);
+        Arrays.fill(cardToSlot, null);
+    }
+
+    /**
+     * Reads the cards on several slots at once, so that the dealer cannot change some of them in the middle.
+     *
+     * @param slots - the slots to read.
+     * @param cards - filled with the card on each slot.
+     * @return - true iff there is a card on every slot.
+     */
+    public synchronized boolean cardsAt(int[] slots, int[] cards) {
+        for (int i = 0; i < slots.length; i++) {
+            Integer card = slotToCard[slots[i]];
+            if (card == null)
+                return false;
+            cards[i] = card;
+        }
+        return true;
+    }
+
     public Integer slotToCard(int slot) {
         return slotToCard[slot];
     }
 
     public void removeTokens(int slot) {
             try {
-                Thread.sleep(env.config.tableDelayMillis);
+                env.clock.sleep(env.config.tableDelayMillis);
             } catch (InterruptedException ignored) {
             }
+            env.journal.append(Journal.Type.TOKEN, -1, slot, 0);
+            env.metrics.tokensRemoved.increment();
             env.ui.removeTokens(slot);
     }
 
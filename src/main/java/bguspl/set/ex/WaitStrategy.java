@@ -0,0 +1,38 @@
+package bguspl.set.ex;
+
+/**
+ * How the dealer waits for claimed sets (see Config::dealerWaitStrategy).
+ * The strategies trade CPU time for the latency of a verdict: blocking costs nothing while idle but has to be woken
+ * up by the scheduler, while busy-spin reacts right away but keeps a core busy for the whole game.
+ */
+public enum WaitStrategy {
+
+    /**
+     * Waits on the dealer's monitor until notified (the default, and the only one possible in virtual time).
+     */
+    BLOCKING,
+
+    /**
+     * Parks for short periods, checking for claims in between. A claim also unparks the dealer right away.
+     */
+    TIMED_PARK,
+
+    /**
+     * Yields the processor for a while, then blocks like BLOCKING.
+     */
+    YIELD_PARK,
+
+    /**
+     * Checks for claims in a tight loop.
+     */
+    BUSY_SPIN;
+
+    /**
+     * @param name - the name of the strategy in the configuration (e.g. timed-park).
+     * @return - the strategy.
+     * @throws IllegalArgumentException - if there is no strategy of that name.
+     */
+    public static WaitStrategy parse(String name) {
+        return valueOf(name.trim().toUpperCase().replace('-', '_'));
+    }
+}
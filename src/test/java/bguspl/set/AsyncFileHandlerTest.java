@@ -0,0 +1,169 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncFileHandlerTest {
+
+    @TempDir
+    Path dir;
+
+    private AsyncFileHandler handler;
+    private final CountDownLatch writing = new CountDownLatch(1), release = new CountDownLatch(1);
+    private final List<String> formattedBy = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * Writes the message of each record on a line. Formatting "block" holds the writer until release.
+     */
+    private class TestFormatter extends Formatter {
+        @Override
+        public String format(LogRecord record) {
+            formattedBy.add(Thread.currentThread().getName());
+            if (record.getMessage().equals("block")) {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {}
+            }
+            return record.getMessage() + System.lineSeparator();
+        }
+    }
+
+    private File file() {
+        return dir.resolve("test.log").toFile();
+    }
+
+    private AsyncFileHandler handler(int capacity) throws IOException {
+        handler = new AsyncFileHandler(file(), capacity);
+        handler.setFormatter(new TestFormatter());
+        return handler;
+    }
+
+    private static LogRecord record(String message) {
+        return new LogRecord(Level.INFO, message);
+    }
+
+    /**
+     * Publishes a record that holds the writer thread, and waits until the writer took it.
+     */
+    private void blockWriter() throws InterruptedException {
+        handler.publish(record("block"));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+    }
+
+    private List<String> lines() throws IOException {
+        return Files.readAllLines(file().toPath(), StandardCharsets.UTF_8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (handler != null) handler.close();
+    }
+
+    @Test
+    void publish_FormattedAndWrittenByTheWriterThread() throws IOException {
+        handler(16);
+
+        handler.publish(record("a"));
+        handler.publish(record("b"));
+        handler.flush();
+
+        assertEquals(Arrays.asList("a", "b"), lines());
+        assertEquals(Arrays.asList("log-writer", "log-writer"), formattedBy);
+    }
+
+    @Test
+    void publish_WhileWriterBusy_QueuedAndWrittenInOrder() throws IOException, InterruptedException {
+        handler(1000);
+        blockWriter();
+
+        List<String> expected = new ArrayList<>(Collections.singletonList("block"));
+        for (int i = 0; i < 600; i++) { // more than a batch
+            handler.publish(record(Integer.toString(i)));
+            expected.add(Integer.toString(i));
+        }
+        assertEquals(1, formattedBy.size()); // the publishers did not format anything
+        release.countDown();
+        handler.flush();
+
+        assertEquals(expected, lines());
+        assertEquals(0, handler.dropped());
+    }
+
+    @Test
+    void publish_QueueFullDropNewest_NewRecordsDropped() throws IOException, InterruptedException {
+        handler(4);
+        blockWriter();
+
+        for (int i = 1; i <= 6; i++)
+            handler.publish(record(Integer.toString(i)));
+        release.countDown();
+        handler.close();
+
+        assertEquals(2, handler.dropped());
+        List<String> lines = lines();
+        assertEquals(Arrays.asList("block", "1", "2", "3", "4"), lines.subList(0, 5));
+        assertEquals("[log] 2 records were dropped because the log queue was full", lines.get(5));
+    }
+
+    @Test
+    void publish_QueueFullDropOldest_OldRecordsDropped() throws IOException, InterruptedException {
+        handler(4);
+        handler.setOverflowPolicy(AsyncFileHandler.OverflowPolicy.DROP_OLDEST);
+        blockWriter();
+
+        for (int i = 1; i <= 6; i++)
+            handler.publish(record(Integer.toString(i)));
+        release.countDown();
+        handler.close();
+
+        assertEquals(2, handler.dropped());
+        assertEquals(Arrays.asList("block", "3", "4", "5", "6"), lines().subList(0, 5));
+    }
+
+    @Test
+    void close_WritesTheQueuedRecords() throws IOException, InterruptedException {
+        handler(1000);
+        blockWriter();
+        for (int i = 0; i < 100; i++)
+            handler.publish(record(Integer.toString(i)));
+
+        release.countDown();
+        handler.close();
+
+        List<String> lines = lines();
+        assertEquals(101, lines.size());
+        assertEquals("99", lines.get(100));
+    }
+
+    @Test
+    void publish_AfterClose_Ignored() throws IOException {
+        handler(16);
+        handler.publish(record("a"));
+        handler.close();
+
+        handler.publish(record("b"));
+
+        assertEquals(Collections.singletonList("a"), lines());
+    }
+}
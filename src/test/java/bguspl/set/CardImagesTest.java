@@ -0,0 +1,149 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CardImagesTest {
+
+    private static final int WIDTH = 24, HEIGHT = 16;
+    private static final int HASH_OFFSET = 7 * Integer.BYTES, PIXELS_OFFSET = 8 * Integer.BYTES; // see the header
+
+    @TempDir
+    Path dir;
+
+    private Logger logger;
+    private Path cacheFile;
+
+    @BeforeEach
+    void setUp() {
+        logger = Logger.getLogger("CardImagesTest");
+        logger.setUseParentHandlers(false);
+        cacheFile = dir.resolve("cards.cache");
+    }
+
+    private Config config(int width, int height) {
+        Properties properties = new Properties();
+        properties.put("LogLevel", "OFF");
+        properties.put("CellWidth", Integer.toString(width));
+        properties.put("CellHeight", Integer.toString(height));
+        properties.put("ImageCacheFile", cacheFile.toString());
+        return new Config(logger, properties);
+    }
+
+    /**
+     * Loads all the card images and waits until they are loaded (and cached, if there was no cache).
+     */
+    private CardImages loadAll(Config config) throws InterruptedException {
+        CountDownLatch loaded = new CountDownLatch(config.deckSize);
+        boolean cached = Files.exists(cacheFile);
+        CardImages images = new CardImages(logger, config, card -> loaded.countDown());
+        images.start();
+        assertTrue(loaded.await(30, TimeUnit.SECONDS), "timed out loading the images");
+        long end = System.currentTimeMillis() + 5000;
+        while (!cached && !Files.exists(cacheFile) && System.currentTimeMillis() < end)
+            Thread.sleep(10);
+        return images;
+    }
+
+    private static int[] pixels(CardImages images, int card) {
+        BufferedImage image = (BufferedImage) images.get(card);
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+
+    @Test
+    void constructor_OnlyTheEmptyCardIsReady() {
+        CardImages images = new CardImages(logger, config(WIDTH, HEIGHT), card -> {});
+
+        assertNotNull(images.empty());
+        assertEquals(WIDTH, images.empty().getWidth(null));
+        assertEquals(HEIGHT, images.empty().getHeight(null));
+        assertNull(images.get(0));
+    }
+
+    @Test
+    void start_LoadsEveryCardAndSavesTheCache() throws InterruptedException {
+        Config config = config(WIDTH, HEIGHT);
+
+        CardImages images = loadAll(config);
+
+        for (int card = 0; card < config.deckSize; card++) {
+            assertNotNull(images.get(card), "card " + card);
+            assertEquals(WIDTH, images.get(card).getWidth(null));
+        }
+        assertTrue(Files.isRegularFile(cacheFile));
+    }
+
+    @Test
+    void cache_LaterRunReadsTheSameImages() throws InterruptedException {
+        Config config = config(WIDTH, HEIGHT);
+        CardImages decoded = loadAll(config);
+
+        CardImages cached = loadAll(config);
+
+        for (int card : new int[]{0, 40, config.deckSize - 1})
+            assertArrayEquals(pixels(decoded, card), pixels(cached, card), "card " + card);
+    }
+
+    @Test
+    void cache_OtherCellSize_Rewritten() throws InterruptedException, IOException {
+        loadAll(config(WIDTH, HEIGHT));
+        long size = Files.size(cacheFile);
+
+        Config config = config(WIDTH * 2, HEIGHT);
+        CardImages images = loadAll(config);
+        long end = System.currentTimeMillis() + 5000;
+        while (Files.size(cacheFile) == size && System.currentTimeMillis() < end)
+            Thread.sleep(10);
+
+        assertEquals(WIDTH * 2, images.get(0).getWidth(null));
+        assertTrue(Files.size(cacheFile) > size);
+    }
+
+    @Test
+    void cache_OfOtherImages_DecodedAgainAndRewritten() throws InterruptedException, IOException {
+        Config config = config(WIDTH, HEIGHT);
+        CardImages decoded = loadAll(config);
+        ByteBuffer cache = ByteBuffer.wrap(Files.readAllBytes(cacheFile));
+        int hash = cache.getInt(HASH_OFFSET);
+        cache.putInt(HASH_OFFSET, hash + 1); // the same count and cell size, but other image resources
+        cache.putInt(PIXELS_OFFSET, 0x12345678);
+        Files.write(cacheFile, cache.array());
+
+        CardImages images = loadAll(config);
+        long end = System.currentTimeMillis() + 5000;
+        while (ByteBuffer.wrap(Files.readAllBytes(cacheFile)).getInt(HASH_OFFSET) != hash
+                && System.currentTimeMillis() < end)
+            Thread.sleep(10);
+
+        assertArrayEquals(pixels(decoded, 0), pixels(images, 0));
+        ByteBuffer rewritten = ByteBuffer.wrap(Files.readAllBytes(cacheFile));
+        assertEquals(hash, rewritten.getInt(HASH_OFFSET));
+        assertEquals(pixels(decoded, 0)[0], rewritten.getInt(PIXELS_OFFSET));
+    }
+
+    @Test
+    void cache_Corrupt_Ignored() throws InterruptedException, IOException {
+        Files.write(cacheFile, new byte[]{1, 2, 3});
+
+        CardImages images = loadAll(config(WIDTH, HEIGHT));
+
+        assertNotNull(images.get(0));
+    }
+}
@@ -0,0 +1,221 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class EventBusTest {
+
+    private static final int CAPACITY = 256;
+
+    private Logger logger;
+    private Util util;
+    private EventBus bus;
+
+    @BeforeEach
+    void setUp() {
+        logger = Logger.getLogger("EventBusTest");
+        logger.setUseParentHandlers(false);
+        util = mock(Util.class);
+        bus = new EventBus(logger, util, new SystemClock(), CAPACITY);
+    }
+
+    @AfterEach
+    void tearDown() {
+        bus.close();
+    }
+
+    /**
+     * @return - the slots of the placeCard events the subscriber gets (in the order it gets them).
+     */
+    private static List<Integer> slots(List<GameEvent> events) {
+        List<Integer> slots = new ArrayList<>();
+        for (GameEvent event : events)
+            slots.add(event.slot);
+        return slots;
+    }
+
+    private static List<Integer> range(int from, int to) {
+        List<Integer> range = new ArrayList<>();
+        for (int i = from; i < to; i++)
+            range.add(i);
+        return range;
+    }
+
+    @Test
+    void publish_EverySubscriberGetsEveryEventInOrder() {
+        List<GameEvent> first = Collections.synchronizedList(new ArrayList<>());
+        List<GameEvent> second = Collections.synchronizedList(new ArrayList<>());
+        bus.subscribe("first", first::add);
+        bus.subscribe("second", second::add);
+
+        for (int slot = 0; slot < 100; slot++)
+            bus.placeCard(slot + 1, slot);
+        bus.close();
+
+        assertEquals(range(0, 100), slots(first));
+        assertEquals(range(0, 100), slots(second));
+        assertEquals(99, first.get(99).sequence());
+        assertEquals(GameEvent.Type.PLACE_CARD, first.get(0).type);
+    }
+
+    @Test
+    void subscribe_OnlyLaterEventsDelivered() {
+        bus.placeCard(1, 0);
+        List<GameEvent> events = Collections.synchronizedList(new ArrayList<>());
+
+        bus.subscribe("late", events::add);
+        bus.placeCard(2, 1);
+        bus.close();
+
+        assertEquals(Collections.singletonList(1), slots(events));
+    }
+
+    @Test
+    void subscribe_UserInterface_EventsAppliedToIt() {
+        List<String> calls = Collections.synchronizedList(new ArrayList<>());
+        bus.subscribe("ui", new UserInterfaceNoop() {
+            @Override
+            public void setScore(int player, int score) {
+                calls.add("score " + player + " " + score);
+            }
+        });
+
+        bus.setScore(2, 5);
+        bus.close();
+
+        assertEquals(Collections.singletonList("score 2 5"), calls);
+    }
+
+    @Test
+    void publish_BoardUpdate_SpinsOnThePublishingThread() {
+        bus.placeCard(1, 0);
+
+        verify(util).spin();
+    }
+
+    @Test
+    void publish_SlowSubscriber_DelaysNeitherThePublisherNorTheOthers() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        List<GameEvent> fast = Collections.synchronizedList(new ArrayList<>());
+        EventBus.Subscription slow = bus.subscribe("slow", event -> {
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {}
+        });
+        bus.subscribe("fast", fast::add);
+
+        for (int slot = 0; slot < 100; slot++)
+            bus.placeCard(slot + 1, slot);
+        long end = System.currentTimeMillis() + 5000;
+        while (fast.size() < 100 && System.currentTimeMillis() < end)
+            Thread.sleep(1);
+
+        assertEquals(range(0, 100), slots(fast));
+        assertEquals(100, slow.backlog()); // still on the first event
+        release.countDown();
+    }
+
+    private static String describe(GameEvent event) {
+        return event.type + " player=" + event.player + " slot=" + event.slot + " card=" + event.card + " value=" + event.value;
+    }
+
+    @Test
+    void publish_SubscriberFallsWholeRingBehind_RedrawnThenGetsLaterEvents() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> events = Collections.synchronizedList(new ArrayList<>());
+        EventBus.Subscription lagging = bus.subscribe("lagging", event -> {
+            events.add(describe(event));
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {}
+        });
+        bus.placeCard(1, 0);
+        bus.placeCard(2, 1);
+        bus.placeCard(3, 2);
+        bus.removeCard(2);
+        bus.placeToken(0, 0);
+        bus.removeTokens(0);
+        bus.placeToken(0, 1);
+        bus.placeToken(1, 1);
+        bus.removeToken(1, 1);
+        bus.setScore(0, 3);
+        for (int i = 0; i < CAPACITY; i++)
+            bus.setElapsed(i);
+
+        release.countDown();
+        long end = System.currentTimeMillis() + 5000;
+        while (lagging.skipped() == 0 && System.currentTimeMillis() < end)
+            Thread.sleep(1);
+        bus.placeCard(4, 2);
+        bus.close();
+
+        assertEquals(10 + CAPACITY - 1, lagging.skipped()); // all but the first event
+        assertEquals(Arrays.asList(
+                describe(GameEvent.placeCard(1, 0)), // delivered before it fell behind
+                describe(GameEvent.reset()),
+                describe(GameEvent.placeCard(1, 0)),
+                describe(GameEvent.placeCard(2, 1)),
+                describe(GameEvent.placeToken(0, 1)),
+                describe(GameEvent.elapsed(CAPACITY - 1)),
+                describe(GameEvent.score(0, 3)),
+                describe(GameEvent.placeCard(4, 2))), events);
+    }
+
+    @Test
+    void publish_SubscriberFails_KeepsGettingEvents() {
+        List<GameEvent> events = Collections.synchronizedList(new ArrayList<>());
+        bus.subscribe("failing", event -> {
+            events.add(event);
+            if (event.slot == 0) throw new IllegalStateException("test");
+        });
+
+        bus.placeCard(1, 0);
+        bus.placeCard(2, 1);
+        bus.close();
+
+        assertEquals(range(0, 2), slots(events));
+    }
+
+    @Test
+    void cancel_NoMoreEvents() throws InterruptedException {
+        CountDownLatch first = new CountDownLatch(1);
+        List<GameEvent> events = Collections.synchronizedList(new ArrayList<>());
+        EventBus.Subscription subscription = bus.subscribe("cancelled", event -> {
+            events.add(event);
+            first.countDown();
+        });
+        bus.placeCard(1, 0);
+        assertTrue(first.await(5, TimeUnit.SECONDS));
+
+        subscription.cancel();
+        bus.placeCard(2, 1);
+        bus.close();
+
+        assertEquals(Collections.singletonList(0), slots(events));
+    }
+
+    @Test
+    void close_LaterEventsNotPublished() {
+        List<GameEvent> events = Collections.synchronizedList(new ArrayList<>());
+        bus.subscribe("closed", events::add);
+        bus.close();
+
+        bus.placeCard(1, 0);
+
+        assertEquals(Collections.emptyList(), events);
+    }
+}
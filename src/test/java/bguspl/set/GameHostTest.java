@@ -0,0 +1,231 @@
+package bguspl.set;
+
+import bguspl.set.ex.Player;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameHostTest {
+
+    private Logger logger;
+    private GameHost host;
+    private Set<Thread> before;
+
+    @BeforeEach
+    void setUp() {
+        logger = Logger.getLogger("GameHostTest");
+        logger.setUseParentHandlers(false);
+        before = Thread.getAllStackTraces().keySet();
+        host = new GameHost(logger);
+    }
+
+    @AfterEach
+    void tearDown() {
+        host.close();
+    }
+
+    /**
+     * A short headless game of computer players in virtual time.
+     */
+    private Config config(long seed) {
+        Properties properties = new Properties();
+        properties.put("LogLevel", "OFF");
+        properties.put("FeatureSize", "3");
+        properties.put("FeatureCount", "3");
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", "2");
+        properties.put("VirtualTime", "True");
+        properties.put("RandomSeed", Long.toString(seed));
+        properties.put("ComputerDelaySeconds", "0.05");
+        return new Config(logger, properties);
+    }
+
+    private static GameHost.Game play(GameHost.Game game) throws InterruptedException {
+        game.start();
+        game.await();
+        return game;
+    }
+
+    /**
+     * Starts the game and terminates it right away.
+     */
+    private static GameHost.Game stop(GameHost.Game game) {
+        game.start();
+        game.terminate();
+        return game;
+    }
+
+    private static int score(GameHost.Game game) {
+        return Arrays.stream(game.players).mapToInt(Player::score).sum();
+    }
+
+    private List<String> leftoverThreads() throws InterruptedException {
+        return leftoverThreads(name -> false);
+    }
+
+    /**
+     * @param ignored - the names of the threads that may stay alive.
+     * @return - the names of the threads that were started since the test started and are still alive, after waiting
+     *           a while for them to end.
+     */
+    private List<String> leftoverThreads(Predicate<String> ignored) throws InterruptedException {
+        ThreadGroup group = Thread.currentThread().getThreadGroup();
+        long end = System.currentTimeMillis() + 5000;
+        List<String> left;
+        do {
+            left = Thread.getAllStackTraces().keySet().stream()
+                    .filter(thread -> !before.contains(thread) && thread.isAlive() && thread.getThreadGroup() == group)
+                    .map(Thread::getName).filter(ignored.negate()).collect(Collectors.toList());
+            if (left.isEmpty()) break;
+            Thread.sleep(10);
+        } while (System.currentTimeMillis() < end);
+        return left;
+    }
+
+    @Test
+    void start_GamesRunToTheirEnd() throws InterruptedException {
+        List<GameHost.Game> games = new ArrayList<>();
+        for (int i = 0; i < 2; i++)
+            games.add(host.create(config(i)));
+        assertEquals(games, host.games());
+
+        for (GameHost.Game game : games)
+            game.start();
+        for (GameHost.Game game : games)
+            game.await();
+
+        for (GameHost.Game game : games) {
+            assertTrue(game.isDone());
+            assertTrue(score(game) > 0, "no set was found in " + game);
+        }
+        assertEquals(Collections.emptyList(), host.games());
+    }
+
+    @Test
+    void cpuNanos_AccountsForTheGamesTasks() throws InterruptedException {
+        GameHost.Game game = host.create(config(1));
+        assertEquals(0, Math.max(0, game.cpuNanos()));
+        assertEquals(0, Math.max(0, game.allocatedBytes()));
+
+        game.start();
+        game.await();
+
+        long cpuNanos = game.cpuNanos(), allocatedBytes = game.allocatedBytes();
+        if (cpuNanos != -1) assertTrue(cpuNanos > 0);
+        if (allocatedBytes != -1) assertTrue(allocatedBytes > 0);
+        assertEquals(cpuNanos, game.cpuNanos()); // all of the game's tasks were accounted for when it ended
+        assertEquals(allocatedBytes, game.allocatedBytes());
+    }
+
+    @Test
+    void report_GamesThatDidNotEnd() {
+        GameHost.Game created = host.create(config(1));
+        GameHost.Game terminated = host.create(config(2));
+        terminated.terminate();
+
+        String report = host.report();
+
+        assertTrue(report.startsWith("game " + created.id + " (created): cpu "), report);
+        assertEquals(1, report.split(System.lineSeparator()).length);
+        assertTrue(terminated.isDone());
+    }
+
+    @Test
+    void close_TerminatesTheGamesAndStopsAllThreads() throws InterruptedException {
+        List<GameHost.Game> games = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            GameHost.Game game = host.create(config(i));
+            game.start();
+            games.add(game);
+        }
+
+        host.close();
+
+        for (GameHost.Game game : games)
+            assertTrue(game.isDone());
+        assertEquals(Collections.emptyList(), leftoverThreads());
+    }
+
+    @Test
+    void rematch_EndedGame_StartsAgain() {
+        GameHost.Game game = stop(host.create(config(1)));
+
+        game.rematch();
+
+        assertFalse(game.isDone());
+        assertEquals(Collections.singletonList(game), host.games());
+        game.terminate();
+        assertTrue(game.isDone());
+    }
+
+    @Test
+    void create_ReleasedGame_Reused() {
+        Config config = config(1);
+        GameHost.Game first = stop(host.create(config));
+        first.release();
+
+        GameHost.Game second = host.create(config);
+        GameHost.Game third = host.create(config);
+
+        assertSame(first, second);
+        assertNotSame(second, third);
+        assertFalse(second.isDone());
+        assertEquals(0, Math.max(0, second.cpuNanos())); // the accounting starts over
+        assertEquals(Arrays.asList(second, third), host.games());
+        assertTrue(stop(second).isDone());
+    }
+
+    @Test
+    void create_OtherConfigOrUserInterface_NotReused() {
+        Config config = config(1);
+        GameHost.Game released = stop(host.create(config));
+        released.release();
+
+        assertNotSame(released, host.create(config(1))); // equal, but another configuration
+        assertNotSame(released, host.create(config, players -> new UserInterfaceNoop()));
+        assertSame(released, host.create(config));
+    }
+
+    @Test
+    void release_RunningGame_Throws() {
+        GameHost.Game game = host.create(config(1));
+
+        assertThrows(IllegalStateException.class, game::release);
+        assertThrows(IllegalStateException.class, game::rematch);
+    }
+
+    @Test
+    void end_ManyGames_NoThreadLeftBehind() throws InterruptedException {
+        Config config = config(1);
+        for (int i = 0; i < 20; i++)
+            stop(host.create(config(i))); // ended, never released
+        for (int i = 0; i < 20; i++)
+            stop(host.create(config)).release();
+        GameHost.Game rematched = stop(host.create(config));
+        for (int i = 0; i < 5; i++) {
+            rematched.rematch();
+            rematched.terminate();
+        }
+        play(host.create(config)); // and one that ends by itself
+
+        // the idle threads of the pool may stay, they are stopped by close
+        assertEquals(Collections.emptyList(), leftoverThreads(name -> name.startsWith("game-host-")));
+    }
+}
@@ -0,0 +1,148 @@
+package bguspl.set;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.management.AttributeNotFoundException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameMetricsTest {
+
+    private static final Pattern SAMPLE = Pattern.compile(
+            "[a-z_]+(\\{[a-z]+=\"[^\"]*\"})? [0-9]+(\\.[0-9]+(E-?[0-9]+)?)?");
+
+    GameMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        metrics = new GameMetrics();
+    }
+
+    private List<String> lines() {
+        String scrape = metrics.scrape();
+        assertTrue(scrape.endsWith("\n"));
+        List<String> lines = new ArrayList<>();
+        for (String line : scrape.split("\n"))
+            lines.add(line);
+        return lines;
+    }
+
+    @Test
+    void scrape_EveryLineIsCommentOrSample() {
+        Set<String> described = new HashSet<>(), typed = new HashSet<>();
+        for (String line : lines()) {
+            if (line.startsWith("# HELP ")) {
+                assertTrue(described.add(line.split(" ")[2]), "family described twice: " + line);
+                continue;
+            }
+            if (line.startsWith("# TYPE ")) {
+                String[] parts = line.split(" ");
+                assertTrue(parts[3].equals("counter") || parts[3].equals("summary"), line);
+                assertTrue(typed.add(parts[2]), "family typed twice: " + line);
+                continue;
+            }
+            assertTrue(SAMPLE.matcher(line).matches(), "not a sample: " + line);
+            String name = line.split("[{ ]")[0];
+            String family = name.replaceAll("_(sum|count)$", "");
+            assertTrue(typed.contains(name) || typed.contains(family), "sample before its family: " + line);
+        }
+    }
+
+    @Test
+    void scrape_Counters() {
+        metrics.claims.increment();
+        metrics.claims.add(2);
+        metrics.illegalVerdicts.increment();
+
+        List<String> lines = lines();
+
+        assertTrue(lines.contains("set_claims_total 3"));
+        assertTrue(lines.contains("set_verdicts_total{verdict=\"legal\"} 0"));
+        assertTrue(lines.contains("set_verdicts_total{verdict=\"illegal\"} 1"));
+        assertTrue(lines.contains("set_verdicts_total{verdict=\"rejected\"} 0"));
+        assertTrue(lines.contains("# TYPE set_verdicts_total counter"));
+    }
+
+    @Test
+    void scrape_RoundTimeoutsApartFromReshuffles() {
+        metrics.roundTimeouts.add(5);
+        metrics.reshuffles.increment();
+
+        List<String> lines = lines();
+
+        assertTrue(lines.contains("set_round_timeouts_total 5"));
+        assertTrue(lines.contains("set_reshuffles_total 1"));
+    }
+
+    @Test
+    void scrape_ScaledCounter_InSeconds() {
+        metrics.dealerBusyNanos.add(1500000000L);
+
+        assertTrue(lines().contains("set_dealer_busy_seconds_total 1.5"));
+    }
+
+    @Test
+    void scrape_Summary_QuantilesSumAndCount() {
+        for (int i = 0; i < 10; i++)
+            metrics.keyToToken.record(2000000); // 2 ms
+
+        List<String> lines = lines();
+
+        assertTrue(lines.contains("# TYPE set_key_to_token_seconds summary"));
+        assertTrue(lines.contains("set_key_to_token_seconds_sum 0.02"));
+        assertTrue(lines.contains("set_key_to_token_seconds_count 10"));
+        for (String quantile : new String[]{"0.5", "0.9", "0.99"}) {
+            String prefix = "set_key_to_token_seconds{quantile=\"" + quantile + "\"} ";
+            String line = lines.stream().filter(l -> l.startsWith(prefix)).findFirst().orElse(prefix + "none");
+            assertEquals(0.002, Double.parseDouble(line.substring(prefix.length())), 0.002 / 16);
+        }
+    }
+
+    @Test
+    void getAttribute_SameAsCounters() throws AttributeNotFoundException {
+        metrics.legalVerdicts.add(4);
+        metrics.keyPressQueueDepth.record(3);
+
+        assertEquals(4L, metrics.getAttribute("set_verdicts_total_legal"));
+        assertEquals(1L, metrics.getAttribute("set_key_press_queue_depth_count"));
+        assertEquals(3.0, metrics.getAttribute("set_key_press_queue_depth_max"));
+        assertThrows(AttributeNotFoundException.class, () -> metrics.getAttribute("no_such_metric"));
+    }
+
+    @Test
+    void serve_ScrapeOverHttp() throws IOException {
+        metrics.rounds.add(7);
+        HttpServer server = metrics.serve(0);
+        try {
+            URL url = new URL("http://localhost:" + server.getAddress().getPort() + "/metrics");
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            try (InputStream in = connection.getInputStream()) {
+                byte[] buffer = new byte[4096];
+                for (int n; (n = in.read(buffer)) > 0; )
+                    body.write(buffer, 0, n);
+            }
+
+            assertEquals(200, connection.getResponseCode());
+            assertTrue(connection.getContentType().startsWith("text/plain; version=0.0.4"));
+            assertEquals(metrics.scrape(), new String(body.toByteArray(), StandardCharsets.UTF_8));
+        } finally {
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HistogramTest {
+
+    Histogram histogram;
+
+    @BeforeEach
+    void setUp() {
+        histogram = new Histogram();
+    }
+
+    private static void assertWithinBucket(long expected, long actual) {
+        assertTrue(actual >= expected && actual <= expected + expected / 16,
+                "expected about " + expected + " but was " + actual);
+    }
+
+    @Test
+    void percentile_NoValues_Zero() {
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.percentile(50));
+        assertEquals(0, histogram.mean());
+        assertEquals(0, histogram.max());
+    }
+
+    @Test
+    void percentile_SmallValues_Exact() {
+        for (int value = 1; value <= 10; value++)
+            histogram.record(value);
+
+        assertEquals(1, histogram.percentile(0));
+        assertEquals(5, histogram.percentile(50));
+        assertEquals(9, histogram.percentile(90));
+        assertEquals(10, histogram.percentile(100));
+        assertEquals(5.5, histogram.mean());
+    }
+
+    @Test
+    void percentile_LargeValues_WithinBucket() {
+        for (long value = 1; value <= 100000; value++)
+            histogram.record(value * 1000);
+
+        assertWithinBucket(50000000, histogram.percentile(50));
+        assertWithinBucket(90000000, histogram.percentile(90));
+        assertWithinBucket(99000000, histogram.percentile(99));
+        assertEquals(100000000, histogram.percentile(100)); // no more than the largest value
+        assertEquals(100000000, histogram.max());
+        assertEquals(100000, histogram.count());
+    }
+
+    @Test
+    void record_NegativeValue_RecordedAsZero() {
+        histogram.record(-5);
+
+        assertEquals(1, histogram.count());
+        assertEquals(0, histogram.mean());
+        assertEquals(0, histogram.percentile(100));
+    }
+
+    @Test
+    void record_LargestValue() {
+        histogram.record(Long.MAX_VALUE);
+
+        assertEquals(Long.MAX_VALUE, histogram.max());
+        assertEquals(Long.MAX_VALUE, histogram.percentile(50));
+    }
+
+    @Test
+    void add_SameAsRecordingAllValues() {
+        Histogram other = new Histogram(), all = new Histogram();
+        for (long value = 0; value < 5000; value++) {
+            (value % 3 == 0 ? histogram : other).record(value * value);
+            all.record(value * value);
+        }
+
+        histogram.add(other);
+
+        assertEquals(all.count(), histogram.count());
+        assertEquals(all.mean(), histogram.mean());
+        assertEquals(all.max(), histogram.max());
+        for (double percentile : new double[]{0, 10, 50, 90, 99, 99.9, 100})
+            assertEquals(all.percentile(percentile), histogram.percentile(percentile));
+    }
+
+    @Test
+    void add_EmptyHistogram_NoChange() {
+        histogram.record(42);
+
+        histogram.add(new Histogram());
+
+        assertEquals(1, histogram.count());
+        assertEquals(42, histogram.max());
+        assertEquals(42, histogram.percentile(50));
+    }
+
+    @Test
+    void record_Concurrently_NothingLost() throws InterruptedException {
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int value = 0; value < 10000; value++)
+                    histogram.record(value);
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        assertEquals(40000, histogram.count());
+        assertEquals(9999 / 2.0, histogram.mean());
+    }
+
+    @Test
+    void reset_ClearsValues() {
+        histogram.record(7);
+
+        histogram.reset();
+
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.max());
+        assertEquals(0, histogram.percentile(99));
+    }
+
+    @Test
+    void toString_ScaledToUnit() {
+        histogram.record(4096);
+
+        assertEquals("n=1 mean=0.004ms p50=0.004ms p90=0.004ms p99=0.004ms max=0.004ms", histogram.toString());
+        assertEquals("n=1 mean=4.096us p50=4.096us p90=4.096us p99=4.096us max=4.096us",
+                histogram.toString(1e3, "us"));
+    }
+}
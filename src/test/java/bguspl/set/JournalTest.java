@@ -0,0 +1,222 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JournalTest {
+
+    private static final int DEAL_RECORD_BYTES = 8 + 19 + 2 * 4; // header, fixed fields and two values
+
+    @TempDir
+    Path directory;
+
+    private Logger logger;
+    private VirtualClock clock; // the time stands still unless someone sleeps
+
+    @BeforeEach
+    void setUp() {
+        logger = Logger.getLogger("JournalTest");
+        logger.setUseParentHandlers(false);
+        clock = new VirtualClock(1234);
+    }
+
+    @AfterEach
+    void tearDown() {
+        clock.close();
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(".journal")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Writes the records DEAL (i, 2i) for i from 0 to count - 1 to a new run.
+     */
+    private String writeDeals(int count, int segmentBytes) throws IOException {
+        Journal journal = new Journal(logger, clock, directory, segmentBytes);
+        for (int i = 0; i < count; i++)
+            journal.append(Journal.Type.DEAL, i, 2 * i);
+        journal.close();
+        return journal.run();
+    }
+
+    private static void assertDeals(int count, List<Journal.Record> records) {
+        assertEquals(count, records.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, records.get(i).sequence);
+            assertEquals(Journal.Type.DEAL, records.get(i).type);
+            assertEquals(i, records.get(i).value(0));
+            assertEquals(2 * i, records.get(i).value(1));
+        }
+    }
+
+    private static void corrupt(Path segment, int at, int value) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES).putInt(0, value);
+            channel.write(buffer, at);
+        }
+    }
+
+    @Test
+    void append_ReadBack_SameRecords() throws IOException {
+        Journal journal = new Journal(logger, clock, directory, 1 << 16);
+        journal.append(Journal.Type.GAME_END);
+        journal.append(Journal.Type.CLAIM, 3);
+        journal.append(Journal.Type.DEAL, 4, 17);
+        journal.append(Journal.Type.TOKEN, 1, 5, 1);
+        journal.append(Journal.Type.VERDICT, 2, 1, new int[]{7, 8, 9});
+        journal.append(Journal.Type.GAME_END, new int[]{0, 2});
+        journal.close();
+
+        List<Journal.Record> records = Journal.read(directory, journal.run());
+
+        assertEquals(6, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(i, records.get(i).sequence);
+            assertEquals(1234, records.get(i).time);
+        }
+        assertEquals(0, records.get(0).count());
+        assertEquals(Journal.Type.CLAIM, records.get(1).type);
+        assertEquals(3, records.get(1).value(0));
+        assertArrayEquals(new int[]{4, 17}, records.get(2).values(0));
+        assertArrayEquals(new int[]{1, 5, 1}, records.get(3).values(0));
+        assertArrayEquals(new int[]{2, 1, 7, 8, 9}, records.get(4).values(0));
+        assertArrayEquals(new int[]{0, 2}, records.get(5).values(0));
+        assertEquals(journal.run(), Journal.latestRun(directory));
+    }
+
+    @Test
+    void append_MoreThanASegment_RollsToNextSegments() throws IOException {
+        String run = writeDeals(1000, 4096);
+
+        assertTrue(segments().size() > 1);
+        assertDeals(1000, Journal.read(directory, run));
+    }
+
+    @Test
+    void append_Concurrently_NoRecordLost() throws Exception {
+        Journal journal = new Journal(logger, clock, directory, 4096);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int thread = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++)
+                    journal.append(Journal.Type.DEAL, thread, i);
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        journal.close();
+
+        List<Journal.Record> records = Journal.read(directory, journal.run());
+
+        assertEquals(4000, records.size());
+        int[] next = new int[threads.length];
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(i, records.get(i).sequence);
+            assertEquals(next[records.get(i).value(0)]++, records.get(i).value(1)); // each thread's in order
+        }
+    }
+
+    @Test
+    void read_TornRecord_StopsBeforeIt() throws IOException {
+        String run = writeDeals(10, 1 << 16);
+
+        corrupt(segments().get(0), 6 * DEAL_RECORD_BYTES, 0); // the length is written last: a crash before it
+
+        assertDeals(6, Journal.read(directory, run));
+    }
+
+    @Test
+    void read_DamagedRecord_StopsBeforeIt() throws IOException {
+        String run = writeDeals(10, 1 << 16);
+
+        corrupt(segments().get(0), 3 * DEAL_RECORD_BYTES + 8 + 19, 12345); // the first value of record 3
+
+        assertDeals(3, Journal.read(directory, run));
+    }
+
+    @Test
+    void read_TruncatedSegment_StopsAtLastCompleteRecord() throws IOException {
+        String run = writeDeals(10, 1 << 16);
+
+        try (FileChannel channel = FileChannel.open(segments().get(0), StandardOpenOption.WRITE)) {
+            channel.truncate(7 * DEAL_RECORD_BYTES + DEAL_RECORD_BYTES / 2);
+        }
+
+        assertDeals(7, Journal.read(directory, run));
+    }
+
+    @Test
+    void read_TornRecordInFirstSegment_NextSegmentsStillRead() throws IOException {
+        String run = writeDeals(1000, 4096);
+        int perSegment = 4096 / DEAL_RECORD_BYTES;
+
+        corrupt(segments().get(0), (perSegment - 1) * DEAL_RECORD_BYTES, 0); // the last record of the first segment
+
+        List<Journal.Record> records = Journal.read(directory, run);
+        assertEquals(999, records.size());
+        assertFalse(records.stream().anyMatch(record -> record.sequence == perSegment - 1));
+        assertEquals(perSegment, records.get(perSegment - 1).sequence);
+    }
+
+    @Test
+    void tap_GetsRecordsInSequenceOrder() throws InterruptedException {
+        Journal journal = new Journal(logger, clock);
+        List<Journal.Record> tapped = Collections.synchronizedList(new ArrayList<>());
+        journal.tap(tapped::add);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++)
+                    journal.append(Journal.Type.CLAIM, i);
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        journal.drain();
+
+        assertEquals(4000, tapped.size());
+        for (int i = 0; i < tapped.size(); i++)
+            assertEquals(i, tapped.get(i).sequence);
+        journal.close();
+    }
+
+    @Test
+    void append_Disabled_NothingRecorded() {
+        List<Journal.Record> tapped = new ArrayList<>();
+        Journal.DISABLED.tap(tapped::add);
+
+        Journal.DISABLED.append(Journal.Type.CLAIM, 1);
+        Journal.DISABLED.close();
+
+        assertFalse(Journal.DISABLED.enabled());
+        assertEquals(null, Journal.DISABLED.run());
+        assertTrue(tapped.isEmpty());
+    }
+}
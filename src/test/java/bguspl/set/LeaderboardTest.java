@@ -0,0 +1,229 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LeaderboardTest {
+
+    @TempDir
+    Path directory;
+
+    private Logger logger;
+    private Leaderboard leaderboard;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        logger = Logger.getLogger("LeaderboardTest");
+        logger.setUseParentHandlers(false);
+        leaderboard = new Leaderboard(logger, directory);
+    }
+
+    @AfterEach
+    void tearDown() {
+        leaderboard.close();
+    }
+
+    private static String[] players(int count) {
+        String[] players = new String[count];
+        for (int i = 0; i < count; i++)
+            players[i] = "player-" + i;
+        return players;
+    }
+
+    /**
+     * Records random games of 2 to 4 of the players.
+     */
+    private void recordGames(int games, String[] players, long seed) throws IOException {
+        Random random = new Random(seed);
+        for (int game = 0; game < games; game++) {
+            int count = 2 + random.nextInt(3);
+            List<String> chosen = new ArrayList<>();
+            while (chosen.size() < count) {
+                String player = players[random.nextInt(players.length)];
+                if (!chosen.contains(player)) chosen.add(player);
+            }
+            int[] scores = new int[count], penalties = new int[count];
+            for (int i = 0; i < count; i++) {
+                scores[i] = random.nextInt(10);
+                penalties[i] = random.nextInt(3);
+            }
+            leaderboard.record(chosen.toArray(new String[0]), scores, penalties);
+        }
+    }
+
+    /**
+     * @return - the standings of all the players, as text.
+     */
+    private static List<String> standings(Leaderboard leaderboard) {
+        return leaderboard.top(Integer.MAX_VALUE).stream().map(Leaderboard.Standing::toString)
+                .collect(Collectors.toList());
+    }
+
+    private void reopen() throws IOException {
+        leaderboard.close();
+        leaderboard = new Leaderboard(logger, directory);
+    }
+
+    private void deleteSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(path -> path.toString().endsWith(".segment")).collect(Collectors.toList()))
+                Files.delete(file);
+        }
+    }
+
+    @Test
+    void record_TwoPlayers_WinnerRatedHigher() throws IOException {
+        leaderboard.record(new String[]{"a", "b"}, new int[]{5, 2}, new int[]{1, 3});
+
+        assertEquals(Leaderboard.INITIAL_RATING + 16, leaderboard.rating("a"), 1e-9);
+        assertEquals(Leaderboard.INITIAL_RATING - 16, leaderboard.rating("b"), 1e-9);
+        assertEquals(1, leaderboard.rank("a"));
+        assertEquals(2, leaderboard.rank("b"));
+        Leaderboard.Standing a = leaderboard.standing("a");
+        assertEquals(1, a.games);
+        assertEquals(1, a.wins);
+        assertEquals(5, a.points);
+        assertEquals(1, a.penalties);
+        assertEquals(0, leaderboard.standing("b").wins);
+        assertEquals(1, leaderboard.results());
+        assertEquals(2, leaderboard.players());
+    }
+
+    @Test
+    void rank_UnknownPlayer() {
+        assertEquals(0, leaderboard.rank("nobody"));
+        assertNull(leaderboard.standing("nobody"));
+        assertEquals(Leaderboard.INITIAL_RATING, leaderboard.rating("nobody"));
+    }
+
+    @Test
+    void top_OrderedByRating() throws IOException {
+        String[] players = players(200);
+        recordGames(2000, players, 1);
+
+        List<Leaderboard.Standing> all = leaderboard.top(Integer.MAX_VALUE);
+        List<Leaderboard.Standing> top = leaderboard.top(10);
+
+        assertEquals(leaderboard.players(), all.size());
+        for (int i = 0; i < all.size(); i++) {
+            assertEquals(i + 1, all.get(i).rank);
+            assertEquals(i + 1, leaderboard.rank(all.get(i).player));
+            if (i > 0) assertTrue(all.get(i - 1).rating >= all.get(i).rating);
+        }
+        assertEquals(10, top.size());
+        for (int i = 0; i < top.size(); i++)
+            assertEquals(all.get(i).toString(), top.get(i).toString());
+        double highest = 0;
+        for (String player : players)
+            highest = Math.max(highest, leaderboard.rating(player));
+        assertEquals(highest, top.get(0).rating);
+    }
+
+    @Test
+    void reopen_SameStandings() throws IOException {
+        recordGames(300, players(30), 2);
+        List<String> expected = standings(leaderboard);
+
+        reopen();
+
+        assertEquals(expected, standings(leaderboard));
+        assertEquals(300, leaderboard.results());
+    }
+
+    @Test
+    void reopen_ResultsAfterCheckpoint_SameStandings() throws IOException {
+        String[] players = players(30);
+        recordGames(100, players, 3);
+        leaderboard.checkpoint();
+        recordGames(100, players, 4);
+        List<String> expected = standings(leaderboard);
+
+        reopen();
+
+        assertEquals(expected, standings(leaderboard));
+        assertEquals(200, leaderboard.results());
+    }
+
+    @Test
+    void reopen_TornLogRecord_DropsLastResult() throws IOException {
+        String[] players = players(10);
+        recordGames(50, players, 5);
+        List<String> before = standings(leaderboard);
+        leaderboard.record(new String[]{"late", players[0]}, new int[]{9, 0}, new int[]{0, 0});
+        leaderboard.close();
+        deleteSegments(); // as if the process crashed before closing
+        Path log = directory.resolve("results.log");
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5); // the last result was only partly written
+        }
+
+        leaderboard = new Leaderboard(logger, directory);
+
+        assertEquals(before, standings(leaderboard));
+        assertEquals(50, leaderboard.results());
+        assertEquals(0, leaderboard.rank("late"));
+
+        // the damaged end was dropped, so later results are read back after it
+        leaderboard.record(new String[]{"late", players[0]}, new int[]{9, 0}, new int[]{0, 0});
+        List<String> expected = standings(leaderboard);
+        reopen();
+        assertEquals(expected, standings(leaderboard));
+    }
+
+    @Test
+    void reopen_DamagedLogRecord_DropsItAndTheRest() throws IOException {
+        String[] players = players(10);
+        recordGames(20, players, 6);
+        List<String> before = standings(leaderboard);
+        long size = Files.size(directory.resolve("results.log"));
+        recordGames(5, players, 7);
+        leaderboard.close();
+        deleteSegments();
+        try (FileChannel channel = FileChannel.open(directory.resolve("results.log"), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0x7f}), size + 20); // inside the next record's body
+        }
+
+        leaderboard = new Leaderboard(logger, directory);
+
+        assertEquals(before, standings(leaderboard));
+        assertEquals(size, Files.size(directory.resolve("results.log")));
+    }
+
+    @Test
+    void reopen_DamagedSegment_ReadsTheLog() throws IOException {
+        recordGames(100, players(20), 8);
+        List<String> expected = standings(leaderboard);
+        leaderboard.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            Path segment = files.filter(path -> path.toString().endsWith(".segment")).findFirst().orElseThrow(
+                    IllegalStateException::new);
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.wrap(new byte[]{0x7f}), 40);
+            }
+        }
+
+        leaderboard = new Leaderboard(logger, directory);
+
+        assertEquals(expected, standings(leaderboard));
+        assertEquals(100, leaderboard.results());
+    }
+}
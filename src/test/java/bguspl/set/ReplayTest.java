@@ -0,0 +1,127 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReplayTest {
+
+    @TempDir
+    Path directory;
+
+    private Logger logger;
+    private int journals;
+
+    @BeforeEach
+    void setUp() {
+        logger = Logger.getLogger("ReplayTest");
+        logger.setUseParentHandlers(false);
+    }
+
+    /**
+     * A game written to a journal. The script sleeps through the clock to move the time of the records.
+     */
+    private interface Script {
+        void play(Journal journal, Clock clock) throws InterruptedException;
+    }
+
+    /**
+     * Writes a game to a journal of its own, on a virtual clock starting at the start time.
+     *
+     * @return - the records of the game.
+     */
+    private List<Journal.Record> record(long start, Script script) throws IOException, InterruptedException {
+        Path journalDirectory = Files.createDirectories(directory.resolve("journal-" + journals++));
+        VirtualClock clock = new VirtualClock(start);
+        try {
+            Journal journal = new Journal(logger, clock, journalDirectory, 1 << 16);
+            script.play(journal, clock);
+            journal.close();
+            return Journal.read(journalDirectory, journal.run());
+        } finally {
+            clock.close();
+        }
+    }
+
+    /**
+     * A game of 2 players: player 1 claims a legal set after the deals, then the round ends.
+     *
+     * @param card               - the card dealt to slot 2.
+     * @param delay              - the time between the deals and the claim, in milliseconds.
+     * @param secondPlayerClaims - true iff player 2 claims an illegal set right after player 1.
+     */
+    private static Script game(int card, long delay, boolean secondPlayerClaims) {
+        return (journal, clock) -> {
+            journal.append(Journal.Type.GAME_START, new int[]{0, 42, 2, 3, 4});
+            journal.append(Journal.Type.DEAL, 0, 10);
+            journal.append(Journal.Type.DEAL, 1, 20);
+            journal.append(Journal.Type.DEAL, 2, card);
+            clock.sleep(delay);
+            journal.append(Journal.Type.VERDICT, 0, 1, new int[]{10, 20, card});
+            if (secondPlayerClaims) journal.append(Journal.Type.VERDICT, 1, 0, new int[]{10, 20});
+            journal.append(Journal.Type.REMOVE_CARD, 0, 10);
+            clock.sleep(50);
+            journal.append(Journal.Type.ROUND_END, 1, 0);
+            journal.append(Journal.Type.GAME_END, new int[]{0});
+        };
+    }
+
+    @Test
+    void compare_SameGame_NoMismatches() throws IOException, InterruptedException {
+        List<Journal.Record> recorded = record(1000, game(30, 100, true));
+        List<Journal.Record> replayed = record(5000, game(30, 100, true)); // a later start does not matter
+        List<String> mismatches = new ArrayList<>();
+
+        long drift = Replay.compare(recorded, replayed, mismatches);
+
+        assertEquals(new ArrayList<String>(), mismatches);
+        assertEquals(0, drift);
+    }
+
+    @Test
+    void compare_SameGameLater_DriftReported() throws IOException, InterruptedException {
+        List<Journal.Record> recorded = record(1000, game(30, 100, true));
+        List<Journal.Record> replayed = record(1000, game(30, 107, true));
+        List<String> mismatches = new ArrayList<>();
+
+        long drift = Replay.compare(recorded, replayed, mismatches);
+
+        assertEquals(new ArrayList<String>(), mismatches);
+        assertEquals(7, drift);
+    }
+
+    @Test
+    void compare_OtherCardDealt_BoardMismatch() throws IOException, InterruptedException {
+        List<Journal.Record> recorded = record(1000, game(30, 100, true));
+        List<Journal.Record> replayed = record(1000, game(31, 100, true));
+        List<String> mismatches = new ArrayList<>();
+
+        Replay.compare(recorded, replayed, mismatches);
+
+        assertTrue(mismatches.get(0).startsWith("board change 3: expected"), mismatches.get(0));
+        assertTrue(mismatches.get(1).startsWith("player 1 verdict 0: expected"), mismatches.get(1));
+        assertEquals(2, mismatches.size()); // the board is compared only up to its first mismatch
+    }
+
+    @Test
+    void compare_VerdictMissing_PlayerMismatch() throws IOException, InterruptedException {
+        List<Journal.Record> recorded = record(1000, game(30, 100, true));
+        List<Journal.Record> replayed = record(1000, game(30, 100, false));
+        List<String> mismatches = new ArrayList<>();
+
+        Replay.compare(recorded, replayed, mismatches);
+
+        assertEquals(1, mismatches.size());
+        assertEquals("player 2: expected 1 verdicts, was 0", mismatches.get(0));
+    }
+}
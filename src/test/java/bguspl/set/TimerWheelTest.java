@@ -0,0 +1,195 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimerWheelTest {
+
+    private static final long TICK_MILLIS = 5;
+    private static final int WHEEL_SIZE = 4; // a revolution of 20 ms, so longer delays wrap around the wheel
+
+    TimerWheel wheel;
+    private final List<LogRecord> logged = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void setUp() {
+        Logger logger = Logger.getLogger("TimerWheelTest");
+        logger.setUseParentHandlers(false);
+        for (Handler handler : logger.getHandlers())
+            logger.removeHandler(handler);
+        logger.addHandler(new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                logged.add(record);
+            }
+
+            @Override
+            public void flush() {}
+
+            @Override
+            public void close() {}
+        });
+        wheel = new TimerWheel(logger, new SystemClock(), TICK_MILLIS, WHEEL_SIZE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        wheel.close();
+    }
+
+    private static void await(CountDownLatch latch) throws InterruptedException {
+        assertTrue(latch.await(5, TimeUnit.SECONDS), "timed out waiting for the timer");
+    }
+
+    @Test
+    void schedule_RunsAfterDelay() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        long start = System.nanoTime();
+
+        wheel.schedule(30, fired::countDown);
+
+        await(fired);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(30 - TICK_MILLIS));
+    }
+
+    @Test
+    void schedule_RunsInOrderOfDelay() throws InterruptedException {
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch fired = new CountDownLatch(3);
+
+        for (int delay : new int[]{60, 15, 35})
+            wheel.schedule(delay, () -> {
+                order.add(delay);
+                fired.countDown();
+            });
+
+        await(fired);
+        assertEquals(Arrays.asList(15, 35, 60), order);
+    }
+
+    @Test
+    void schedule_DelayOfManyRevolutions_WrapsAround() throws InterruptedException {
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch fired = new CountDownLatch(2);
+        long start = System.nanoTime();
+
+        // 85 ms is 4 revolutions and a tick, so it shares a bucket with 5 ms and must wait for its rounds
+        for (int delay : new int[]{85, 5})
+            wheel.schedule(delay, () -> {
+                order.add(delay);
+                fired.countDown();
+            });
+
+        await(fired);
+        assertEquals(Arrays.asList(5, 85), order);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(85 - TICK_MILLIS));
+    }
+
+    @Test
+    void schedule_NoDelay_RunsAtNextTick() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+
+        wheel.schedule(0, fired::countDown);
+
+        await(fired);
+    }
+
+    @Test
+    void cancel_BeforeExpiry_NeverRuns() throws InterruptedException {
+        CountDownLatch cancelled = new CountDownLatch(1), later = new CountDownLatch(1);
+        TimerWheel.Timeout timeout = wheel.schedule(20, cancelled::countDown);
+        wheel.schedule(50, later::countDown);
+
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+
+        await(later);
+        assertEquals(1, cancelled.getCount());
+    }
+
+    @Test
+    void cancel_AfterExpiry_False() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        TimerWheel.Timeout timeout = wheel.schedule(10, fired::countDown);
+
+        await(fired);
+
+        assertFalse(timeout.cancel());
+    }
+
+    @Test
+    void cancel_LastTimeout_WheelStillRunsNewTimeouts() throws InterruptedException {
+        wheel.schedule(1000, () -> {}).cancel();
+        CountDownLatch fired = new CountDownLatch(1);
+
+        wheel.schedule(10, fired::countDown);
+
+        await(fired);
+    }
+
+    @Test
+    void schedule_TaskFails_LoggedAndOtherTasksRun() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        wheel.schedule(10, () -> {
+            throw new IllegalStateException("test");
+        });
+        wheel.schedule(30, fired::countDown);
+
+        await(fired);
+        assertEquals(1, logged.size());
+        assertEquals(Level.SEVERE, logged.get(0).getLevel());
+        assertEquals("timer task failed", logged.get(0).getMessage());
+        assertTrue(logged.get(0).getThrown() instanceof IllegalStateException);
+    }
+
+    @Test
+    void schedule_TaskFailsWithError_LoggedAndOtherTasksRun() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        wheel.schedule(10, () -> {
+            throw new AssertionError("test");
+        });
+        wheel.schedule(30, fired::countDown);
+
+        await(fired);
+        assertEquals(1, logged.size());
+        assertTrue(logged.get(0).getThrown() instanceof AssertionError);
+    }
+
+    @Test
+    void schedule_AfterClose_Throws() {
+        wheel.close();
+
+        assertThrows(IllegalStateException.class, () -> wheel.schedule(10, () -> {}));
+    }
+
+    @Test
+    void reopen_ClosedWheel_DropsOldTimeoutsAndRunsNewOnes() throws InterruptedException {
+        CountDownLatch dropped = new CountDownLatch(1), fired = new CountDownLatch(1);
+        TimerWheel.Timeout timeout = wheel.schedule(20, dropped::countDown);
+        wheel.close();
+
+        wheel.reopen();
+        wheel.schedule(40, fired::countDown);
+
+        await(fired);
+        assertEquals(1, dropped.getCount());
+        assertFalse(timeout.cancel());
+    }
+}
@@ -0,0 +1,120 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenLabelsTest {
+
+    private static String[] names(int players) {
+        String[] names = new String[players];
+        for (int i = 0; i < players; i++)
+            names[i] = "Player " + (i + 1);
+        return names;
+    }
+
+    /**
+     * The label as the window used to build it before the labels were cached.
+     */
+    private static String concatenation(String[] names, boolean[][] tokens, int slot) {
+        String text = "";
+        for (int player = 0; player < names.length; player++) {
+            if (tokens[player][slot])
+                text = text.concat(names[player] + ", ");
+        }
+        if (text.length() < 2)
+            return "";
+        return text.substring(0, text.length() - 2);
+    }
+
+    /**
+     * Places and removes random tokens and compares every label to the concatenation.
+     */
+    private static void assertSameAsConcatenation(int players, int slots, int steps) {
+        String[] names = names(players);
+        TokenLabels labels = new TokenLabels(names, slots);
+        boolean[][] tokens = new boolean[players][slots];
+        Random random = new Random(players);
+        for (int step = 0; step < steps; step++) {
+            int slot = random.nextInt(slots);
+            if (random.nextInt(20) == 0) {
+                boolean any = false;
+                for (int player = 0; player < players; player++) {
+                    any |= tokens[player][slot];
+                    tokens[player][slot] = false;
+                }
+                assertEquals(any, labels.clear(slot));
+            } else {
+                int player = random.nextInt(players);
+                boolean placed = random.nextBoolean();
+                assertEquals(tokens[player][slot] != placed, labels.set(slot, player, placed));
+                tokens[player][slot] = placed;
+            }
+            assertEquals(concatenation(names, tokens, slot), labels.label(slot), "step " + step);
+        }
+    }
+
+    @Test
+    void label_NoTokens_Empty() {
+        TokenLabels labels = new TokenLabels(names(2), 12);
+
+        assertEquals("", labels.label(0));
+    }
+
+    @Test
+    void label_PlayersInOrder() {
+        TokenLabels labels = new TokenLabels(names(4), 12);
+        labels.set(3, 2, true);
+        labels.set(3, 0, true);
+
+        assertEquals("Player 1, Player 3", labels.label(3));
+        assertTrue(labels.has(3, 2));
+        assertFalse(labels.has(3, 1));
+        assertEquals("", labels.label(4));
+    }
+
+    @Test
+    void set_SameTokenTwice_NoChange() {
+        TokenLabels labels = new TokenLabels(names(2), 12);
+
+        assertTrue(labels.set(5, 1, true));
+        assertFalse(labels.set(5, 1, true));
+        assertTrue(labels.set(5, 1, false));
+        assertFalse(labels.set(5, 1, false));
+    }
+
+    @Test
+    void label_FewPlayers_SameAsConcatenation() {
+        assertSameAsConcatenation(4, 12, 5000);
+    }
+
+    @Test
+    void label_LastPlayerOfCachedMask_SameAsConcatenation() {
+        assertSameAsConcatenation(64, 12, 20000);
+    }
+
+    @Test
+    void label_MorePlayersThanCachedMask_SameAsConcatenation() {
+        assertSameAsConcatenation(130, 12, 20000);
+    }
+
+    @Test
+    void label_MoreCombinationsThanCacheHolds_SameAsConcatenation() {
+        int players = 13; // 8192 combinations, twice what the cache holds
+        String[] names = names(players);
+        TokenLabels labels = new TokenLabels(names, 1);
+        boolean[][] tokens = new boolean[players][1];
+        for (int round = 0; round < 2; round++)
+            for (int mask = 0; mask < 1 << players; mask++) {
+                for (int player = 0; player < players; player++) {
+                    tokens[player][0] = (mask & 1 << player) != 0;
+                    labels.set(0, player, tokens[player][0]);
+                }
+                assertEquals(concatenation(names, tokens, 0), labels.label(0));
+            }
+    }
+}
@@ -0,0 +1,74 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TournamentRunnerTest {
+
+    private static Properties seededTournament() {
+        Properties properties = new Properties();
+        properties.put("FeatureSize", "3");
+        properties.put("FeatureCount", "3");
+        properties.put("ComputerPlayers", "4");
+        properties.put("VirtualTime", "True");
+        properties.put("RandomSeed", "42");
+        properties.put("TurnTimeoutSeconds", "60");
+        properties.put("PointFreezeSeconds", "1");
+        properties.put("PenaltyFreezeSeconds", "3");
+        properties.put("TableDelaySeconds", "0.1");
+        properties.put("ComputerDelaySeconds", "0.05");
+        return properties;
+    }
+
+    private static TournamentRunner runner() {
+        Logger logger = Logger.getLogger("TournamentRunnerTest");
+        logger.setUseParentHandlers(false);
+        return new TournamentRunner(logger, seededTournament());
+    }
+
+    private static List<TournamentRunner.GameResult> play(int threads) throws Exception {
+        return runner().run(12, threads);
+    }
+
+    private static void assertSameGames(List<TournamentRunner.GameResult> expected,
+                                        List<TournamentRunner.GameResult> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            TournamentRunner.GameResult e = expected.get(i), a = actual.get(i);
+            assertEquals(e.seed, a.seed);
+            assertEquals(e.simulatedMillis, a.simulatedMillis, "game " + i);
+            assertEquals(e.sets, a.sets, "game " + i);
+            assertEquals(e.penalties, a.penalties, "game " + i);
+            assertEquals(e.rounds, a.rounds, "game " + i);
+            assertEquals(e.timeouts, a.timeouts, "game " + i);
+            assertEquals(e.reshuffles, a.reshuffles, "game " + i);
+            assertArrayEquals(e.winners, a.winners, "game " + i);
+        }
+    }
+
+    @Test
+    void run_SeededGamesInParallel_SameResults() throws Exception {
+        List<TournamentRunner.GameResult> first = play(8);
+        List<TournamentRunner.GameResult> second = play(8);
+
+        assertTrue(first.stream().allMatch(r -> r.sets > 0));
+        assertSameGames(first, second);
+        assertSameGames(play(1), first); // and the same as when the games do not compete for the CPU
+    }
+
+    @Test
+    void runGame_ThreadNameRestored() {
+        String name = Thread.currentThread().getName();
+
+        runner().runGame(0);
+
+        assertEquals(name, Thread.currentThread().getName());
+    }
+}
@@ -0,0 +1,242 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VirtualClockTest {
+
+    VirtualClock clock;
+    private final List<String> woken = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void setUp() {
+        clock = new VirtualClock();
+    }
+
+    @AfterEach
+    void tearDown() {
+        clock.close();
+    }
+
+    /**
+     * Starts a game thread that sleeps through the clock and then records its name and the time it was woken up at.
+     *
+     * @param order - the order the thread registers with.
+     */
+    private Thread sleeper(String name, int order, long millis) throws InterruptedException {
+        CountDownLatch registered = new CountDownLatch(1);
+        Thread thread = new Thread(() -> {
+            clock.register(order);
+            registered.countDown();
+            try {
+                clock.sleep(millis);
+                woken.add(Thread.currentThread().getName() + "@" + clock.currentTimeMillis());
+            } catch (InterruptedException ignored) {
+            } finally {
+                clock.unregister();
+            }
+        }, name);
+        thread.start();
+        registered.await();
+        return thread;
+    }
+
+    /**
+     * Starts the sleepers while the time stands still (this thread runs, as far as the clock knows), and lets the time
+     * go once all of them are asleep.
+     */
+    private Thread[] sleepers(String[] names, int[] orders, long[] millis) throws InterruptedException {
+        clock.register(0);
+        Thread[] threads = new Thread[names.length];
+        for (int i = 0; i < names.length; i++)
+            threads[i] = sleeper(names[i], orders[i], millis[i]);
+        for (Thread thread : threads)
+            awaitWaiting(thread);
+        clock.unregister();
+        return threads;
+    }
+
+    private static void join(Thread thread) throws InterruptedException {
+        thread.join(5000);
+        assertFalse(thread.isAlive(), thread.getName() + " was not woken up");
+    }
+
+    @Test
+    void sleep_NoRunningThreads_TimeJumpsToDeadline() throws InterruptedException {
+        long start = System.nanoTime();
+
+        clock.sleep(60000);
+
+        assertEquals(60000, clock.currentTimeMillis());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+    }
+
+    @Test
+    void currentTimeMillis_StartsAtStartTime() throws InterruptedException {
+        VirtualClock started = new VirtualClock(1000);
+        try {
+            started.sleep(500);
+
+            assertEquals(1500, started.currentTimeMillis());
+        } finally {
+            started.close();
+        }
+    }
+
+    @Test
+    void sleep_ManyThreads_WokenAtTheirDeadlines() throws InterruptedException {
+        for (Thread thread : sleepers(new String[]{"late", "early"}, new int[]{0, 1}, new long[]{300, 100}))
+            join(thread);
+
+        assertEquals(2, woken.size());
+        assertEquals("early@100", woken.get(0));
+        assertEquals("late@300", woken.get(1));
+    }
+
+    @Test
+    void sleep_RegisteredThreadRunning_TimeStandsStill() throws InterruptedException {
+        CountDownLatch registered = new CountDownLatch(1), release = new CountDownLatch(1);
+        Thread busy = new Thread(() -> {
+            clock.register(0);
+            registered.countDown();
+            try {
+                release.await(); // running, as far as the clock knows
+            } catch (InterruptedException ignored) {}
+            clock.unregister();
+        }, "busy");
+        busy.start();
+        registered.await();
+
+        Thread sleeper = sleeper("sleeper", 1, 100);
+        sleeper.join(200);
+
+        assertTrue(sleeper.isAlive());
+        assertEquals(0, clock.currentTimeMillis());
+
+        release.countDown();
+        join(sleeper);
+        join(busy);
+        assertEquals(100, clock.currentTimeMillis());
+    }
+
+    @Test
+    void await_Timeout_TimeJumpsToDeadline() throws InterruptedException {
+        Object monitor = new Object();
+
+        synchronized (monitor) {
+            clock.await(monitor, 500);
+        }
+
+        assertEquals(500, clock.currentTimeMillis());
+    }
+
+    @Test
+    void signal_WakesWaiterWithoutAdvancingTime() throws InterruptedException {
+        Object monitor = new Object();
+        Thread waiter = new Thread(() -> {
+            synchronized (monitor) {
+                try {
+                    clock.await(monitor, 0);
+                } catch (InterruptedException ignored) {}
+            }
+        }, "waiter");
+        waiter.start();
+        awaitWaiting(waiter);
+
+        synchronized (monitor) {
+            clock.signal(monitor);
+        }
+
+        join(waiter);
+        assertEquals(0, clock.currentTimeMillis());
+    }
+
+    @Test
+    void sleep_SameDeadline_WokenOneAtATimeInRegistrationOrder() throws InterruptedException {
+        String[] names = {"player-2", "dealer", "computer-1", "player-1"};
+        int[] orders = {Clock.PLAYER_ORDER + 2, Clock.DEALER_ORDER, Clock.COMPUTER_ORDER + 1, Clock.PLAYER_ORDER + 1};
+
+        for (Thread thread : sleepers(names, orders, new long[]{100, 100, 100, 100}))
+            join(thread);
+
+        assertEquals(Arrays.asList("computer-1@100", "dealer@100", "player-1@100", "player-2@100"), woken);
+    }
+
+    @Test
+    void sleep_SameDeadline_OrderNotByName() throws InterruptedException {
+        for (Thread thread : sleepers(new String[]{"a", "b", "c"}, new int[]{2, 1, 0}, new long[]{100, 100, 100}))
+            join(thread);
+
+        assertEquals(Arrays.asList("c@100", "b@100", "a@100"), woken);
+    }
+
+    @Test
+    void sleep_SameDeadlineAfterTimeJump_SameOrderEveryTime() throws InterruptedException {
+        String[] names = {"b", "c", "a"};
+
+        for (int run = 0; run < 20; run++) {
+            woken.clear();
+            for (Thread thread : sleepers(names, new int[]{1, 2, 0}, new long[]{50, 50, 50}))
+                join(thread);
+
+            assertEquals(Arrays.asList("a@" + 50 * (run + 1), "b@" + 50 * (run + 1), "c@" + 50 * (run + 1)), woken);
+        }
+    }
+
+    @Test
+    void signal_ManyWaiters_FirstByOrderWoken() throws InterruptedException {
+        Object monitor = new Object();
+        Thread[] waiters = new Thread[3];
+        String[] names = {"computer-3", "computer-1", "computer-2"};
+        int[] orders = {Clock.COMPUTER_ORDER + 3, Clock.COMPUTER_ORDER + 1, Clock.COMPUTER_ORDER + 2};
+        for (int i = 0; i < waiters.length; i++) {
+            int order = orders[i];
+            waiters[i] = new Thread(() -> {
+                clock.register(order);
+                synchronized (monitor) {
+                    try {
+                        clock.await(monitor, 0);
+                        woken.add(Thread.currentThread().getName());
+                    } catch (InterruptedException ignored) {
+                    } finally {
+                        clock.unregister();
+                    }
+                }
+            }, names[i]);
+            waiters[i].start();
+            awaitWaiting(waiters[i]);
+        }
+
+        for (int i = 1; i <= waiters.length; i++) {
+            synchronized (monitor) {
+                clock.signal(monitor);
+            }
+            long end = System.currentTimeMillis() + 5000;
+            while (woken.size() < i && System.currentTimeMillis() < end)
+                Thread.sleep(1);
+        }
+
+        for (Thread waiter : waiters)
+            join(waiter);
+        assertEquals(Arrays.asList("computer-1", "computer-2", "computer-3"), woken);
+    }
+
+    private static void awaitWaiting(Thread thread) throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000;
+        while (thread.getState() != Thread.State.WAITING && System.currentTimeMillis() < end)
+            Thread.sleep(1);
+        assertEquals(Thread.State.WAITING, thread.getState());
+    }
+}
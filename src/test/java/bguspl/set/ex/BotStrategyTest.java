@@ -0,0 +1,234 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UserInterfaceNoop;
+import bguspl.set.UtilImpl;
+import bguspl.set.VirtualClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BotStrategyTest {
+
+    private Env env;
+    private Table table;
+    private Player player;
+    private final Set<Integer> tokens = new HashSet<>();
+
+    @BeforeEach
+    void setUp() {
+        Logger logger = Logger.getLogger("BotStrategyTest");
+        logger.setUseParentHandlers(false);
+        Properties properties = new Properties();
+        properties.put("LogLevel", "OFF");
+        properties.put("ComputerDelaySeconds", "0.1");
+        properties.put("ComputerMaxDelaySeconds", "0.3");
+        Config config = new Config(logger, properties);
+        env = new Env(logger, config, new UserInterfaceNoop(), new UtilImpl(config));
+        table = new Table(env, new Integer[config.tableSize], new Integer[config.deckSize]);
+        player = mock(Player.class);
+        when(player.hasToken(anyInt())).thenAnswer(invocation -> tokens.contains(invocation.<Integer>getArgument(0)));
+    }
+
+    private void place(int card, int slot) {
+        table.slotToCard[slot] = card;
+        table.cardToSlot[card] = slot;
+    }
+
+    private void remove(int slot) {
+        table.cardToSlot[table.slotToCard[slot]] = null;
+        table.slotToCard[slot] = null;
+    }
+
+    /**
+     * Places a legal set on the given slots.
+     *
+     * @return - the cards of the set.
+     */
+    private int[] placeSet(int... slots) {
+        int[] set = env.util.findSets(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8), 1).get(0);
+        for (int i = 0; i < set.length; i++)
+            place(set[i], slots[i]);
+        return set;
+    }
+
+    /**
+     * @return - the slots the strategy presses until it has nothing to press, as if each press placed or removed a
+     *           token.
+     */
+    private List<Integer> playOut(BotStrategy strategy) {
+        List<Integer> pressed = new ArrayList<>();
+        for (int slot = strategy.nextKeyPress(); slot >= 0 && pressed.size() < 10; slot = strategy.nextKeyPress()) {
+            pressed.add(slot);
+            if (!tokens.remove(slot)) tokens.add(slot);
+        }
+        return pressed;
+    }
+
+    @Test
+    void random_PressesOnlyCardsOnTheTable() {
+        BotStrategy strategy = new RandomStrategy(env, table, player, new SplittableRandom(1));
+        assertEquals(-1, strategy.nextKeyPress());
+
+        place(10, 2);
+        place(20, 5);
+        place(30, 7);
+
+        Set<Integer> pressed = new HashSet<>();
+        for (int i = 0; i < 100; i++)
+            pressed.add(strategy.nextKeyPress());
+        assertEquals(new HashSet<>(Arrays.asList(2, 5, 7)), pressed);
+    }
+
+    @Test
+    void reactionTime_WithinTheConfiguredRange() {
+        BotStrategy strategy = new RandomStrategy(env, table, player, new SplittableRandom(1));
+
+        Set<Long> times = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            long time = strategy.reactionTime();
+            assertTrue(time >= 100 && time <= 300, "reaction time " + time);
+            times.add(time);
+        }
+        assertTrue(times.size() > 1);
+    }
+
+    @Test
+    void solver_MarksTheSetAndStops() {
+        placeSet(1, 4, 9);
+        place(80, 11);
+        BotStrategy strategy = new SolverStrategy(env, table, player, new SplittableRandom(1));
+
+        List<Integer> pressed = playOut(strategy);
+
+        assertEquals(new HashSet<>(Arrays.asList(1, 4, 9)), new HashSet<>(pressed));
+        assertEquals(3, pressed.size());
+        assertEquals(-1, strategy.nextKeyPress()); // waiting for the dealer
+    }
+
+    @Test
+    void solver_RemovesOtherTokensFirst() {
+        placeSet(1, 4, 9);
+        place(80, 11);
+        tokens.add(11);
+        tokens.add(4);
+        BotStrategy strategy = new SolverStrategy(env, table, player, new SplittableRandom(1));
+
+        assertEquals(11, strategy.nextKeyPress());
+        tokens.remove(11);
+        assertEquals(new HashSet<>(Arrays.asList(1, 9)), new HashSet<>(playOut(strategy)));
+    }
+
+    @Test
+    void solver_NoSetOnTheTable_NothingToPress() {
+        int[] set = placeSet(1, 4, 9);
+        remove(9);
+        BotStrategy strategy = new SolverStrategy(env, table, player, new SplittableRandom(1));
+
+        assertEquals(-1, strategy.nextKeyPress());
+
+        place(set[2], 9); // the set is back
+        assertFalse(playOut(strategy).isEmpty());
+    }
+
+    @Test
+    void solver_CardOfThePlanLeaves_PlansAgain() {
+        placeSet(1, 4, 9);
+        BotStrategy strategy = new SolverStrategy(env, table, player, new SplittableRandom(1));
+        int first = strategy.nextKeyPress();
+        tokens.add(first);
+
+        remove(first); // the card under the token is gone
+        tokens.remove(first);
+
+        assertEquals(-1, strategy.nextKeyPress());
+    }
+
+    @Test
+    void noisy_FullSkill_PlaysLikeTheSolver() {
+        placeSet(1, 4, 9);
+        place(80, 11);
+        BotStrategy strategy = new NoisySolverStrategy(env, table, player, new SplittableRandom(1), 1);
+
+        assertEquals(new HashSet<>(Arrays.asList(1, 4, 9)), new HashSet<>(playOut(strategy)));
+    }
+
+    @Test
+    void noisy_NoSkill_PressesRandomCards() {
+        placeSet(1, 4, 9);
+        place(80, 11);
+        BotStrategy strategy = new NoisySolverStrategy(env, table, player, new SplittableRandom(1), 0);
+
+        Set<Integer> pressed = new HashSet<>();
+        for (int i = 0; i < 100; i++)
+            pressed.add(strategy.nextKeyPress());
+        assertEquals(new HashSet<>(Arrays.asList(1, 4, 9, 11)), pressed);
+    }
+
+    @Test
+    void scripted_PressesEachKeyAtItsTime() throws InterruptedException {
+        VirtualClock clock = new VirtualClock(1000);
+        try {
+            ScriptedStrategy strategy = new ScriptedStrategy(clock, new long[]{100, 250}, new int[]{3, 7});
+            strategy.startGame(50, 1000); // the replayed game starts 950 ms after the recorded one
+
+            assertEquals(-1, strategy.nextKeyPress());
+            assertEquals(50, strategy.reactionTime());
+            clock.sleep(50);
+            assertEquals(3, strategy.nextKeyPress());
+            assertEquals(150, strategy.reactionTime());
+            clock.sleep(200); // late
+            assertEquals(0, strategy.reactionTime());
+            assertEquals(7, strategy.nextKeyPress());
+
+            assertEquals(-1, strategy.nextKeyPress());
+            assertTrue(strategy.reactionTime() > 1000000);
+            assertEquals(0, strategy.remaining());
+        } finally {
+            clock.close();
+        }
+    }
+
+    @Test
+    void scripted_KeysOfAnEarlierGame_Skipped() {
+        VirtualClock clock = new VirtualClock();
+        try {
+            ScriptedStrategy strategy = new ScriptedStrategy(clock, new long[]{10, 20, 100}, new int[]{1, 2, 3});
+
+            strategy.startGame(100, 0);
+
+            assertEquals(1, strategy.remaining());
+            assertEquals(3, strategy.nextKeyPress());
+        } finally {
+            clock.close();
+        }
+    }
+
+    @Test
+    void create_PicksTheConfiguredStrategy() {
+        Properties properties = new Properties();
+        properties.put("LogLevel", "OFF");
+        properties.put("ComputerStrategy", "noisy");
+        Logger logger = Logger.getLogger("BotStrategyTest");
+        Env noisy = new Env(logger, new Config(logger, properties), env.ui, env.util);
+
+        assertTrue(BotStrategy.create(noisy, table, player, new SplittableRandom(1)) instanceof NoisySolverStrategy);
+        assertEquals(RandomStrategy.class, BotStrategy.create(env, table, player, new SplittableRandom(1)).getClass());
+    }
+}
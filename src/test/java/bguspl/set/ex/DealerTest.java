@@ -1,5 +1,6 @@
 package bguspl.set.ex;
 
+import bguspl.set.Clock;
 import bguspl.set.Config;
 import bguspl.set.Env;
 import bguspl.set.UserInterface;
@@ -95,6 +96,8 @@ public class DealerTest {
         @Override
         public void setCountdown(long millies, boolean warn) {}
         @Override
+        public void setCountdownDeadline(long deadline, Clock clock) {}
+        @Override
         public void setElapsed(long millies) {}
         @Override
         public void setScore(int player, int score) {}
@@ -110,6 +113,8 @@ public class DealerTest {
         public void removeToken(int player, int slot) {}
         @Override
         public void announceWinner(int[] players) {}
+        @Override
+        public void reset() {}
     };
 
     static class MockUtil implements Util {
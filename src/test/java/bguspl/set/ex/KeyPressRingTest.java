@@ -0,0 +1,131 @@
+package bguspl.set.ex;
+
+import bguspl.set.SystemClock;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyPressRingTest {
+
+    private static KeyPressRing ring(int capacity, KeyPressRing.OverflowPolicy policy) {
+        return new KeyPressRing(new SystemClock(), capacity, policy);
+    }
+
+    @Test
+    void poll_PressesInOrder() {
+        KeyPressRing ring = ring(3, KeyPressRing.OverflowPolicy.DROP_NEWEST);
+        assertTrue(ring.offer(4, 100));
+        assertTrue(ring.offer(7, 200));
+
+        assertEquals(2, ring.size());
+        assertEquals(4, ring.poll());
+        assertEquals(100, ring.lastStamp());
+        assertEquals(7, ring.poll());
+        assertEquals(200, ring.lastStamp());
+        assertEquals(-1, ring.poll());
+        assertEquals(0, ring.size());
+    }
+
+    @Test
+    void offer_SameSlotPending_BothPressesCancelled() {
+        KeyPressRing ring = ring(3, KeyPressRing.OverflowPolicy.DROP_NEWEST);
+        ring.offer(1, 0);
+        ring.offer(2, 0);
+
+        assertFalse(ring.offer(1, 0));
+
+        assertEquals(1, ring.size());
+        assertEquals(2, ring.coalesced());
+        assertEquals(2, ring.poll());
+        assertEquals(-1, ring.poll());
+    }
+
+    @Test
+    void offer_SameSlotAlreadyTaken_NotCancelled() {
+        KeyPressRing ring = ring(3, KeyPressRing.OverflowPolicy.DROP_NEWEST);
+        ring.offer(1, 0);
+        ring.poll();
+
+        assertTrue(ring.offer(1, 0));
+
+        assertEquals(0, ring.coalesced());
+        assertEquals(1, ring.poll());
+    }
+
+    @Test
+    void offer_FullDropNewest_NewPressDropped() {
+        KeyPressRing ring = ring(2, KeyPressRing.OverflowPolicy.DROP_NEWEST);
+        ring.offer(1, 0);
+        ring.offer(2, 0);
+
+        assertFalse(ring.offer(3, 0));
+
+        assertEquals(1, ring.dropped());
+        assertEquals(1, ring.poll());
+        assertEquals(2, ring.poll());
+        assertEquals(-1, ring.poll());
+    }
+
+    @Test
+    void offer_FullDropOldest_OldestPressDropped() {
+        KeyPressRing ring = ring(2, KeyPressRing.OverflowPolicy.DROP_OLDEST);
+        ring.offer(1, 0);
+        ring.offer(2, 0);
+
+        assertTrue(ring.offer(3, 0));
+
+        assertEquals(1, ring.dropped());
+        assertEquals(2, ring.size());
+        assertEquals(2, ring.poll());
+        assertEquals(3, ring.poll());
+        assertEquals(-1, ring.poll());
+    }
+
+    @Test
+    void offer_RoomTakenByCancelledPresses_Dropped() {
+        KeyPressRing ring = ring(1, KeyPressRing.OverflowPolicy.DROP_NEWEST);
+        ring.offer(1, 0);
+        ring.offer(1, 0);
+        ring.offer(2, 0);
+        ring.offer(2, 0); // the consumer did not skip the cancelled presses yet
+
+        assertFalse(ring.offer(3, 0));
+
+        assertEquals(1, ring.dropped());
+        assertEquals(-1, ring.poll()); // skips them
+        assertTrue(ring.offer(3, 0));
+        assertEquals(3, ring.poll());
+    }
+
+    @Test
+    void take_WaitsForPress() throws InterruptedException {
+        KeyPressRing ring = ring(3, KeyPressRing.OverflowPolicy.DROP_NEWEST);
+        Thread producer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignored) {}
+            ring.offer(5, 0);
+        });
+        producer.start();
+
+        assertEquals(5, ring.take());
+        producer.join();
+    }
+
+    @Test
+    void clear_RemovesPressesAndCounters() {
+        KeyPressRing ring = ring(1, KeyPressRing.OverflowPolicy.DROP_NEWEST);
+        ring.offer(1, 0);
+        ring.offer(2, 0);
+        ring.offer(1, 0);
+
+        ring.clear();
+
+        assertEquals(0, ring.size());
+        assertEquals(0, ring.dropped());
+        assertEquals(0, ring.coalesced());
+        assertEquals(-1, ring.poll());
+    }
+}
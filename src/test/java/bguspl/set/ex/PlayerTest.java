@@ -10,6 +10,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import java.util.Collections;
 import java.util.logging.Logger;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -78,6 +79,7 @@ class PlayerTest {
         boolean result = player.operateSlot(slot);
 
         assertTrue(player.tokenList.contains(slot));
+        assertTrue(player.hasToken(slot));
         assertTrue(result);
 
         verify(table).placeToken(player.id, slot);
@@ -94,4 +96,19 @@ class PlayerTest {
 
         verify(table).removeToken(player.id, slot);
     }
+
+    @Test
+    void hasToken_TokensRemovedByDealer_False() {
+        when(table.slotToCard(anyInt())).thenReturn(0);
+        player.operateSlot(1);
+        player.operateSlot(5);
+
+        player.removeTokens(Collections.singletonList(1));
+
+        assertFalse(player.hasToken(1));
+        assertTrue(player.hasToken(5));
+        player.clearTokens();
+        assertFalse(player.hasToken(5));
+        assertTrue(player.tokenList.isEmpty());
+    }
 }
@@ -0,0 +1,142 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    private static Snapshot snapshot() {
+        int[] table = {5, -1, 17, 80, 3, 41, -1, 12, 9, 66, 2, 30};
+        int[] deck = {0, 1, 4, 6, 7, 8};
+        int[] scores = {3, 0, 7};
+        int[] penalties = {1, 4, 0};
+        long[] freezes = {0, 2500, 1000};
+        int[][] tokens = {{0, 2}, {}, {3, 4, 5}};
+        return new Snapshot(81, 9, 6, 2, 42500, table, deck, scores, penalties, freezes, tokens, new int[]{2});
+    }
+
+    private static void assertSameSnapshot(Snapshot expected, Snapshot actual) {
+        assertEquals(expected.deckSize, actual.deckSize);
+        assertEquals(expected.rounds, actual.rounds);
+        assertEquals(expected.timeouts, actual.timeouts);
+        assertEquals(expected.reshuffles, actual.reshuffles);
+        assertEquals(expected.remainingMillis, actual.remainingMillis);
+        assertArrayEquals(expected.table, actual.table);
+        assertArrayEquals(expected.deck, actual.deck);
+        assertArrayEquals(expected.scores, actual.scores);
+        assertArrayEquals(expected.penalties, actual.penalties);
+        assertArrayEquals(expected.freezeMillis, actual.freezeMillis);
+        assertEquals(expected.tokens.length, actual.tokens.length);
+        for (int i = 0; i < expected.tokens.length; i++)
+            assertArrayEquals(expected.tokens[i], actual.tokens[i]);
+        assertArrayEquals(expected.claims, actual.claims);
+    }
+
+    private static ByteBuffer encode(Snapshot snapshot) {
+        ByteBuffer buffer = ByteBuffer.allocate(snapshot.size());
+        snapshot.encode(buffer);
+        buffer.flip();
+        return buffer;
+    }
+
+    @Test
+    void decode_EncodedSnapshot_SameSnapshot() throws IOException {
+        Snapshot snapshot = snapshot();
+
+        ByteBuffer buffer = encode(snapshot);
+
+        assertEquals(snapshot.size(), buffer.remaining());
+        assertSameSnapshot(snapshot, Snapshot.decode(buffer));
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    void decode_NoPlayersAndEmptyTable_SameSnapshot() throws IOException {
+        Snapshot snapshot = new Snapshot(27, 0, 0, 0, -1, new int[0], new int[]{1, 2, 3}, new int[0], new int[0],
+                new long[0], new int[0][], new int[0]);
+
+        assertSameSnapshot(snapshot, Snapshot.decode(encode(snapshot)));
+    }
+
+    @Test
+    void decode_SnapshotInTheMiddleOfBuffer_SameSnapshot() throws IOException {
+        Snapshot snapshot = snapshot();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(7 + snapshot.size() + 5);
+        buffer.position(7);
+
+        snapshot.encode(buffer);
+        buffer.position(7);
+
+        assertSameSnapshot(snapshot, Snapshot.decode(buffer));
+        assertEquals(7 + snapshot.size(), buffer.position());
+    }
+
+    @Test
+    void read_WrittenSnapshot_SameSnapshot() throws IOException {
+        Snapshot snapshot = snapshot();
+        Path file = directory.resolve("game.snapshot");
+
+        snapshot.write(file);
+        snapshot.write(file); // replaces it
+
+        assertEquals(snapshot.size(), Files.size(file));
+        assertSameSnapshot(snapshot, Snapshot.read(file));
+        assertFalse(Files.exists(directory.resolve("game.snapshot.tmp")));
+    }
+
+    @Test
+    void decode_DamagedBody_Throws() {
+        ByteBuffer buffer = encode(snapshot());
+        buffer.putInt(40, buffer.getInt(40) ^ 1);
+
+        IOException e = assertThrows(IOException.class, () -> Snapshot.decode(buffer));
+        assertTrue(e.getMessage().contains("checksum"));
+    }
+
+    @Test
+    void decode_Truncated_Throws() {
+        ByteBuffer buffer = encode(snapshot());
+        buffer.limit(buffer.limit() - 3);
+
+        assertThrows(IOException.class, () -> Snapshot.decode(buffer));
+    }
+
+    @Test
+    void decode_NotASnapshot_Throws() {
+        ByteBuffer buffer = encode(snapshot());
+        buffer.putInt(0, 0x12345678);
+
+        assertThrows(IOException.class, () -> Snapshot.decode(buffer));
+    }
+
+    @Test
+    void decode_OtherVersion_Throws() {
+        ByteBuffer buffer = encode(snapshot());
+        buffer.putInt(4, Snapshot.VERSION - 1);
+
+        IOException e = assertThrows(IOException.class, () -> Snapshot.decode(buffer));
+        assertTrue(e.getMessage().contains("version"));
+    }
+
+    @Test
+    void decode_HugeCount_ThrowsInsteadOfAllocating() {
+        ByteBuffer buffer = encode(snapshot());
+        buffer.putInt(12 + 4 * 4 + 8, Integer.MAX_VALUE); // the length of the table
+
+        assertThrows(IOException.class, () -> Snapshot.decode(buffer));
+    }
+}
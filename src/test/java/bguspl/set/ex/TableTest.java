@@ -1,5 +1,6 @@
 package bguspl.set.ex;
 
+import bguspl.set.Clock;
 import bguspl.set.Config;
 import bguspl.set.Env;
 import bguspl.set.UserInterface;
@@ -126,6 +127,8 @@ class TableTest {
         @Override
         public void setCountdown(long millies, boolean warn) {}
         @Override
+        public void setCountdownDeadline(long deadline, Clock clock) {}
+        @Override
         public void setElapsed(long millies) {}
         @Override
         public void setScore(int player, int score) {}
@@ -141,6 +144,8 @@ class TableTest {
         public void removeToken(int player, int slot) {}
         @Override
         public void announceWinner(int[] players) {}
+        @Override
+        public void reset() {}
     };
 
     static class MockUtil implements Util {